@@ -0,0 +1,97 @@
+import embed.CompiledProgram;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs one shared CompiledProgram from many threads. First a race check: 200 fresh
+// programs, each run by 16 threads released together, so lazy linking and method
+// preparation are raced; every result is compared with the expected value. Then
+// throughput in runs/s against thread count, and with CompiledProgram.newRunExecutor().
+public class ConcurrencyBench {
+    private static final String SOURCE = String.join("\n",
+        "class Shape { int sides = 0; Shape() { this.sides = 1; } int area(int s) { return s; } int area(double s) { return 2; } }",
+        "class Square extends Shape { Square(int n) { super(); this.sides = n; } int area(int s) { return s * s; } }",
+        "class Fib { int f(int n) { if (n < 2) { return n; } return f(n - 1) + f(n - 2); } }",
+        "class Main {",
+        "    int main() {",
+        "        Shape s = new Square(4);",
+        "        int total = s.area(x) + s.sides;",
+        "        switch (x % 3) { case 0: total = total + 1; break; case 1: total = total + 2; break; default: total = total + 3; }",
+        "        Fib f = new Fib();",
+        "        total = total + f.f(depth);",
+        "        System.out.println(\"t=\" + total);",
+        "        return total;",
+        "    }",
+        "}");
+    private static final int ROUNDS = 200;
+    private static final int RACERS = 16;
+    
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int wrong = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            wrong += race(CompiledProgram.compile(SOURCE), round);
+        }
+        System.out.printf("race check: %d runs, %d wrong results%n", ROUNDS * RACERS, wrong);
+        
+        CompiledProgram program = CompiledProgram.compile(SOURCE);
+        for (int warmup = 0; warmup < 2; warmup++) {
+            throughput(program, runs, Executors.newFixedThreadPool(4));
+        }
+        for (int threads : new int[] {1, 2, 4, 8, 16, 64}) {
+            System.out.printf("%-18s %8.0f runs/s%n", threads + " threads",
+                throughput(program, runs, Executors.newFixedThreadPool(threads)));
+        }
+        System.out.printf("%-18s %8.0f runs/s%n", "newRunExecutor()", throughput(program, runs, CompiledProgram.newRunExecutor()));
+    }
+    
+    // The number of the 16 racing runs that returned or printed the wrong thing
+    private static int race(CompiledProgram program, int round) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(RACERS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int racer = 0; racer < RACERS; racer++) {
+            int x = racer + round;
+            results.add(executor.submit(() -> {
+                start.await();
+                CompiledProgram.Result result = program.run(Map.of("x", x, "depth", 5));
+                int expected = expected(x, 5);
+                return result.value.equals(expected) && result.output.equals("t=" + expected + System.lineSeparator());
+            }));
+        }
+        start.countDown();
+        int wrong = 0;
+        for (Future<Boolean> result : results) {
+            if (!result.get()) wrong++;
+        }
+        executor.shutdown();
+        return wrong;
+    }
+    
+    private static double throughput(CompiledProgram program, int runs, ExecutorService executor) throws Exception {
+        long start = System.nanoTime();
+        List<Future<CompiledProgram.Result>> results = new ArrayList<>(runs);
+        for (int i = 0; i < runs; i++) {
+            int x = i % 100;
+            results.add(executor.submit(() -> program.run(Map.of("x", x, "depth", 10))));
+        }
+        for (int i = 0; i < runs; i++) {
+            if (!results.get(i).get().value.equals(expected(i % 100, 10))) throw new AssertionError("wrong result for run " + i);
+        }
+        long nanos = System.nanoTime() - start;
+        executor.shutdown();
+        return runs / (nanos / 1e9);
+    }
+    
+    private static int expected(int x, int depth) {
+        return x * x + 4 + (x % 3 == 0 ? 1 : x % 3 == 1 ? 2 : 3) + fib(depth);
+    }
+    
+    private static int fib(int n) {
+        return n < 2 ? n : fib(n - 1) + fib(n - 2);
+    }
+}
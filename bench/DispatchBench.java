@@ -0,0 +1,43 @@
+import interpreter.Interpreter;
+import interpreter.Program;
+import lexer.Lexer;
+import parser.Parser;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Visitor against kind-switch dispatch, in ms per run of one program parsed once
+// (e.g. bench/scripts/dispatch.java). Both modes run in the same JVM in alternating
+// rounds after a warm-up, so drift hits them alike; medians of 15 rounds are printed.
+public class DispatchBench {
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 15;
+    private static final int RUNS_PER_ROUND = 5;
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: DispatchBench <source-file>");
+            System.exit(1);
+        }
+        Program program = new Program(new Parser(new Lexer(Files.readString(Path.of(args[0])))).parse());
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        Interpreter.Dispatch[] modes = Interpreter.Dispatch.values();
+        double[][] millis = new double[modes.length][ROUNDS];
+        for (int round = -WARMUP; round < ROUNDS; round++) {
+            for (int i = 0; i < modes.length; i++) {
+                long start = System.nanoTime();
+                for (int run = 0; run < RUNS_PER_ROUND; run++) {
+                    new Interpreter(program, modes[i], sink).run();
+                }
+                if (round >= 0) millis[i][round] = (System.nanoTime() - start) / 1e6 / RUNS_PER_ROUND;
+            }
+        }
+        for (int i = 0; i < modes.length; i++) {
+            Arrays.sort(millis[i]);
+            System.out.printf("%-8s median %.2f ms, range %.2f-%.2f ms%n", modes[i].name().toLowerCase(),
+                millis[i][ROUNDS / 2], millis[i][0], millis[i][ROUNDS - 1]);
+        }
+    }
+}
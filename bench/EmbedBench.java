@@ -0,0 +1,70 @@
+import embed.CompiledProgram;
+import embed.JavaSourceScriptEngineFactory;
+import interpreter.Interpreter;
+import interpreter.Value;
+import lexer.Lexer;
+import lexer.Symbol;
+import parser.Parser;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.Map;
+
+// Per-invocation cost of running one script many times with bindings x and y, in
+// microseconds per run: parsing and running each time, CompiledProgram.run(), and a
+// JSR-223 CompiledScript.eval(). Three rounds of 200k runs each; the first warms up.
+public class EmbedBench {
+    private static final int RUNS = 200_000;
+    private static final String CALC = "class Calc {\n"
+        + "    int fib(int n) { if (n < 2) { return n; } return fib(n - 1) + fib(n - 2); }\n"
+        + "    int g(int x, int y) { return x * y + 1; }\n"
+        + "}\n";
+    private static final String TRIVIAL = CALC
+        + "class Main {\n    int main() {\n        Calc c = new Calc();\n        return c.g(x, y);\n    }\n}\n";
+    private static final String PRINTING = CALC
+        + "class Main {\n    int main() {\n        Calc c = new Calc();\n"
+        + "        System.out.println(c.fib(5));\n        return c.g(x, y);\n    }\n}\n";
+    
+    public static void main(String[] args) throws Exception {
+        measure("main(x*y+1)", TRIVIAL);
+        measure("main(x*y+1) + println(fib(5))", PRINTING);
+    }
+    
+    private static void measure(String label, String source) throws Exception {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        Map<String, Object> bindings = Map.of("x", 6, "y", 7);
+        CompiledProgram program = CompiledProgram.compile(source);
+        ScriptEngine engine = new JavaSourceScriptEngineFactory().getScriptEngine();
+        engine.getContext().setWriter(new StringWriter());
+        CompiledScript script = ((Compilable) engine).compile(source);
+        Bindings scriptBindings = engine.createBindings();
+        scriptBindings.putAll(bindings);
+        check(program.run(bindings).value.equals(43) && script.eval(scriptBindings).equals(43), label);
+        
+        System.out.println(label);
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                Interpreter interpreter = new Interpreter(Interpreter.Dispatch.VISITOR, sink);
+                interpreter.defineGlobal(Symbol.intern("x"), new Value(Value.Type.INT, 6));
+                interpreter.defineGlobal(Symbol.intern("y"), new Value(Value.Type.INT, 7));
+                interpreter.run(new Parser(new Lexer(source, 1, sink), sink).parse());
+            }
+            long parsed = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) program.run(bindings);
+            long compiled = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) script.eval(scriptBindings);
+            long end = System.nanoTime();
+            System.out.printf("  parse + run %6.2f us, compiled run() %6.2f us, JSR-223 CompiledScript.eval %6.2f us%n",
+                (parsed - start) / 1e3 / RUNS, (compiled - parsed) / 1e3 / RUNS, (end - compiled) / 1e3 / RUNS);
+        }
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
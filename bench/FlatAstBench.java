@@ -0,0 +1,38 @@
+import lexer.Lexer;
+import parser.Parser;
+import parser.ast.Declaration;
+import parser.ast.FlatAst;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Retained heap of a parsed program as an object AST and as its FlatAst encoding,
+// measured after GC, in bytes per node. Run with a fixed heap and a simple collector
+// for stable numbers, e.g. JAVA_OPTS="-XX:+UseSerialGC -Xmx2g".
+public class FlatAstBench {
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: FlatAstBench <source-file>");
+            System.exit(1);
+        }
+        String source = Files.readString(Path.of(args[0]));
+        long base = usedHeap();
+        List<Declaration> program = new Parser(new Lexer(source)).parse();
+        long tree = usedHeap() - base;
+        FlatAst flat = FlatAst.encode(program);
+        program = null;
+        long encoded = usedHeap() - base;
+        
+        int nodes = flat.nodeCount();
+        System.out.printf("source %d chars, %d nodes, %d constants%n", source.length(), nodes, flat.constantCount());
+        System.out.printf("object AST %8.1f MB %6.1f bytes/node%n", tree / 1e6, (double) tree / nodes);
+        System.out.printf("flat AST   %8.1f MB %6.1f bytes/node (%.1f in the arrays)%n",
+            encoded / 1e6, (double) encoded / nodes, (double) flat.byteSize() / nodes);
+    }
+    
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Writes a generated source to stdout, for the benchmark drivers:
+//   classes <n>      n classes K0..K(n-1), every fifth starting a new inheritance chain,
+//                    each with a field, a constructor and four loop-heavy methods, then
+//                    a Main that runs the last one. 2000 classes are about 2.2 MB.
+//   classes <size>   as many classes as it takes to reach a size such as 100m
+//   expressions <n>  n classes of methods made of long random expressions over every
+//                    binary operator, from a fixed seed. 2500 classes are about 6.5 MB.
+public class GenerateSource {
+    private static final String[] OPERANDS = {"a", "b", "1", "2.5", "-a", "!c", "g(a, 1)", "this.f"};
+    private static final String[] OPERATORS = {"||", "&&", "==", "!=", "<", "<=", ">", ">=", "+", "-", "*", "/", "%"};
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !(args[0].equals("classes") || args[0].equals("expressions"))) {
+            System.err.println("Usage: GenerateSource classes <count|size> | expressions <count>");
+            System.exit(1);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        if (args[0].equals("classes")) {
+            classes(out, args[1]);
+        } else {
+            expressions(out, Integer.parseInt(args[1]));
+        }
+        out.flush();
+    }
+    
+    private static void classes(Writer out, String limit) throws IOException {
+        char suffix = Character.toLowerCase(limit.charAt(limit.length() - 1));
+        long bytes = suffix == 'k' ? 1L << 10 : suffix == 'm' ? 1L << 20 : suffix == 'g' ? 1L << 30 : 0;
+        long count = bytes == 0 ? Long.parseLong(limit) : Long.MAX_VALUE;
+        long size = bytes == 0 ? Long.MAX_VALUE : bytes * Long.parseLong(limit.substring(0, limit.length() - 1));
+        
+        long written = 0;
+        int n = 0;
+        while (n < count && written < size) {
+            StringBuilder text = new StringBuilder();
+            boolean chained = n % 5 != 0;
+            text.append("class K").append(n).append(chained ? " extends K" + (n - 1) : "").append(" {\n");
+            text.append("    int f").append(n).append(";\n");
+            text.append("    String s").append(n).append(" = \"name").append(n).append("\";\n");
+            text.append("    K").append(n).append("(int a) { ").append(chained ? "super(a); " : "")
+                .append("this.f").append(n).append(" = a; }\n");
+            for (int m = 0; m < 4; m++) {
+                text.append("    int work").append(m).append("(int x").append(m).append(", double y) {\n")
+                    .append("        int acc").append(m).append(" = 0;\n")
+                    .append("        for (int j = 0; j < x").append(m).append("; j = j + 1) {\n")
+                    .append("            if (j % 3 == ").append(m % 3).append(") { acc").append(m).append(" = acc").append(m)
+                    .append(" + j * ").append(m + 1).append("; } else { acc").append(m).append(" = acc").append(m).append(" - 1; }\n")
+                    .append("        }\n")
+                    .append("        while (acc").append(m).append(" > ").append(100 * n + m).append(") { acc").append(m)
+                    .append(" = acc").append(m).append(" / 2; }\n")
+                    .append("        return acc").append(m).append(" + this.f").append(n).append(";\n")
+                    .append("    }\n");
+            }
+            text.append("}\n");
+            out.write(text.toString());
+            written += text.length();
+            n++;
+        }
+        out.write("class Main {\n"
+            + "    void main() {\n"
+            + "        K" + (n - 1) + " k = new K" + (n - 1) + "(7);\n"
+            + "        System.out.println(k.work0(10, 1.5));\n"
+            + "        System.out.println(k.work3(20, 2.5) + k.s" + (n - 1) + ");\n"
+            + "    }\n"
+            + "}\n");
+    }
+    
+    private static void expressions(Writer out, int count) throws IOException {
+        Random random = new Random(38);
+        for (int n = 0; n < count; n++) {
+            StringBuilder text = new StringBuilder();
+            text.append("class K").append(n).append(" {\n    int f;\n");
+            for (int m = 0; m < 5; m++) {
+                text.append("    int m").append(m).append("(int a, int b) {\n");
+                for (int x = 0; x < 4; x++) {
+                    text.append("        int x").append(x).append(" = ");
+                    expression(text, random, 3);
+                    text.append(";\n");
+                }
+                text.append("        return a + b * 2;\n    }\n");
+            }
+            text.append("}\n");
+            out.write(text.toString());
+        }
+    }
+    
+    // A random operand, or up to 'depth' more levels of binary operators
+    private static void expression(StringBuilder text, Random random, int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) {
+            text.append(OPERANDS[random.nextInt(OPERANDS.length)]);
+            return;
+        }
+        int operands = 2 + random.nextInt(4);
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) text.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            expression(text, random, depth - 1);
+        }
+    }
+}
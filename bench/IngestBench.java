@@ -0,0 +1,43 @@
+import lexer.Lexer;
+import lexer.TokenType;
+import lexer.Utf8Lexer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Reading and lexing a large source, 5 runs of each way in: 'string' reads all bytes and
+// decodes them before a Lexer streams the tokens, 'mmap' maps the file and a Utf8Lexer
+// streams the tokens straight from the bytes. Prints ingestion and lexing time apart.
+// The smallest heap each way needs is found by lowering JAVA_OPTS=-Xmx until it fails.
+public class IngestBench {
+    private static final int RUNS = 5;
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2 || !(args[0].equals("string") || args[0].equals("mmap"))) {
+            System.err.println("Usage: IngestBench string|mmap <source-file>");
+            System.exit(1);
+        }
+        Path path = Path.of(args[1]);
+        double megabytes = Files.size(path) / 1e6;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            long ingested;
+            int tokens = 0;
+            if (args[0].equals("string")) {
+                String source = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+                ingested = System.nanoTime();
+                Lexer lexer = new Lexer(source);
+                while (lexer.nextToken().type != TokenType.EOF) tokens++;
+            } else {
+                ByteBuffer source = Utf8Lexer.map(path);
+                ingested = System.nanoTime();
+                Utf8Lexer lexer = new Utf8Lexer(source);
+                while (lexer.nextToken().type != TokenType.EOF) tokens++;
+            }
+            long end = System.nanoTime();
+            System.out.printf("%s run %d: %d tokens, ingest %.0f ms, lex %.0f ms, %.1f MB/s overall%n", args[0], run, tokens,
+                (ingested - start) / 1e6, (end - ingested) / 1e6, megabytes / ((end - start) / 1e9));
+        }
+    }
+}
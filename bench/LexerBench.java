@@ -0,0 +1,52 @@
+import lexer.Lexer;
+import lexer.TokenType;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Lexing throughput in MB/s and bytes allocated per token, best of 8 rounds, for each
+// way of lexing a String: scanTokens() keeps a list of Token objects, nextToken()
+// streams them, and tokenize() fills a TokenBuffer without creating any
+public class LexerBench {
+    private static final int ROUNDS = 8;
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: LexerBench <source-file>");
+            System.exit(1);
+        }
+        String source = Files.readString(Path.of(args[0]));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (String mode : new String[] {"scanTokens", "nextToken", "tokenize"}) {
+            double bestRate = 0;
+            double bestAllocated = Double.MAX_VALUE;
+            int tokens = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+                long start = System.nanoTime();
+                tokens = lex(source, mode);
+                long nanos = System.nanoTime() - start;
+                long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+                bestRate = Math.max(bestRate, source.length() / (nanos / 1e9) / 1e6);
+                bestAllocated = Math.min(bestAllocated, (double) allocated / tokens);
+            }
+            System.out.printf("%-11s %d tokens %7.1f MB/s %7.1f bytes allocated/token%n", mode, tokens, bestRate, bestAllocated);
+        }
+    }
+    
+    private static int lex(String source, String mode) {
+        Lexer lexer = new Lexer(source);
+        switch (mode) {
+            case "scanTokens":
+                return lexer.scanTokens().size();
+            case "nextToken":
+                while (lexer.nextToken().type != TokenType.EOF) {
+                    // Each token is dropped as soon as it is made
+                }
+                return lexer.getTokenCount();
+            default:
+                return lexer.tokenize().size();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Cost of fuel, time and depth metering, in time per run of each program: this
+// build without limits, this build with generous limits that never trip, and optionally
+// an older build given with --baseline=<classes-dir> (e.g. one compiled from the commit
+// before metering). Builds are loaded side by side through their own class loaders and
+// timed in alternating rounds, so drift in the JVM hits every column alike; medians of
+// 7 rounds are printed.
+public class MeteringBench {
+    private static final int ROUNDS = 7;
+    private static final long ROUND_NANOS = 300_000_000L;
+    
+    public static void main(String[] args) throws Exception {
+        List<Runner> runners = new ArrayList<>();
+        List<Path> programs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--baseline=")) {
+                URL classes = Path.of(arg.substring("--baseline=".length())).toUri().toURL();
+                runners.add(new Runner("baseline", new URLClassLoader(new URL[] {classes}, ClassLoader.getPlatformClassLoader()), false));
+            } else {
+                programs.add(Path.of(arg));
+            }
+        }
+        if (programs.isEmpty()) {
+            System.err.println("Usage: MeteringBench [--baseline=<classes-dir>] <source-file>...");
+            System.exit(1);
+        }
+        runners.add(new Runner("current", MeteringBench.class.getClassLoader(), false));
+        runners.add(new Runner("current+limits", MeteringBench.class.getClassLoader(), true));
+        
+        for (Path path : programs) {
+            String source = Files.readString(path);
+            Object[] parsed = new Object[runners.size()];
+            int[] runsPerRound = new int[runners.size()];
+            double[][] micros = new double[runners.size()][ROUNDS];
+            for (int i = 0; i < runners.size(); i++) {
+                parsed[i] = runners.get(i).parse(source);
+                // Warm up for about a round, which also sizes the rounds
+                long start = System.nanoTime();
+                while (System.nanoTime() - start < ROUND_NANOS) {
+                    runners.get(i).run(parsed[i]);
+                    runsPerRound[i]++;
+                }
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < runners.size(); i++) {
+                    long start = System.nanoTime();
+                    for (int run = 0; run < runsPerRound[i]; run++) runners.get(i).run(parsed[i]);
+                    micros[i][round] = (System.nanoTime() - start) / 1e3 / runsPerRound[i];
+                }
+            }
+            StringBuilder line = new StringBuilder(String.format("%-16s", path.getFileName()));
+            for (int i = 0; i < runners.size(); i++) {
+                Arrays.sort(micros[i]);
+                double median = micros[i][ROUNDS / 2];
+                line.append(median < 10_000 ? String.format("  %s %.1f us", runners.get(i).name, median)
+                    : String.format("  %s %.0f ms", runners.get(i).name, median / 1e3));
+            }
+            System.out.println(line);
+        }
+    }
+    
+    // Parses and runs programs through one build's classes by reflection, since the
+    // baseline build is not on this class's classpath. Output goes nowhere.
+    private static final class Runner {
+        final String name;
+        private final Constructor<?> lexer;
+        private final Constructor<?> parser;
+        private final Method parse;
+        private final Constructor<?> program;
+        private final Constructor<?> interpreter;
+        private final Object dispatch;
+        private final Method run;
+        private final Method setLimits;
+        private final Object limits;
+        private final PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        
+        Runner(String name, ClassLoader loader, boolean limited) throws Exception {
+            this.name = name;
+            Class<?> lexerClass = loader.loadClass("lexer.Lexer");
+            Class<?> parserClass = loader.loadClass("parser.Parser");
+            Class<?> programClass = loader.loadClass("interpreter.Program");
+            Class<?> interpreterClass = loader.loadClass("interpreter.Interpreter");
+            Class<?> dispatchClass = loader.loadClass("interpreter.Interpreter$Dispatch");
+            this.lexer = lexerClass.getConstructor(String.class);
+            this.parser = parserClass.getConstructor(loader.loadClass("lexer.TokenSource"));
+            this.parse = parserClass.getMethod("parse");
+            this.program = programClass.getConstructor(List.class);
+            this.interpreter = interpreterClass.getConstructor(programClass, dispatchClass, PrintStream.class);
+            this.dispatch = dispatchClass.getField("VISITOR").get(null);
+            this.run = interpreterClass.getMethod("run");
+            if (limited) {
+                Class<?> limitsClass = loader.loadClass("interpreter.ExecutionLimits");
+                this.setLimits = interpreterClass.getMethod("setLimits", limitsClass);
+                this.limits = limitsClass.getConstructor(long.class, long.class, int.class).newInstance(1L << 40, 60_000L, 10_000);
+            } else {
+                this.setLimits = null;
+                this.limits = null;
+            }
+        }
+        
+        // The shared program for the source
+        Object parse(String source) throws Exception {
+            return program.newInstance(parse.invoke(parser.newInstance(lexer.newInstance(source))));
+        }
+        
+        void run(Object parsed) throws Exception {
+            Object execution = interpreter.newInstance(parsed, dispatch, sink);
+            if (setLimits != null) setLimits.invoke(execution, limits);
+            run.invoke(execution);
+        }
+    }
+}
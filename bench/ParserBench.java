@@ -0,0 +1,31 @@
+import lexer.Lexer;
+import lexer.Token;
+import parser.Parser;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Parser throughput in M tokens/s over a token list lexed once up front, so lexing is
+// not counted. Median of 10 runs after 5 warm-up runs.
+public class ParserBench {
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: ParserBench <source-file>");
+            System.exit(1);
+        }
+        List<Token> tokens = new Lexer(Files.readString(Path.of(args[0]))).scanTokens();
+        double[] rates = new double[RUNS];
+        for (int run = -WARMUP; run < RUNS; run++) {
+            long start = System.nanoTime();
+            new Parser(tokens).parse();
+            long nanos = System.nanoTime() - start;
+            if (run >= 0) rates[run] = tokens.size() / (nanos / 1e9) / 1e6;
+        }
+        Arrays.sort(rates);
+        System.out.printf("%d tokens, median %.1f M tokens/s%n", tokens.size(), rates[RUNS / 2]);
+    }
+}
@@ -0,0 +1,15 @@
+#!/bin/sh
+# Compiles the interpreter and the benchmark drivers under bench/, then runs the
+# driver named by the first argument with the rest, e.g.
+#   bench/run.sh GenerateSource classes 2000 > /tmp/classes.java
+#   bench/run.sh FlatAstBench /tmp/classes.java
+# JAVA_OPTS is passed to the JVM, e.g. JAVA_OPTS=-Xmx2g. Scripts under
+# bench/scripts are inputs for Main, not drivers.
+set -e
+root="$(cd "$(dirname "$0")/.." && pwd)"
+classes=$(mktemp -d)
+trap 'rm -rf "$classes"' EXIT
+javac -encoding UTF-8 -d "$classes" $(find "$root/src" "$root/bench" -name '*.java' -not -path "$root/bench/scripts/*")
+driver=$1
+shift
+java $JAVA_OPTS -cp "$classes" "$driver" "$@"
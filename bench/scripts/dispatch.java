@@ -0,0 +1,60 @@
+class Shape {
+    int area() {
+        return 0;
+    }
+}
+
+class Square extends Shape {
+    int side;
+    
+    Square(int side) {
+        this.side = side;
+    }
+    
+    int area() {
+        return this.side * this.side;
+    }
+}
+
+class Rect extends Shape {
+    int w;
+    int h;
+    
+    Rect(int w, int h) {
+        this.w = w;
+        this.h = h;
+    }
+    
+    int area() {
+        return this.w * this.h;
+    }
+}
+
+class Main {
+    int fib(int n) {
+        if (n < 2) {
+            return n;
+        }
+        return fib(n - 1) + fib(n - 2);
+    }
+    
+    void main() {
+        Shape square = new Square(3);
+        Shape rect = new Rect(2, 5);
+        Shape none = new Shape();
+        int s = 0;
+        for (int i = 0; i < 20000; i = i + 1) {
+            switch (i % 3) {
+                case 0:
+                    s = s + square.area();
+                    break;
+                case 1:
+                    s = s + rect.area();
+                    break;
+                default:
+                    s = s + none.area();
+            }
+        }
+        System.out.println(s + fib(20));
+    }
+}
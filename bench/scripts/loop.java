@@ -0,0 +1,19 @@
+class F {
+    int f(int n) {
+        if (n < 2) {
+            return n;
+        }
+        return f(n - 1) + f(n - 2);
+    }
+}
+
+class Main {
+    void main() {
+        int s = 0;
+        for (int i = 0; i < 3000000; i = i + 1) {
+            s = s + i % 7;
+        }
+        F f = new F();
+        System.out.println(s + f.f(24));
+    }
+}
@@ -0,0 +1,12 @@
+import util.Fraction;
+import util.MathUtils;
+
+class Main {
+    void main() {
+        Fraction half = new Fraction(2, 4);
+        Fraction third = new Fraction(3, 9);
+        System.out.println(half.describe());
+        System.out.println(half.plus(third).describe());
+        System.out.println(new MathUtils().square(12));
+    }
+}
@@ -0,0 +1,51 @@
+class Shape {
+    String name() {
+        return "shape";
+    }
+    
+    int area() {
+        return 0;
+    }
+    
+    String describe() {
+        return name() + " with area " + area();
+    }
+}
+
+class Rectangle extends Shape {
+    int width;
+    int height;
+    
+    void resize(int w, int h) {
+        this.width = w;
+        this.height = h;
+    }
+    
+    String name() {
+        return "rectangle";
+    }
+    
+    int area() {
+        return this.width * this.height;
+    }
+}
+
+class Square extends Rectangle {
+    String name() {
+        return "square (" + super.name() + ")";
+    }
+}
+
+class Main {
+    void main() {
+        Shape s = new Shape();
+        Rectangle r = new Rectangle();
+        r.resize(3, 4);
+        Square q = new Square();
+        q.resize(5, 5);
+        
+        System.out.println(s.describe());
+        System.out.println(r.describe());
+        System.out.println(q.describe());
+    }
+}
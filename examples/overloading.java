@@ -0,0 +1,70 @@
+class Point {
+    int x;
+    int y;
+    
+    Point() {
+        this.x = 0;
+        this.y = 0;
+    }
+    
+    Point(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+    
+    String show() {
+        return "(" + this.x + ", " + this.y + ")";
+    }
+}
+
+class Point3 extends Point {
+    int z;
+    
+    Point3(int x, int y, int z) {
+        super(x, y);
+        this.z = z;
+    }
+    
+    String show() {
+        return "(" + this.x + ", " + this.y + ", " + this.z + ")";
+    }
+}
+
+class Printer {
+    String format(int value) {
+        return "int " + value;
+    }
+    
+    String format(double value) {
+        return "double " + value;
+    }
+    
+    String format(String value) {
+        return "String " + value;
+    }
+    
+    String format(Point p) {
+        return "point " + p.show();
+    }
+    
+    String format(int a, int b) {
+        return "pair " + a + " " + b;
+    }
+}
+
+class Main {
+    void main() {
+        Printer printer = new Printer();
+        int n = 7;
+        double d = 2.5;
+        
+        System.out.println(printer.format(n));
+        System.out.println(printer.format(d));
+        System.out.println(printer.format(n * 2));
+        System.out.println(printer.format("text"));
+        System.out.println(printer.format(n, 3));
+        System.out.println(printer.format(new Point()));
+        System.out.println(printer.format(new Point(1, 2)));
+        System.out.println(printer.format(new Point3(1, 2, 3)));
+    }
+}
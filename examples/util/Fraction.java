@@ -0,0 +1,21 @@
+import util.MathUtils;
+
+class Fraction {
+    int numerator;
+    int denominator;
+    
+    Fraction(int numerator, int denominator) {
+        int divisor = new MathUtils().gcd(numerator, denominator);
+        this.numerator = numerator / divisor;
+        this.denominator = denominator / divisor;
+    }
+    
+    Fraction plus(Fraction other) {
+        return new Fraction(this.numerator * other.denominator + other.numerator * this.denominator,
+                            this.denominator * other.denominator);
+    }
+    
+    String describe() {
+        return this.numerator + "/" + this.denominator;
+    }
+}
@@ -0,0 +1,14 @@
+class MathUtils {
+    int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+    
+    int square(int x) {
+        return x * x;
+    }
+}
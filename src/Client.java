@@ -0,0 +1,66 @@
+import daemon.Daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Drop-in replacement for 'java Main ...' that hands the command line to a running
+// daemon ('java Main --daemon') and prints what comes back, exiting with the daemon's
+// status. Without a daemon on the socket it runs the command in this JVM instead.
+public class Client {
+    public static void main(String[] args) {
+        Path socket = Daemon.defaultSocket();
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            Main.main(args);
+            return;
+        }
+        
+        int status;
+        try (SocketChannel connection = channel) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection)));
+            request.writeInt(Daemon.MAGIC);
+            request.writeUTF(Paths.get("").toAbsolutePath().toString());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            
+            DataInputStream response = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection), 1 << 16));
+            byte[] buffer = new byte[1 << 13];
+            while (true) {
+                int kind = response.readByte();
+                if (kind == Daemon.EXIT) {
+                    status = response.readInt();
+                    break;
+                }
+                int length = response.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                response.readFully(buffer, 0, length);
+                PrintStream stream = kind == Daemon.STDERR ? System.err : System.out;
+                stream.write(buffer, 0, length);
+                stream.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Lost connection to the daemon: " + e.getMessage());
+            status = 1;
+        }
+        System.out.flush();
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+}
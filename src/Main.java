@@ -1,63 +1,365 @@
-import lexer.Lexer;
-import lexer.Token;
+import lexer.Utf8Lexer;
+import parser.AstCache;
+import parser.ModuleLoader;
+import parser.ParallelParser;
 import parser.Parser;
 import parser.ast.Declaration;
+import parser.ast.FlatAst;
+import interpreter.FlatInterpreter;
+import interpreter.ExecutionLimits;
 import interpreter.Interpreter;
+import interpreter.LimitExceededException;
+import interpreter.Program;
+import analysis.CallGraph;
+import batch.BatchRunner;
+import batch.ShardWorker;
+import batch.ShardedRunner;
+import daemon.Daemon;
+import daemon.ProgramCache;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage: java Main <source-file>");
-            System.err.println("Example: java Main examples/simple.java");
-            System.exit(1);
+        if (args.length == 1 && (args[0].equals("--daemon") || args[0].startsWith("--daemon="))) {
+            Path socket = args[0].equals("--daemon") ? Daemon.defaultSocket() : Paths.get(args[0].substring("--daemon=".length()));
+            try {
+                new Daemon(socket, Main::run).serve();
+            } catch (IOException e) {
+                System.err.println("Daemon failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
         }
         
-        String sourceFile = args[0];
+        int status = run(args, Paths.get("").toAbsolutePath(), System.out, System.err, null);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+    
+    // Runs one command line, printing to 'out' and 'err', and returns its exit status.
+    // Relative paths are resolved against 'workingDirectory'. A daemon passes its
+    // resident 'programs' to reuse parsed programs between runs; otherwise it is null.
+    public static int run(String[] args, Path workingDirectory, PrintStream out, PrintStream err, ProgramCache programs) {
+        Options options;
+        try {
+            options = Options.parse(args, workingDirectory);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            Options.printUsage(err);
+            return 1;
+        }
+        
+        if (options.batch != null && options.sourceFile == null) {
+            // Workers are this command line again, minus --processes, plus --worker
+            List<String> workerCommand = null;
+            if (options.processes > 0 && !options.worker) {
+                workerCommand = new ArrayList<>(List.of(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), "Main", "--worker"));
+                for (String arg : args) {
+                    if (!arg.startsWith("--processes=")) workerCommand.add(arg);
+                }
+            }
+            // The batch watchdog enforces the timeout, covering parsing and imports too
+            return runBatch(options.batch, options.outputDirectory, options.jobs,
+                options.timeoutMillis < 0 ? 10_000 : options.timeoutMillis,
+                new ExecutionLimits(options.fuel, 0, options.maxDepth, options.heapBytes), options.libraries,
+                options.cacheDirectory == null ? null : new AstCache(options.cacheDirectory), options.scan,
+                options.dispatch, options.worker, options.processes, workerCommand, workingDirectory, out, err);
+        }
+        
+        if (options.sourceFile == null) {
+            Options.printUsage(err);
+            return 1;
+        }
+        return runProgram(options, workingDirectory, out, err, programs);
+    }
+    
+    // Runs the single program named by 'options'
+    private static int runProgram(Options options, Path workingDirectory, PrintStream out, PrintStream err,
+                                  ProgramCache programs) {
+        boolean prune = options.prune;
+        boolean flat = options.flat;
+        boolean parallel = options.parallel;
+        Utf8Lexer.Scan scan = options.scan;
+        Path cacheDirectory = options.cacheDirectory;
+        String sourceFile = options.sourceFile;
+        long timeoutMillis = options.timeoutMillis;
+        ExecutionLimits limits = options.fuel > 0 || timeoutMillis > 0 || options.maxDepth > 0 || options.heapBytes > 0
+            ? new ExecutionLimits(options.fuel, Math.max(timeoutMillis, 0), options.maxDepth, options.heapBytes)
+            : ExecutionLimits.NONE;
+        if (flat && limits != ExecutionLimits.NONE) {
+            err.println("--fuel, --timeout, --max-depth and --max-heap are not supported with --flat");
+            return 1;
+        }
+        long startNanos = System.nanoTime();
         
         try {
-            // Read source file
-            String source = readFile(sourceFile);
+            // Map the source file; it is lexed in place as UTF-8. Its attributes are read
+            // first, so a resident copy is never newer than they say.
+            Path sourcePath = workingDirectory.resolve(sourceFile);
+            BasicFileAttributes attributes = Files.readAttributes(sourcePath, BasicFileAttributes.class);
+            ByteBuffer source = Utf8Lexer.map(sourcePath);
+            
+            out.println("=== Java Source Interpreter ===");
+            out.println("Interpreting: " + sourceFile);
+            out.println("===============================\n");
+            
+            // A program resident in the daemon is reused as it is, unless pruning or the
+            // flat encoding would change it. A cached program skips lexing and parsing;
+            // it is decoded back into the object AST unless the flat interpreter can run
+            // it as it is.
+            boolean resident = programs != null && !prune && !flat;
+            List<Declaration> declarations = resident ? programs.declarations(sourcePath) : null;
+            AstCache cache = cacheDirectory == null ? null : new AstCache(cacheDirectory);
+            String cacheKey = cache == null || declarations != null ? null : cache.key(source);
+            FlatAst cached = cacheKey == null ? null : cache.load(cacheKey);
+            if (declarations != null) {
+                out.println("[Daemon] Reusing the program parsed by an earlier run");
+            } else if (cached != null) {
+                out.println("[Cache] Loaded " + cached.nodeCount() + " nodes from " + cache.path(cacheKey));
+                if (!flat || prune) {
+                    declarations = cached.decode();
+                }
+                if (resident) {
+                    programs.store(sourcePath, attributes, declarations);
+                }
+            } else if (resident && !parallel) {
+                declarations = parseResident(source, cache, cacheKey, programs, sourcePath, attributes, out, err);
+            } else {
+                ProgramCache keep = resident ? programs : null;
+                declarations = parallel ? parseInParallel(source, scan, cache, cacheKey, keep, sourcePath, attributes, out, err)
+                    : parse(source, scan, cache, cacheKey, keep, sourcePath, attributes, out, err);
+            }
             
-            System.out.println("=== Java Source Interpreter ===");
-            System.out.println("Interpreting: " + sourceFile);
-            System.out.println("===============================\n");
+            // Imported libraries are compiled once each (through the cache, if any) and
+            // their classes added to the program, to be linked on first use like its own
+            if (declarations == null && cached.hasImports()) {
+                declarations = cached.decode();
+            }
+            Program program = null;
+            if (declarations != null) {
+                List<Path> roots = new ArrayList<>();
+                roots.add(sourcePath.toAbsolutePath().getParent());
+                roots.addAll(options.libraries);
+                // Pruning binds call sites in the libraries' ASTs for this program alone, so
+                // it gets libraries of its own rather than the daemon's shared ones
+                ModuleLoader loader = programs != null && !prune ? programs.loader(roots, cache, scan)
+                    : new ModuleLoader(roots, cache, scan);
+                List<ModuleLoader.Module> modules = loader.imports(declarations, err);
+                if (resident) {
+                    program = programs.program(sourcePath, declarations, modules);
+                }
+                if (!modules.isEmpty()) {
+                    declarations = ModuleLoader.link(modules, declarations);
+                    out.println("[Modules] Linked " + modules.size() + " imported modules");
+                }
+            }
             
-            // Lexical Analysis
-            Lexer lexer = new Lexer(source);
-            List<Token> tokens = lexer.scanTokens();
-            System.out.println("[Lexer] Generated " + tokens.size() + " tokens");
+            // Optional whole-program analysis
+            if (prune) {
+                CallGraph callGraph = CallGraph.build(declarations);
+                declarations = callGraph.prune();
+                out.print(callGraph.report());
+            }
             
-            // Syntax Analysis
-            Parser parser = new Parser(tokens);
-            List<Declaration> declarations = parser.parse();
-            System.out.println("[Parser] Parsed " + declarations.size() + " declarations");
+            if (flat) {
+                // The object AST is dropped once encoded; only the flat arrays are retained
+                FlatAst ast = declarations != null ? FlatAst.encode(declarations) : cached;
+                declarations = null;
+                out.printf("[Flat] Encoded %d nodes in %d bytes (%.1f bytes/node, %d constants)%n",
+                    ast.nodeCount(), ast.byteSize(), (double) ast.byteSize() / ast.nodeCount(),
+                    ast.constantCount());
+                
+                out.println("[Interpreter] Starting execution...\n");
+                out.println("--- Output ---");
+                FlatInterpreter interpreter = new FlatInterpreter(ast, out, err);
+                interpreter.interpret();
+                out.println("\n--- End of Output ---");
+                
+                printFirstOutput(interpreter.getFirstOutputNanos(), startNanos, out);
+                out.println("[Interpreter] Linked " + interpreter.getLinkedClassCount() + " of " +
+                    interpreter.getClassCount() + " classes");
+                out.println("\n[Complete] Program executed successfully");
+                return 0;
+            }
             
             // Interpretation
-            System.out.println("[Interpreter] Starting execution...\n");
-            System.out.println("--- Output ---");
-            Interpreter interpreter = new Interpreter();
-            interpreter.interpret(declarations);
-            System.out.println("\n--- End of Output ---");
+            out.println("[Interpreter] Starting execution...\n");
+            out.println("--- Output ---");
+            Interpreter interpreter = new Interpreter(program != null ? program : new Program(declarations),
+                options.dispatch, out);
+            interpreter.setLimits(limits);
+            try {
+                interpreter.run();
+            } catch (LimitExceededException e) {
+                // The program's own fault, not the interpreter's: no stack trace
+                err.println("Runtime Error: " + e.getMessage());
+            } catch (RuntimeException e) {
+                err.println("Runtime Error: " + e.getMessage());
+                e.printStackTrace(err);
+            }
+            out.println("\n--- End of Output ---");
             
-            System.out.println("\n[Complete] Program executed successfully");
+            printStartupStats(interpreter, startNanos, out);
+            if (limits != ExecutionLimits.NONE) {
+                out.println("[Interpreter] Took " + interpreter.getSteps() + " steps (loop iterations and method calls)");
+                out.println("[Interpreter] Allocated " + interpreter.getAllocatedBytes() + " bytes of objects and strings, " +
+                    "peak retained " + interpreter.getPeakRetainedBytes() + " bytes");
+            }
+            
+            out.println("\n[Complete] Program executed successfully");
+            return 0;
             
         } catch (IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
-            System.exit(1);
+            err.println("Error reading file: " + e.getMessage());
+            return 1;
         } catch (Exception e) {
-            System.err.println("Execution failed: " + e.getMessage());
-            e.printStackTrace();
-            System.exit(1);
+            err.println("Execution failed: " + e.getMessage());
+            e.printStackTrace(err);
+            return 1;
+        }
+    }
+    
+    // Runs a batch of scripts; each script's output goes to <out>/<script>.out, its
+    // errors to <out>/<script>.err, and a line per script to <out>/summary.tsv
+    private static int runBatch(Path batch, Path outputDirectory, int jobs, long timeoutMillis, ExecutionLimits limits,
+                                List<Path> libraries, AstCache cache, Utf8Lexer.Scan scan, Interpreter.Dispatch dispatch,
+                                boolean worker, int processes, List<String> workerCommand, Path workingDirectory,
+                                PrintStream out, PrintStream err) {
+        try {
+            long startNanos = System.nanoTime();
+            Path root = Files.isDirectory(batch) ? batch : batch.toAbsolutePath().getParent();
+            BatchRunner runner = new BatchRunner(root, outputDirectory, jobs, timeoutMillis, limits, libraries,
+                cache, scan, dispatch);
+            if (worker) {
+                // Scripts come from the coordinator on stdin; 'out' carries the replies
+                ShardWorker.serve(runner, System.in, out);
+                return 0;
+            }
+            
+            List<Path> scripts = BatchRunner.scripts(batch);
+            List<BatchRunner.Outcome> outcomes = workerCommand != null
+                ? new ShardedRunner(runner, processes, workerCommand, workingDirectory).run(scripts)
+                : runner.run(scripts);
+            Path summary = outputDirectory.resolve("summary.tsv");
+            BatchRunner.writeSummary(summary, outcomes);
+            
+            Map<BatchRunner.Status, Integer> counts = new EnumMap<>(BatchRunner.Status.class);
+            for (BatchRunner.Outcome outcome : outcomes) {
+                counts.merge(outcome.status, 1, Integer::sum);
+            }
+            out.printf("[Batch] Ran %d scripts on %d %s in %.2f s: %s%n", outcomes.size(),
+                workerCommand != null ? processes : jobs, workerCommand != null ? "worker processes" : "workers",
+                (System.nanoTime() - startNanos) / 1e9, counts);
+            out.println("[Batch] Summary written to " + summary);
+            return counts.getOrDefault(BatchRunner.Status.OK, 0) == outcomes.size() ? 0 : 2;
+        } catch (IOException e) {
+            err.println("Error reading batch: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            err.println("Batch interrupted");
+            return 1;
+        }
+    }
+    
+    // Lexes and parses, keeping only the declarations once done
+    private static List<Declaration> parse(ByteBuffer source, Utf8Lexer.Scan scan, AstCache cache, String cacheKey,
+                                           ProgramCache programs, Path sourcePath, BasicFileAttributes attributes,
+                                           PrintStream out, PrintStream err) throws IOException {
+        // Lexical and syntax analysis run together: the parser pulls tokens from the
+        // lexer as it needs them, so the full token list is never built
+        Utf8Lexer lexer = new Utf8Lexer(source, scan, 1, err);
+        Parser parser = new Parser(lexer, err);
+        List<Declaration> declarations = parser.parse();
+        out.println("[Lexer] Generated " + lexer.getTokenCount() + " tokens");
+        out.println("[Parser] Parsed " + declarations.size() + " declarations");
+        if (!lexer.hadErrors() && !parser.hadErrors()) {
+            store(declarations, cache, cacheKey, programs, sourcePath, attributes, out, err);
+        }
+        return declarations;
+    }
+    
+    // Parses a program resident in the daemon through its IncrementalParser, so a source
+    // edited since an earlier run is lexed and parsed again only around the edit
+    private static List<Declaration> parseResident(ByteBuffer source, AstCache cache, String cacheKey,
+                                                   ProgramCache programs, Path sourcePath, BasicFileAttributes attributes,
+                                                   PrintStream out, PrintStream err) throws IOException {
+        String text = StandardCharsets.UTF_8.decode(source.duplicate()).toString();
+        ProgramCache.Parsed parsed = programs.parse(sourcePath, attributes, text);
+        err.print(parsed.errors());
+        out.println("[Parser] Parsed " + parsed.declarations().size() + " declarations, lexing " +
+            parsed.relexed() + " of " + text.length() + " characters again");
+        if (parsed.errors().isEmpty()) {
+            store(parsed.declarations(), cache, cacheKey, null, sourcePath, attributes, out, err);
+        }
+        return parsed.declarations();
+    }
+    
+    // Splits the source into class units and parses them on the common ForkJoin pool
+    private static List<Declaration> parseInParallel(ByteBuffer source, Utf8Lexer.Scan scan, AstCache cache, String cacheKey,
+                                                     ProgramCache programs, Path sourcePath, BasicFileAttributes attributes,
+                                                     PrintStream out, PrintStream err) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        ParallelParser parser = new ParallelParser(pool, scan, err);
+        List<Declaration> declarations = parser.parse(List.of(source));
+        out.println("[Lexer] Generated " + parser.getTokenCount() + " tokens");
+        out.println("[Parser] Parsed " + declarations.size() + " declarations");
+        out.println("[Parser] Split into " + parser.getUnitCount() + " class units, parsed by " +
+            parser.getTaskCount() + " tasks on " + pool.getParallelism() + " workers");
+        if (!parser.hadErrors()) {
+            store(declarations, cache, cacheKey, programs, sourcePath, attributes, out, err);
+        }
+        return declarations;
+    }
+    
+    // Keeps a program parsed without errors in the cache and the daemon's resident
+    // programs, when there are any. Programs with errors are kept in neither, so their
+    // errors are reported on every run. A cache that cannot be written only costs the
+    // next run a parse.
+    private static void store(List<Declaration> declarations, AstCache cache, String cacheKey,
+                              ProgramCache programs, Path sourcePath, BasicFileAttributes attributes,
+                              PrintStream out, PrintStream err) throws IOException {
+        if (programs != null) {
+            programs.store(sourcePath, attributes, declarations);
+        }
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.store(cacheKey, FlatAst.encode(declarations));
+            out.println("[Cache] Stored parsed program as " + cache.path(cacheKey));
+        } catch (IOException e) {
+            err.println("[Cache] Could not store parsed program: " + e.getMessage());
+        }
+    }
+    
+    private static void printFirstOutput(long firstOutput, long startNanos, PrintStream out) {
+        if (firstOutput >= 0) {
+            out.printf("%n[Interpreter] Time to first output: %.2f ms%n", (firstOutput - startNanos) / 1e6);
         }
     }
     
-    private static String readFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        return new String(bytes);
+    private static void printStartupStats(Interpreter interpreter, long startNanos, PrintStream out) {
+        printFirstOutput(interpreter.getFirstOutputNanos(), startNanos, out);
+        out.println("[Interpreter] Linked " + interpreter.getLinkedClassCount() + " of " +
+            interpreter.getClassCount() + " classes (" +
+            (interpreter.getClassCount() - interpreter.getLinkedClassCount()) + " never linked)");
+        out.println("[Interpreter] Prepared " + interpreter.getPreparedMethodCount() + " of " +
+            interpreter.getMethodCount() + " methods (" +
+            (interpreter.getMethodCount() - interpreter.getPreparedMethodCount()) + " never prepared)");
     }
 }
\ No newline at end of file
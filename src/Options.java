@@ -0,0 +1,159 @@
+import interpreter.Interpreter;
+import lexer.Utf8Lexer;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Main's command line, parsed and checked before anything runs. A value that does not
+// parse, such as --jobs=abc or --max-heap=, is reported as a usage error with the
+// option it belongs to, rather than escaping as an exception.
+final class Options {
+    boolean prune = false;
+    boolean flat = false;
+    boolean parallel = false;
+    Interpreter.Dispatch dispatch = Interpreter.Dispatch.VISITOR;
+    Utf8Lexer.Scan scan = Utf8Lexer.Scan.SCALAR;
+    Path cacheDirectory = null;
+    final List<Path> libraries = new ArrayList<>();
+    Path batch = null;
+    int jobs = Runtime.getRuntime().availableProcessors();
+    int processes = 0;
+    boolean worker = false;
+    // -1 when not given: none for a single program, a default for --batch
+    long timeoutMillis = -1;
+    long fuel = 0;
+    int maxDepth = 0;
+    long heapBytes = 0;
+    Path outputDirectory;
+    String sourceFile = null;
+    
+    // The options in 'args', with relative paths resolved against 'workingDirectory'.
+    // Throws IllegalArgumentException, saying what is wrong, for an unknown option, a
+    // value out of range or a second source file.
+    static Options parse(String[] args, Path workingDirectory) {
+        Options options = new Options();
+        options.outputDirectory = workingDirectory.resolve("jsi-batch");
+        for (String arg : args) {
+            if (arg.equals("--prune")) {
+                options.prune = true;
+            } else if (arg.equals("--flat")) {
+                options.flat = true;
+            } else if (arg.equals("--parallel")) {
+                options.parallel = true;
+            } else if (arg.equals("--dispatch=visitor")) {
+                options.dispatch = Interpreter.Dispatch.VISITOR;
+            } else if (arg.equals("--dispatch=switch")) {
+                options.dispatch = Interpreter.Dispatch.SWITCH;
+            } else if (arg.equals("--lex=scalar")) {
+                options.scan = Utf8Lexer.Scan.SCALAR;
+            } else if (arg.equals("--lex=swar")) {
+                options.scan = Utf8Lexer.Scan.SWAR;
+            } else if (arg.equals("--cache")) {
+                options.cacheDirectory = workingDirectory.resolve(".jsi-cache");
+            } else if (arg.startsWith("--cache=")) {
+                options.cacheDirectory = workingDirectory.resolve(value(arg));
+            } else if (arg.startsWith("--lib=")) {
+                for (String directory : value(arg).split(File.pathSeparator)) {
+                    options.libraries.add(workingDirectory.resolve(directory));
+                }
+            } else if (arg.startsWith("--batch=")) {
+                options.batch = workingDirectory.resolve(value(arg));
+            } else if (arg.startsWith("--jobs=")) {
+                options.jobs = (int) number(arg, 1, Integer.MAX_VALUE);
+            } else if (arg.startsWith("--processes=")) {
+                options.processes = (int) number(arg, 0, Integer.MAX_VALUE);
+            } else if (arg.equals("--worker")) {
+                options.worker = true;
+            } else if (arg.startsWith("--timeout=")) {
+                options.timeoutMillis = number(arg, 0, Long.MAX_VALUE);
+            } else if (arg.startsWith("--fuel=")) {
+                options.fuel = number(arg, 0, Long.MAX_VALUE);
+            } else if (arg.startsWith("--max-depth=")) {
+                options.maxDepth = (int) number(arg, 0, Integer.MAX_VALUE);
+            } else if (arg.startsWith("--max-heap=")) {
+                options.heapBytes = bytes(arg);
+            } else if (arg.startsWith("--out=")) {
+                options.outputDirectory = workingDirectory.resolve(value(arg));
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else if (options.sourceFile == null) {
+                options.sourceFile = arg;
+            } else {
+                throw new IllegalArgumentException("Only one source file can be run, got " + options.sourceFile + " and " + arg);
+            }
+        }
+        return options;
+    }
+    
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+    
+    // The option's value as a whole number in [min, max]
+    private static long number(String arg, long min, long max) {
+        String option = arg.substring(0, arg.indexOf('='));
+        long number;
+        try {
+            number = Long.parseLong(value(arg));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a whole number, got '" + value(arg) + "'");
+        }
+        if (number < min) {
+            throw new IllegalArgumentException(option + " must be at least " + min + ", got " + number);
+        }
+        if (number > max) {
+            throw new IllegalArgumentException(option + " must be at most " + max + ", got " + number);
+        }
+        return number;
+    }
+    
+    // The option's value as a byte count, optionally with a k, m or g suffix
+    private static long bytes(String arg) {
+        String option = arg.substring(0, arg.indexOf('='));
+        String text = value(arg);
+        long unit = 1;
+        if (!text.isEmpty()) {
+            switch (Character.toLowerCase(text.charAt(text.length() - 1))) {
+                case 'k': unit = 1L << 10; break;
+                case 'm': unit = 1L << 20; break;
+                case 'g': unit = 1L << 30; break;
+            }
+        }
+        String digits = unit == 1 ? text : text.substring(0, text.length() - 1);
+        try {
+            long count = Long.parseLong(digits);
+            if (count >= 0 && count <= Long.MAX_VALUE / unit) {
+                return count * unit;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(option + " expects a byte count such as 65536 or 64m, got '" + text + "'");
+    }
+    
+    static void printUsage(PrintStream err) {
+        err.println("Usage: java Main [--prune] [--flat] [--parallel] [--dispatch=visitor|switch] [--lex=scalar|swar] [--cache[=dir]] [--lib=dirs] [--fuel=n] [--timeout=ms] [--max-depth=n] [--max-heap=bytes] <source-file>");
+        err.println("       java Main --batch=<dir|manifest> [--jobs=n | --processes=n] [--timeout=ms] [--out=dir] [--fuel=n] [--max-depth=n] [--max-heap=bytes] [--dispatch=...] [--lex=...] [--cache[=dir]] [--lib=dirs]");
+        err.println("       java Main --daemon[=socket]");
+        err.println("  --prune     drop code unreachable from Main.main before running");
+        err.println("  --flat      run the program from its compact flat-array encoding");
+        err.println("  --parallel  lex and parse the classes of the source in parallel");
+        err.println("  --dispatch  evaluate nodes via visitors (default) or a switch on their kind");
+        err.println("  --lex       skip spaces, comments and strings a byte (default) or eight bytes at a time");
+        err.println("  --cache     reuse the parsed program from a cache directory (default .jsi-cache) while the source is unchanged");
+        err.println("  --lib       more directories to look for imported sources in, after the source's own");
+        err.println("  --batch     run every .java file under a directory, or listed in a manifest, in this JVM");
+        err.println("  --jobs      worker threads for --batch (default: one per processor)");
+        err.println("  --processes run --batch in this many worker JVMs instead, one script at a time each");
+        err.println("  --timeout   stop the program after this many milliseconds (default none; for --batch 10000, 0 for none)");
+        err.println("  --fuel      stop the program after this many loop iterations and method calls (default none)");
+        err.println("  --max-depth stop the program when more method calls than this are active at once (default none)");
+        err.println("  --max-heap  stop the program when its objects and strings retain more than this, e.g. 64m (default none)");
+        err.println("  --out       directory for batch outputs and summary.tsv (default jsi-batch)");
+        err.println("  --daemon    serve command lines from 'java Client ...' on a Unix socket (default $JSI_SOCKET or <tmp>/jsi-<user>.sock)");
+        err.println("Example: java Main examples/simple.java");
+    }
+}
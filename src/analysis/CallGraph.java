@@ -0,0 +1,287 @@
+package analysis;
+
+import interpreter.JavaClass;
+import interpreter.TreeScanner;
+import lexer.Symbol;
+import parser.ast.Declaration;
+import parser.ast.Expression;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Whole-program reachability rooted at Main.main. Call targets are found with rapid
+// type analysis: a virtual call can only reach implementations in classes that some
+// reachable 'new' instantiates. The graph is built up to a fixed point, then used to
+// prune unreachable classes and methods and to bind monomorphic call sites directly.
+public class CallGraph {
+    private final List<Declaration> program;
+    private final Map<String, Declaration.Class> classes = new LinkedHashMap<>();
+    private final Map<Declaration.Method, Declaration.Class> owners = new IdentityHashMap<>();
+    
+    private final Set<String> instantiated = new LinkedHashSet<>();
+    private final Set<String> reachableClasses = new LinkedHashSet<>();
+    private final Set<Declaration.Method> reachableMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Declaration.Method> worklist = new ArrayDeque<>();
+    
+    // Virtual call sites and the targets found for them so far
+    private final Map<Expression.Call, Set<Declaration.Method>> virtualSites = new IdentityHashMap<>();
+    private int superSiteCount = 0;
+    private int boundSiteCount = 0;
+    
+    private static final Symbol MAIN_METHOD = Symbol.intern("main");
+    
+    private CallGraph(List<Declaration> program) {
+        this.program = program;
+        for (Declaration declaration : program) {
+            if (declaration instanceof Declaration.Class) {
+                Declaration.Class decl = (Declaration.Class) declaration;
+                classes.put(decl.name.lexeme, decl);
+                for (Declaration.Method constructor : decl.constructors) owners.put(constructor, decl);
+                for (Declaration.Method method : decl.methods) owners.put(method, decl);
+            }
+        }
+    }
+    
+    public static CallGraph build(List<Declaration> program) {
+        CallGraph graph = new CallGraph(program);
+        graph.solve();
+        return graph;
+    }
+    
+    private void solve() {
+        Declaration.Class main = classes.get("Main");
+        if (main == null) return;
+        
+        // Main is instantiated by the interpreter itself, without running a constructor
+        markClassReachable(main);
+        instantiated.add(main.name.lexeme);
+        for (Declaration.Method method : implementations(main, MAIN_METHOD, 0)) {
+            markReachable(method);
+        }
+        
+        // Newly instantiated classes can add targets to call sites seen earlier
+        boolean changed = true;
+        while (changed) {
+            SiteScanner scanner = new SiteScanner();
+            while (!worklist.isEmpty()) {
+                Declaration.Method method = worklist.removeFirst();
+                scanner.visitMethodDecl(method);
+            }
+            
+            changed = false;
+            for (Map.Entry<Expression.Call, Set<Declaration.Method>> site : virtualSites.entrySet()) {
+                Symbol name = calleeName(site.getKey());
+                int arity = site.getKey().arguments.size();
+                for (String className : instantiated) {
+                    for (Declaration.Method target : implementations(classes.get(className), name, arity)) {
+                        if (site.getValue().add(target)) {
+                            markReachable(target);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        
+        // Sites with exactly one possible target can skip dispatch at run time
+        for (Map.Entry<Expression.Call, Set<Declaration.Method>> site : virtualSites.entrySet()) {
+            if (site.getValue().size() == 1) {
+                site.getKey().boundMethod = site.getValue().iterator().next();
+                boundSiteCount++;
+            }
+        }
+    }
+    
+    private void markReachable(Declaration.Method method) {
+        if (reachableMethods.add(method)) {
+            worklist.addLast(method);
+        }
+    }
+    
+    private void markClassReachable(Declaration.Class decl) {
+        while (decl != null && reachableClasses.add(decl.name.lexeme)) {
+            decl = superclassOf(decl);
+        }
+    }
+    
+    private void instantiate(Declaration.Class decl, int arity) {
+        if (instantiated.add(decl.name.lexeme)) {
+            // Field initializers of the class and its superclasses run on every 'new'
+            SiteScanner scanner = new SiteScanner();
+            for (Declaration.Class c = decl; c != null; c = superclassOf(c)) {
+                for (Declaration.Var field : c.fields) {
+                    scanner.visitVarDecl(field);
+                }
+            }
+        }
+        construct(decl, arity);
+    }
+    
+    // Constructors that may run for this arity, plus the implicit super() chain
+    private void construct(Declaration.Class decl, int arity) {
+        markClassReachable(decl);
+        
+        List<Declaration.Method> constructors = constructors(decl, arity);
+        boolean implicitSuper = constructors.isEmpty();
+        for (Declaration.Method constructor : constructors) {
+            markReachable(constructor);
+            implicitSuper |= !constructor.startsWithSuperCall();
+        }
+        
+        Declaration.Class superclass = superclassOf(decl);
+        if (implicitSuper && superclass != null) {
+            construct(superclass, 0);
+        }
+    }
+    
+    // Most-derived implementations visible in decl for each signature with this name and arity
+    private List<Declaration.Method> implementations(Declaration.Class decl, Symbol name, int arity) {
+        List<Declaration.Method> found = new ArrayList<>();
+        Set<Symbol> seen = new LinkedHashSet<>();
+        for (Declaration.Class c = decl; c != null; c = superclassOf(c)) {
+            for (Declaration.Method method : c.methods) {
+                if (method.name.symbol == name && method.parameters.size() == arity &&
+                    seen.add(JavaClass.selector(method))) {
+                    found.add(method);
+                }
+            }
+        }
+        return found;
+    }
+    
+    private List<Declaration.Method> constructors(Declaration.Class decl, int arity) {
+        List<Declaration.Method> found = new ArrayList<>();
+        for (Declaration.Method constructor : decl.constructors) {
+            if (constructor.parameters.size() == arity) found.add(constructor);
+        }
+        return found;
+    }
+    
+    private Declaration.Class superclassOf(Declaration.Class decl) {
+        return decl.superclass != null ? classes.get(decl.superclass.lexeme) : null;
+    }
+    
+    private static Symbol calleeName(Expression.Call call) {
+        if (call.callee instanceof Expression.Get) return ((Expression.Get) call.callee).name.symbol;
+        return ((Expression.Variable) call.callee).name.symbol;
+    }
+    
+    // Collects call and 'new' sites from reachable code
+    private class SiteScanner extends TreeScanner {
+        @Override
+        public Void visitCallExpr(Expression.Call expr) {
+            scanAll(expr.arguments);
+            
+            if (expr.isSystemOutPrintln()) {
+                return null;
+            }
+            if (expr.callee instanceof Expression.Get || expr.callee instanceof Expression.Variable) {
+                if (expr.callee instanceof Expression.Get) {
+                    scan(((Expression.Get) expr.callee).object);
+                }
+                virtualSites.computeIfAbsent(expr, k -> new LinkedHashSet<>());
+                return null;
+            }
+            if (expr.callee instanceof Expression.Super) {
+                superSiteCount++;
+                Expression.Super callee = (Expression.Super) expr.callee;
+                Declaration.Class enclosingClass = classes.get(callee.enclosingClass.lexeme);
+                Declaration.Class superclass = enclosingClass != null ? superclassOf(enclosingClass) : null;
+                if (superclass == null) return null;
+                
+                if (callee.method == null) {
+                    construct(superclass, expr.arguments.size());
+                } else {
+                    for (Declaration.Method target : implementations(superclass, callee.method.symbol, expr.arguments.size())) {
+                        markReachable(target);
+                    }
+                }
+                return null;
+            }
+            return super.visitCallExpr(expr);
+        }
+        
+        @Override
+        public Void visitNewExpr(Expression.New expr) {
+            scanAll(expr.arguments);
+            Declaration.Class decl = classes.get(expr.className.lexeme);
+            if (decl != null) {
+                instantiate(decl, expr.arguments.size());
+            }
+            return null;
+        }
+    }
+    
+    // ========== Results ==========
+    
+    // The program without unreachable classes and methods. Non-class top-level
+    // declarations are kept as they are.
+    public List<Declaration> prune() {
+        List<Declaration> pruned = new ArrayList<>();
+        for (Declaration declaration : program) {
+            if (!(declaration instanceof Declaration.Class)) {
+                pruned.add(declaration);
+                continue;
+            }
+            Declaration.Class decl = (Declaration.Class) declaration;
+            if (!reachableClasses.contains(decl.name.lexeme)) continue;
+            
+            pruned.add(new Declaration.Class(decl.name, decl.superclass, decl.fields,
+                reachableOnly(decl.constructors), reachableOnly(decl.methods)));
+        }
+        return pruned;
+    }
+    
+    private List<Declaration.Method> reachableOnly(List<Declaration.Method> methods) {
+        List<Declaration.Method> kept = new ArrayList<>();
+        for (Declaration.Method method : methods) {
+            if (reachableMethods.contains(method)) kept.add(method);
+        }
+        return kept;
+    }
+    
+    public String report() {
+        int methodCount = owners.size();
+        StringBuilder report = new StringBuilder();
+        report.append("[Analysis] Reachable classes: ").append(reachableClasses.size()).append(" of ")
+              .append(classes.size()).append(" (").append(classes.size() - reachableClasses.size())
+              .append(" pruned)\n");
+        report.append("[Analysis] Reachable methods: ").append(reachableMethods.size()).append(" of ")
+              .append(methodCount).append(" (").append(methodCount - reachableMethods.size())
+              .append(" pruned)\n");
+        report.append("[Analysis] Call sites: ").append(virtualSites.size()).append(" virtual (")
+              .append(boundSiteCount).append(" bound directly), ").append(superSiteCount).append(" super\n");
+        
+        List<String> prunedClasses = new ArrayList<>();
+        List<String> prunedMethods = new ArrayList<>();
+        for (Declaration.Class decl : classes.values()) {
+            if (!reachableClasses.contains(decl.name.lexeme)) {
+                prunedClasses.add(decl.name.lexeme);
+                continue;
+            }
+            for (Declaration.Method constructor : decl.constructors) {
+                if (!reachableMethods.contains(constructor)) prunedMethods.add(JavaClass.selector(constructor).name);
+            }
+            for (Declaration.Method method : decl.methods) {
+                if (!reachableMethods.contains(method)) {
+                    prunedMethods.add(decl.name.lexeme + "." + JavaClass.selector(method));
+                }
+            }
+        }
+        if (!prunedClasses.isEmpty()) {
+            report.append("[Analysis] Pruned classes: ").append(String.join(", ", prunedClasses)).append('\n');
+        }
+        if (!prunedMethods.isEmpty()) {
+            report.append("[Analysis] Pruned methods in reachable classes: ")
+                  .append(String.join(", ", prunedMethods)).append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,330 @@
+package batch;
+
+import interpreter.ExecutionLimits;
+import interpreter.Interpreter;
+import interpreter.LimitExceededException;
+import interpreter.Program;
+import lexer.Utf8Lexer;
+import parser.AstCache;
+import parser.ModuleLoader;
+import parser.Parser;
+import parser.ast.Declaration;
+import parser.ast.FlatAst;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Runs many scripts in one JVM on a fixed pool of worker threads. Each script is
+// parsed and run on its own: its output goes to its own file, a failure of any kind
+// (parse errors, runtime errors, stack overflow, running out of memory) is recorded
+// as its status, and one that runs past the timeout is interrupted, which the
+// interpreter notices at its next loop iteration or call. Scripts importing from the
+// same directory share one ModuleLoader, so each library is compiled once per batch.
+public class BatchRunner {
+    public enum Status {
+        OK, PARSE_ERROR, RUNTIME_ERROR, TIMEOUT, CRASH
+    }
+    
+    // How one script went
+    public static final class Outcome {
+        public final Path script;
+        public final Status status;
+        public final long parseNanos;
+        public final long runNanos;
+        // Most of the heap the script's own objects and strings held at once, as
+        // Interpreter.getPeakRetainedBytes() reports it; 0 when it did not run
+        public final long peakBytes;
+        // First line of the error, empty when OK
+        public final String message;
+        
+        Outcome(Path script, Status status, long parseNanos, long runNanos, long peakBytes, String message) {
+            this.script = script;
+            this.status = status;
+            this.parseNanos = parseNanos;
+            this.runNanos = runNanos;
+            this.peakBytes = peakBytes;
+            this.message = message;
+        }
+    }
+    
+    private final Path root;
+    private final Path outputDirectory;
+    private final int jobs;
+    private final long timeoutMillis;
+    private final ExecutionLimits limits;
+    private final List<Path> libraries;
+    private final AstCache cache;
+    private final Utf8Lexer.Scan scan;
+    private final Interpreter.Dispatch dispatch;
+    private final Map<Path, ModuleLoader> loaders = new ConcurrentHashMap<>();
+    
+    // Outputs are written under 'outputDirectory' at each script's path relative to
+    // 'root'; a timeout of 0 lets scripts run for as long as they like. Each script's
+    // execution also runs under 'limits'.
+    public BatchRunner(Path root, Path outputDirectory, int jobs, long timeoutMillis, ExecutionLimits limits,
+                       List<Path> libraries, AstCache cache, Utf8Lexer.Scan scan, Interpreter.Dispatch dispatch) {
+        this.root = root.toAbsolutePath().normalize();
+        this.outputDirectory = outputDirectory;
+        this.jobs = jobs;
+        this.timeoutMillis = timeoutMillis;
+        this.limits = limits;
+        this.libraries = List.copyOf(libraries);
+        this.cache = cache;
+        this.scan = scan;
+        this.dispatch = dispatch;
+    }
+    
+    // The scripts a batch names: every .java file under a directory, in path order, or
+    // the files listed in a manifest, one per line relative to the manifest's
+    // directory, skipping blank lines and lines starting with '#'
+    public static List<Path> scripts(Path directoryOrManifest) throws IOException {
+        if (Files.isDirectory(directoryOrManifest)) {
+            try (Stream<Path> files = Files.walk(directoryOrManifest)) {
+                return files.filter(file -> file.toString().endsWith(".java") && Files.isRegularFile(file))
+                    .sorted()
+                    .collect(Collectors.toList());
+            }
+        }
+        
+        Path base = directoryOrManifest.toAbsolutePath().getParent();
+        List<Path> scripts = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(directoryOrManifest, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    scripts.add(base.resolve(line));
+                }
+            }
+        }
+        return scripts;
+    }
+    
+    // Runs every script and returns their outcomes in the order given
+    public List<Outcome> run(List<Path> scripts) throws IOException, InterruptedException {
+        Files.createDirectories(outputDirectory);
+        ExecutorService workers = Executors.newFixedThreadPool(jobs);
+        ScheduledExecutorService watchdog = newWatchdog();
+        try {
+            List<Future<Outcome>> pending = new ArrayList<>(scripts.size());
+            for (Path script : scripts) {
+                pending.add(workers.submit(() -> runGuarded(script, watchdog)));
+            }
+            List<Outcome> outcomes = new ArrayList<>(scripts.size());
+            for (Future<Outcome> outcome : pending) {
+                try {
+                    outcomes.add(outcome.get());
+                } catch (ExecutionException e) {
+                    // runGuarded catches everything; this is a bug in the runner itself
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return outcomes;
+        } finally {
+            workers.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+    
+    static ScheduledExecutorService newWatchdog() {
+        return Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "batch-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    long timeoutMillis() {
+        return timeoutMillis;
+    }
+    
+    Path outputDirectory() {
+        return outputDirectory;
+    }
+    
+    // Runs one script, arming the watchdog for its timeout. The alarm interrupts only
+    // while the script is still running, and the flag is cleared afterwards, so a late
+    // alarm never reaches the next script on this thread.
+    Outcome runGuarded(Path script, ScheduledExecutorService watchdog) {
+        Alarm alarm = new Alarm(Thread.currentThread());
+        ScheduledFuture<?> scheduled = timeoutMillis > 0
+            ? watchdog.schedule(alarm, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+        try {
+            return runScript(script, alarm);
+        } finally {
+            alarm.disarm();
+            if (scheduled != null) scheduled.cancel(false);
+            Thread.interrupted();
+        }
+    }
+    
+    private static final class Alarm implements Runnable {
+        private final Thread thread;
+        private boolean disarmed = false;
+        private boolean fired = false;
+        
+        Alarm(Thread thread) {
+            this.thread = thread;
+        }
+        
+        @Override
+        public synchronized void run() {
+            if (!disarmed) {
+                fired = true;
+                thread.interrupt();
+            }
+        }
+        
+        synchronized void disarm() {
+            disarmed = true;
+        }
+        
+        synchronized boolean fired() {
+            return fired;
+        }
+    }
+    
+    private Outcome runScript(Path script, Alarm alarm) {
+        Path output = outputPath(script, ".out");
+        long parseStart = System.nanoTime();
+        long parseNanos = 0;
+        try {
+            Files.createDirectories(output.getParent());
+            ByteArrayOutputStream errorText = new ByteArrayOutputStream();
+            List<Declaration> declarations = parse(script, errorText);
+            if (declarations == null) {
+                parseNanos = System.nanoTime() - parseStart;
+                return failed(script, Status.PARSE_ERROR, parseNanos, 0, errorText.toString(StandardCharsets.UTF_8));
+            }
+            ModuleLoader loader = loaders.computeIfAbsent(script.toAbsolutePath().getParent(), this::loader);
+            List<ModuleLoader.Module> modules = loader.imports(declarations,
+                new PrintStream(errorText, true, StandardCharsets.UTF_8));
+            if (errorText.size() > 0) {
+                parseNanos = System.nanoTime() - parseStart;
+                return failed(script, Status.PARSE_ERROR, parseNanos, 0, errorText.toString(StandardCharsets.UTF_8));
+            }
+            Program program = new Program(ModuleLoader.link(modules, declarations));
+            parseNanos = System.nanoTime() - parseStart;
+            
+            long runStart = System.nanoTime();
+            Interpreter interpreter = null;
+            try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(output), 1 << 14),
+                    false, StandardCharsets.UTF_8)) {
+                interpreter = new Interpreter(program, dispatch, out);
+                interpreter.setLimits(limits);
+                interpreter.run();
+            } catch (RuntimeException | StackOverflowError | OutOfMemoryError e) {
+                long runNanos = System.nanoTime() - runStart;
+                long peakBytes = interpreter != null ? interpreter.getPeakRetainedBytes() : 0;
+                if (alarm.fired()) {
+                    return failed(script, Status.TIMEOUT, parseNanos, runNanos, peakBytes,
+                        "Timed out after " + timeoutMillis + " ms");
+                }
+                Status status = e instanceof LimitExceededException
+                    && ((LimitExceededException) e).limit == LimitExceededException.Limit.TIMEOUT ? Status.TIMEOUT
+                    : e instanceof RuntimeException ? Status.RUNTIME_ERROR : Status.CRASH;
+                return failed(script, status, parseNanos, runNanos, peakBytes, describe(e));
+            }
+            return new Outcome(script, Status.OK, parseNanos, System.nanoTime() - runStart,
+                interpreter.getPeakRetainedBytes(), "");
+        } catch (IOException | RuntimeException e) {
+            // Unreadable scripts, missing imports, duplicate classes; or an interrupted
+            // read, if the script timed out before it even ran
+            if (parseNanos == 0) parseNanos = System.nanoTime() - parseStart;
+            Status status = alarm.fired() ? Status.TIMEOUT : Status.PARSE_ERROR;
+            return failed(script, status, parseNanos, 0, describe(e));
+        } catch (Throwable e) {
+            return failed(script, Status.CRASH, parseNanos, 0, describe(e));
+        }
+    }
+    
+    // The script's declarations, or null after writing its syntax errors to 'errorText'
+    private List<Declaration> parse(Path script, ByteArrayOutputStream errorText) throws IOException {
+        ByteBuffer source = Utf8Lexer.map(script);
+        String key = cache == null ? null : cache.key(source);
+        FlatAst cached = cache == null ? null : cache.load(key);
+        if (cached != null) {
+            return cached.decode();
+        }
+        
+        PrintStream errors = new PrintStream(errorText, true, StandardCharsets.UTF_8);
+        Utf8Lexer lexer = new Utf8Lexer(source, scan, 1, errors);
+        Parser parser = new Parser(lexer, errors);
+        List<Declaration> declarations = parser.parse();
+        if (lexer.hadErrors() || parser.hadErrors()) {
+            return null;
+        }
+        if (cache != null) {
+            cache.store(key, FlatAst.encode(declarations));
+        }
+        return declarations;
+    }
+    
+    private ModuleLoader loader(Path directory) {
+        List<Path> roots = new ArrayList<>();
+        roots.add(directory);
+        roots.addAll(libraries);
+        return new ModuleLoader(roots, cache, scan);
+    }
+    
+    Outcome failed(Path script, Status status, long parseNanos, long runNanos, String error) {
+        return failed(script, status, parseNanos, runNanos, 0, error);
+    }
+    
+    // Writes the full error text next to the script's output
+    Outcome failed(Path script, Status status, long parseNanos, long runNanos, long peakBytes, String error) {
+        try {
+            Path path = outputPath(script, ".err");
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, error.endsWith("\n") ? error : error + "\n", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // The summary still has the first line
+        }
+        String firstLine = error.lines().findFirst().orElse("");
+        return new Outcome(script, status, parseNanos, runNanos, peakBytes, firstLine);
+    }
+    
+    private static String describe(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+    
+    // <output directory>/<script path relative to the root><suffix>; scripts outside
+    // the root are placed by file name
+    private Path outputPath(Path script, String suffix) {
+        Path absolute = script.toAbsolutePath().normalize();
+        Path relative = absolute.startsWith(root) ? root.relativize(absolute) : absolute.getFileName();
+        return outputDirectory.resolve(relative + suffix);
+    }
+    
+    // One line per script: status, parse and run milliseconds, peak heap bytes, script,
+    // first error line
+    public static void writeSummary(Path summary, List<Outcome> outcomes) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(summary, StandardCharsets.UTF_8))) {
+            writer.println("status\tparse_ms\trun_ms\tpeak_bytes\tscript\tmessage");
+            for (Outcome outcome : outcomes) {
+                writer.printf(Locale.ROOT, "%s\t%.3f\t%.3f\t%d\t%s\t%s%n", outcome.status, outcome.parseNanos / 1e6,
+                    outcome.runNanos / 1e6, outcome.peakBytes, outcome.script, outcome.message.replace('\t', ' '));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.ScheduledExecutorService;
+
+// The loop a worker JVM started by ShardedRunner runs: it reads script paths from its
+// coordinator, runs each with its BatchRunner (output files, timeouts and all), and
+// answers with the outcome, until the coordinator closes the pipe.
+//
+// Protocol, in DataOutputStream encoding. A request is the script's path as UTF; the
+// reply is its status name and message as UTF, then its parse and run nanoseconds and
+// peak heap bytes as longs. Nothing else may be written to 'out', so scripts must
+// print to their files.
+public class ShardWorker {
+    // Longer messages are cut, keeping replies within writeUTF's limit
+    static final int MESSAGE_LIMIT = 4096;
+    
+    public static void serve(BatchRunner runner, InputStream in, OutputStream out) throws IOException {
+        DataInputStream requests = new DataInputStream(new BufferedInputStream(in));
+        DataOutputStream replies = new DataOutputStream(new BufferedOutputStream(out));
+        ScheduledExecutorService watchdog = BatchRunner.newWatchdog();
+        try {
+            while (true) {
+                String script;
+                try {
+                    script = requests.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                BatchRunner.Outcome outcome = runner.runGuarded(Paths.get(script), watchdog);
+                String message = outcome.message;
+                replies.writeUTF(outcome.status.name());
+                replies.writeUTF(message.length() > MESSAGE_LIMIT ? message.substring(0, MESSAGE_LIMIT) : message);
+                replies.writeLong(outcome.parseNanos);
+                replies.writeLong(outcome.runNanos);
+                replies.writeLong(outcome.peakBytes);
+                replies.flush();
+            }
+        } finally {
+            watchdog.shutdownNow();
+        }
+    }
+}
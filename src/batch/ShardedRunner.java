@@ -0,0 +1,240 @@
+package batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Runs a batch across worker JVMs on this machine, so CPU-bound scripts are not held
+// back by one heap and one garbage collector. Each worker (see ShardWorker) is started
+// from 'command' and runs one script at a time, talking to this coordinator over its
+// stdin and stdout. The scripts are split into one contiguous shard per worker, which
+// keeps scripts from the same directory, and the libraries they import, in the same
+// JVM; a worker that finishes its shard steals from the end of the longest remaining
+// one. A script whose worker dies under it is retried on a fresh worker, and a worker
+// that stops answering long after the script timeout is killed.
+public class ShardedRunner {
+    // Runs a script gets in all when its worker keeps dying under it
+    private static final int ATTEMPTS = 2;
+    // How long past the script timeout a silent worker is given before it is killed
+    private static final long KILL_GRACE_MILLIS = 5_000;
+    
+    private final BatchRunner runner;
+    private final int processes;
+    private final List<String> command;
+    private final Path workingDirectory;
+    
+    // 'runner' must be configured as the workers' runners are; it places the error
+    // files for scripts whose worker failed them
+    public ShardedRunner(BatchRunner runner, int processes, List<String> command, Path workingDirectory) {
+        this.runner = runner;
+        this.processes = processes;
+        this.command = List.copyOf(command);
+        this.workingDirectory = workingDirectory;
+    }
+    
+    // The shards and what has come back from them
+    private static final class Work {
+        final List<Path> scripts;
+        final List<ArrayDeque<Integer>> shards = new ArrayList<>();
+        final BatchRunner.Outcome[] outcomes;
+        final int[] attempts;
+        String startFailure = "";
+        
+        Work(List<Path> scripts, int processes) {
+            this.scripts = scripts;
+            this.outcomes = new BatchRunner.Outcome[scripts.size()];
+            this.attempts = new int[scripts.size()];
+            for (int i = 0; i < processes; i++) {
+                shards.add(new ArrayDeque<>());
+            }
+            for (int i = 0; i < scripts.size(); i++) {
+                shards.get((int) ((long) i * processes / scripts.size())).add(i);
+            }
+        }
+        
+        // The next script for a worker: the front of its own shard, else the back of
+        // the longest other one; -1 when nothing is left
+        synchronized int next(int slot) {
+            Integer own = shards.get(slot).pollFirst();
+            if (own != null) return own;
+            ArrayDeque<Integer> longest = null;
+            for (ArrayDeque<Integer> shard : shards) {
+                if (longest == null || shard.size() > longest.size()) longest = shard;
+            }
+            Integer stolen = longest.pollLast();
+            return stolen != null ? stolen : -1;
+        }
+        
+        // Puts a script back at the front of a shard; false once it has had its attempts
+        synchronized boolean retry(int slot, int index) {
+            if (++attempts[index] >= ATTEMPTS) return false;
+            shards.get(slot).addFirst(index);
+            return true;
+        }
+        
+        synchronized void giveBack(int slot, int index, String failure) {
+            shards.get(slot).addFirst(index);
+            startFailure = failure;
+        }
+    }
+    
+    // Runs every script and returns their outcomes in the order given
+    public List<BatchRunner.Outcome> run(List<Path> scripts) throws IOException, InterruptedException {
+        Files.createDirectories(runner.outputDirectory());
+        Work work = new Work(scripts, processes);
+        ExecutorService drivers = Executors.newFixedThreadPool(processes);
+        ScheduledExecutorService watchdog = BatchRunner.newWatchdog();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < processes; i++) {
+                int slot = i;
+                running.add(drivers.submit(() -> drive(slot, work, watchdog)));
+            }
+            for (Future<?> driver : running) {
+                try {
+                    driver.get();
+                } catch (ExecutionException e) {
+                    // drive catches what a worker can throw at it; this is a bug in the runner
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            drivers.shutdownNow();
+            watchdog.shutdownNow();
+        }
+        
+        // Left over only if no worker could be started at all
+        for (int i = 0; i < work.outcomes.length; i++) {
+            if (work.outcomes[i] == null) {
+                work.outcomes[i] = runner.failed(scripts.get(i), BatchRunner.Status.CRASH, 0, 0,
+                    "No worker could be started: " + work.startFailure);
+            }
+        }
+        return Arrays.asList(work.outcomes);
+    }
+    
+    // Feeds one worker slot until no work is left, replacing its worker when it dies
+    private void drive(int slot, Work work, ScheduledExecutorService watchdog) {
+        Worker worker = null;
+        try {
+            for (int index = work.next(slot); index >= 0; index = work.next(slot)) {
+                if (worker == null) {
+                    try {
+                        worker = new Worker();
+                    } catch (IOException e) {
+                        // Another slot may still be able to run it
+                        work.giveBack(slot, index, e.getMessage());
+                        return;
+                    }
+                }
+                
+                Path script = work.scripts.get(index);
+                long start = System.nanoTime();
+                try {
+                    work.outcomes[index] = worker.run(script, watchdog);
+                } catch (IOException | IllegalArgumentException e) {
+                    int status = worker.destroy();
+                    boolean killed = worker.killed;
+                    worker = null;
+                    if (killed) {
+                        long millis = (System.nanoTime() - start) / 1_000_000;
+                        work.outcomes[index] = runner.failed(script, BatchRunner.Status.TIMEOUT, 0, millis * 1_000_000,
+                            "Worker killed after " + millis + " ms without answering");
+                    } else if (!work.retry(slot, index)) {
+                        work.outcomes[index] = runner.failed(script, BatchRunner.Status.CRASH, 0, 0,
+                            "Worker exited with status " + status + " while running it, " + ATTEMPTS + " times");
+                    }
+                }
+            }
+        } finally {
+            if (worker != null) worker.close();
+        }
+    }
+    
+    // One worker JVM and its pipes
+    private final class Worker {
+        private final Process process;
+        private final DataOutputStream requests;
+        private final DataInputStream replies;
+        volatile boolean killed = false;
+        
+        Worker() throws IOException {
+            process = new ProcessBuilder(command)
+                .directory(workingDirectory.toFile())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+            requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            replies = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+        
+        BatchRunner.Outcome run(Path script, ScheduledExecutorService watchdog) throws IOException {
+            long timeoutMillis = runner.timeoutMillis();
+            // Saturating, so a huge timeout does not wrap around to a negative delay
+            long killMillis = timeoutMillis > Long.MAX_VALUE - KILL_GRACE_MILLIS
+                ? Long.MAX_VALUE : timeoutMillis + KILL_GRACE_MILLIS;
+            ScheduledFuture<?> kill = timeoutMillis > 0
+                ? watchdog.schedule(this::kill, killMillis, TimeUnit.MILLISECONDS) : null;
+            try {
+                requests.writeUTF(script.toString());
+                requests.flush();
+                BatchRunner.Status status = BatchRunner.Status.valueOf(replies.readUTF());
+                String message = replies.readUTF();
+                long parseNanos = replies.readLong();
+                long runNanos = replies.readLong();
+                long peakBytes = replies.readLong();
+                return new BatchRunner.Outcome(script, status, parseNanos, runNanos, peakBytes, message);
+            } finally {
+                if (kill != null) kill.cancel(false);
+            }
+        }
+        
+        // Children too, since one left holding the pipe would keep the read waiting
+        private void kill() {
+            killed = true;
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+        
+        // Kills the worker and returns its exit status
+        int destroy() {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+            try {
+                return process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        
+        // Closing its stdin tells the worker to exit
+        void close() {
+            try {
+                requests.close();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
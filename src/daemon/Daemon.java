@@ -0,0 +1,163 @@
+package daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// A resident interpreter serving command lines over a Unix domain socket, so each
+// run skips JVM startup, runs on JIT-compiled interpreter code, and finds its program
+// already parsed in the ProgramCache. Connections are served concurrently, one thread
+// each.
+//
+// Protocol, in DataOutputStream encoding. The client sends MAGIC, its working
+// directory and its arguments (a count, then each as UTF). The daemon answers with
+// frames: STDOUT or STDERR followed by a length and that many bytes, as the program
+// prints them, and finally EXIT followed by the exit status.
+public class Daemon {
+    public static final int MAGIC = 0x4A534944;
+    public static final int EXIT = 0;
+    public static final int STDOUT = 1;
+    public static final int STDERR = 2;
+    
+    // Runs one command line the way Main would, printing to the given streams, and
+    // returns its exit status
+    public interface Command {
+        int run(String[] args, Path workingDirectory, PrintStream out, PrintStream err, ProgramCache programs);
+    }
+    
+    private final Path socket;
+    private final Command command;
+    private final ProgramCache programs = new ProgramCache();
+    private final ExecutorService connections = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "jsi-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public Daemon(Path socket, Command command) {
+        this.socket = socket;
+        this.command = command;
+    }
+    
+    // $JSI_SOCKET, or jsi-<user>.sock in the temporary directory
+    public static Path defaultSocket() {
+        String configured = System.getenv("JSI_SOCKET");
+        if (configured != null && !configured.isEmpty()) {
+            return Paths.get(configured);
+        }
+        return Paths.get(System.getProperty("java.io.tmpdir"), "jsi-" + System.getProperty("user.name") + ".sock");
+    }
+    
+    // Accepts connections until the process is stopped. A socket file left behind by
+    // a daemon that died is replaced; one that still answers is not.
+    public void serve() throws IOException {
+        if (Files.exists(socket)) {
+            if (isListening(socket)) {
+                throw new IOException("A daemon is already listening on " + socket);
+            }
+            Files.delete(socket);
+        }
+        
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            System.out.println("[Daemon] Listening on " + socket);
+            while (true) {
+                SocketChannel client = server.accept();
+                connections.execute(() -> handle(client));
+            }
+        }
+    }
+    
+    private static boolean isListening(Path socket) {
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream connection = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 13));
+            if (in.readInt() != MAGIC) return;
+            Path workingDirectory = Paths.get(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            
+            // println flushes, so output reaches the client line by line
+            PrintStream out = new PrintStream(new FrameOutputStream(connection, STDOUT), true, StandardCharsets.UTF_8);
+            PrintStream err = new PrintStream(new FrameOutputStream(connection, STDERR), true, StandardCharsets.UTF_8);
+            int status;
+            try {
+                status = command.run(args, workingDirectory, out, err, programs);
+            } catch (RuntimeException | StackOverflowError e) {
+                e.printStackTrace(err);
+                status = 1;
+            }
+            out.flush();
+            err.flush();
+            synchronized (connection) {
+                connection.writeByte(EXIT);
+                connection.writeInt(status);
+                connection.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; nothing is left to report to
+        }
+    }
+    
+    // Sends what is written to it as frames of one kind. Both of a connection's
+    // streams write frames to it, so each frame is written under its lock.
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream connection;
+        private final int kind;
+        
+        FrameOutputStream(DataOutputStream connection, int kind) {
+            this.connection = connection;
+            this.kind = kind;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) return;
+            synchronized (connection) {
+                connection.writeByte(kind);
+                connection.writeInt(length);
+                connection.write(bytes, offset, length);
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            synchronized (connection) {
+                connection.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package daemon;
+
+import embed.CompiledProgramCache;
+import interpreter.Program;
+import lexer.Utf8Lexer;
+import parser.AstCache;
+import parser.IncrementalParser;
+import parser.ModuleLoader;
+import parser.ast.Declaration;
+import parser.ast.FlatAst;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Parsed and linked programs kept in memory between the requests a daemon serves.
+// A program is found by the real path of its source and is reused while the source's
+// modification time and size are unchanged; its linked Program is reused while its
+// imports also resolve to the same modules, so classes linked and methods prepared by
+// earlier runs stay that way. Module loaders are shared by search path, so a library
+// is compiled once for all programs that import it. A source that has changed is
+// parsed again by the IncrementalParser kept for its path, so only the part around
+// the edit is lexed and parsed again.
+//
+// As in CompiledProgramCache, the programs held weigh at most 'maxBytes' of estimated
+// size, and the least recently used are dropped to stay within it; a program larger
+// than the whole budget is parsed but not kept.
+public class ProgramCache {
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+    // An IncrementalParser holds its text and tokens besides the declarations, and the
+    // declarations decoded from it are a second copy: about three times the AST alone,
+    // measured on a 6 MB source (11.4 against 4.1 bytes per character)
+    static final int PARSER_WEIGHT = 3;
+    
+    private static final class Entry {
+        final FileTime modified;
+        final long size;
+        // Null if the source had errors; its parser is kept for the next edit
+        final List<Declaration> declarations;
+        final IncrementalParser parser;
+        final long bytes;
+        // Guarded by the entry
+        List<ModuleLoader.Module> modules;
+        Program program;
+        
+        Entry(BasicFileAttributes attributes, List<Declaration> declarations, IncrementalParser parser) {
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.declarations = declarations;
+            this.parser = parser;
+            long bytes = CompiledProgramCache.estimateBytes(size);
+            this.bytes = parser != null ? bytes * PARSER_WEIGHT : bytes;
+        }
+        
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return modified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+    
+    private final long maxBytes;
+    // Guarded by this; in access order, least recently used first
+    private final LinkedHashMap<Path, Entry> programs = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long evictions = 0;
+    private final Map<List<Path>, ModuleLoader> loaders = new ConcurrentHashMap<>();
+    
+    // A source parsed by parse(): its declarations, their flat encoding, the lexer and
+    // parser errors, and how many characters were lexed again
+    public record Parsed(List<Declaration> declarations, FlatAst encoded, String errors, int relexed) {}
+    
+    public ProgramCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+    
+    public ProgramCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    // The resident declarations of a source, or null if it was never stored, had
+    // errors or has changed since
+    public List<Declaration> declarations(Path source) throws IOException {
+        Path path = source.toRealPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Entry entry = entry(path);
+        return entry != null && entry.isCurrent(attributes) ? entry.declarations : null;
+    }
+    
+    // Keeps a source's declarations, as parsed from the file with 'attributes' (read
+    // before the file was, so a concurrent edit makes the entry stale, not wrong)
+    public void store(Path source, BasicFileAttributes attributes, List<Declaration> declarations) throws IOException {
+        Path path = source.toRealPath();
+        Entry old = entry(path);
+        put(path, new Entry(attributes, declarations, old != null ? old.parser : null));
+    }
+    
+    // Parses a source's 'text' as an edit of the text it had when last parsed here: the
+    // common prefix and suffix are kept, and the IncrementalParser re-parses only the
+    // members or class units the rest falls in. The declarations are decoded from the
+    // flat encoding of the parser's program, so they share no nodes, and no call-site
+    // caches, with programs built from earlier versions of the source. Declarations
+    // without errors are kept as store() keeps them.
+    public Parsed parse(Path source, BasicFileAttributes attributes, String text) throws IOException {
+        Path path = source.toRealPath();
+        Entry old = entry(path);
+        IncrementalParser parser = old != null && old.parser != null ? old.parser : new IncrementalParser("");
+        FlatAst encoded;
+        String errors;
+        int relexed;
+        synchronized (parser) {
+            String previous = parser.source();
+            int limit = Math.min(previous.length(), text.length());
+            int prefix = 0;
+            while (prefix < limit && previous.charAt(prefix) == text.charAt(prefix)) prefix++;
+            int suffix = 0;
+            while (suffix < limit - prefix &&
+                   previous.charAt(previous.length() - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) suffix++;
+            parser.edit(prefix, previous.length() - prefix - suffix, text.substring(prefix, text.length() - suffix));
+            encoded = FlatAst.encode(parser.program());
+            errors = parser.errors();
+            relexed = parser.getLastRelexedLength();
+        }
+        List<Declaration> declarations = encoded.decode();
+        put(path, new Entry(attributes, errors.isEmpty() ? declarations : null, parser));
+        return new Parsed(declarations, encoded, errors, relexed);
+    }
+    
+    // The loader for a search path, shared by every program that uses the same one;
+    // it keeps the cache and scan it was first created with
+    public ModuleLoader loader(List<Path> roots, AstCache cache, Utf8Lexer.Scan scan) {
+        return loaders.computeIfAbsent(List.copyOf(roots), key -> new ModuleLoader(key, cache, scan));
+    }
+    
+    // The Program for resident 'declarations' linked with 'modules': the one built
+    // for an earlier request if it used the very same modules, otherwise a new one
+    public Program program(Path source, List<Declaration> declarations, List<ModuleLoader.Module> modules) throws IOException {
+        Entry entry = entry(source.toRealPath());
+        if (entry == null || entry.declarations != declarations) {
+            return new Program(ModuleLoader.link(modules, declarations));
+        }
+        synchronized (entry) {
+            if (entry.program == null || !sameModules(entry.modules, modules)) {
+                entry.program = new Program(ModuleLoader.link(modules, declarations));
+                entry.modules = modules;
+            }
+            return entry.program;
+        }
+    }
+    
+    private static boolean sameModules(List<ModuleLoader.Module> a, List<ModuleLoader.Module> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) return false;
+        }
+        return true;
+    }
+    
+    private synchronized Entry entry(Path path) {
+        return programs.get(path);
+    }
+    
+    // Replaces the path's entry, then drops entries, least recently used first, until
+    // the cache is within budget
+    private synchronized void put(Path path, Entry entry) {
+        Entry old = programs.remove(path);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        if (entry.bytes > maxBytes) return;
+        programs.put(path, entry);
+        bytes += entry.bytes;
+        Iterator<Entry> eldest = programs.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            bytes -= evicted.bytes;
+            evictions++;
+        }
+    }
+    
+    // Programs held in memory
+    public synchronized int size() {
+        return programs.size();
+    }
+    
+    // Estimated bytes of the programs held
+    public synchronized long bytes() {
+        return bytes;
+    }
+    
+    // Programs dropped to stay within the budget
+    public synchronized long evictions() {
+        return evictions;
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,172 @@
+package embed;
+
+import interpreter.ExecutionLimits;
+import interpreter.Interpreter;
+import interpreter.JavaObject;
+import interpreter.Program;
+import interpreter.Value;
+import lexer.Lexer;
+import lexer.Symbol;
+import parser.ModuleLoader;
+import parser.Parser;
+import parser.ast.Declaration;
+import javax.script.ScriptException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// A program that is parsed, and has its imports linked, once and can then be run any
+// number of times, from any number of threads at once. Every run is a fresh Interpreter
+// over the shared Program, so runs share only the AST and class metadata: the input
+// bindings become that run's global variables, Main.main()'s return value is its
+// result, and what it prints is captured rather than written to System.out. Parse and
+// runtime errors are reported as ScriptExceptions.
+public final class CompiledProgram {
+    // What one run produced
+    public static final class Result {
+        // Main.main()'s return value as an Integer, Double, Boolean, String or
+        // JavaObject; null for void and null
+        public final Object value;
+        public final String output;
+        // Estimated bytes of objects and strings the run allocated, and the most it
+        // was measured to retain at once (see Interpreter.getPeakRetainedBytes)
+        public final long allocatedBytes;
+        public final long peakBytes;
+        
+        private Result(Object value, String output, long allocatedBytes, long peakBytes) {
+            this.value = value;
+            this.output = output;
+            this.allocatedBytes = allocatedBytes;
+            this.peakBytes = peakBytes;
+        }
+    }
+    
+    private final Program program;
+    private final Interpreter.Dispatch dispatch;
+    
+    private CompiledProgram(Program program, Interpreter.Dispatch dispatch) {
+        this.program = program;
+        this.dispatch = dispatch;
+    }
+    
+    public static CompiledProgram compile(String source) throws ScriptException {
+        return compile(source, null, Interpreter.Dispatch.VISITOR);
+    }
+    
+    // Imports are resolved through 'modules', which any number of programs may share;
+    // without one, a program that imports anything does not compile
+    public static CompiledProgram compile(String source, ModuleLoader modules, Interpreter.Dispatch dispatch) throws ScriptException {
+        ByteArrayOutputStream errorText = new ByteArrayOutputStream();
+        PrintStream errors = new PrintStream(errorText, true, StandardCharsets.UTF_8);
+        Lexer lexer = new Lexer(source, 1, errors);
+        Parser parser = new Parser(lexer, errors);
+        List<Declaration> program = parser.parse();
+        if (lexer.hadErrors() || parser.hadErrors()) {
+            throw new ScriptException(errorText.toString(StandardCharsets.UTF_8).strip());
+        }
+        
+        List<ModuleLoader.Module> imported = List.of();
+        try {
+            if (modules != null) {
+                imported = modules.imports(program, errors);
+                if (errorText.size() > 0) {
+                    throw new ScriptException(errorText.toString(StandardCharsets.UTF_8).strip());
+                }
+            } else if (program.stream().anyMatch(d -> d instanceof Declaration.Import)) {
+                throw new ScriptException("Program has imports but no ModuleLoader to resolve them");
+            }
+            return new CompiledProgram(new Program(ModuleLoader.link(imported, program)), dispatch);
+        } catch (IOException | IllegalStateException e) {
+            throw new ScriptException(e.getMessage());
+        }
+    }
+    
+    // Runs the program with 'bindings' as global variables, capturing its output
+    public Result run(Map<String, ?> bindings) throws ScriptException {
+        return run(bindings, ExecutionLimits.NONE);
+    }
+    
+    // As run(bindings), stopping the run with a ScriptException (caused by a
+    // LimitExceededException) once it exceeds 'limits'
+    public Result run(Map<String, ?> bindings, ExecutionLimits limits) throws ScriptException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(output, false, StandardCharsets.UTF_8);
+        Interpreter interpreter = new Interpreter(program, dispatch, out);
+        Object value = run(interpreter, bindings, limits);
+        out.flush();
+        return new Result(value, output.toString(StandardCharsets.UTF_8), interpreter.getAllocatedBytes(),
+            interpreter.getPeakRetainedBytes());
+    }
+    
+    // Runs the program with 'bindings' as global variables, printing to 'out', and
+    // returns Main.main()'s return value as in Result.value
+    public Object run(Map<String, ?> bindings, PrintStream out) throws ScriptException {
+        return run(bindings, out, ExecutionLimits.NONE);
+    }
+    
+    public Object run(Map<String, ?> bindings, PrintStream out, ExecutionLimits limits) throws ScriptException {
+        return run(new Interpreter(program, dispatch, out), bindings, limits);
+    }
+    
+    private Object run(Interpreter interpreter, Map<String, ?> bindings, ExecutionLimits limits) throws ScriptException {
+        interpreter.setLimits(limits);
+        for (Map.Entry<String, ?> binding : bindings.entrySet()) {
+            interpreter.defineGlobal(Symbol.intern(binding.getKey()), toValue(binding.getValue()));
+        }
+        try {
+            return toJava(interpreter.run());
+        } catch (RuntimeException e) {
+            ScriptException failure = new ScriptException("Runtime Error: " + e.getMessage());
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+    
+    public Program getProgram() {
+        return program;
+    }
+    
+    // An executor for running many programs at once: a virtual thread per task where
+    // the platform has them (Java 21), otherwise one platform thread per processor
+    public static ExecutorService newRunExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+    
+    // The interpreter value for a bound Java object; Integer, Short and Byte become
+    // int, Double and Float double
+    static Value toValue(Object object) {
+        if (object instanceof Value) return (Value) object;
+        if (object == null) return new Value(Value.Type.NULL, null);
+        if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
+            return new Value(Value.Type.INT, ((Number) object).intValue());
+        }
+        if (object instanceof Double || object instanceof Float) {
+            return new Value(Value.Type.DOUBLE, ((Number) object).doubleValue());
+        }
+        if (object instanceof Boolean) return new Value(Value.Type.BOOLEAN, object);
+        if (object instanceof String) return new Value(Value.Type.STRING, object);
+        if (object instanceof JavaObject) return new Value(Value.Type.OBJECT, object);
+        throw new IllegalArgumentException("Cannot bind a " + object.getClass().getName());
+    }
+    
+    static Object toJava(Value value) {
+        switch (value.getType()) {
+            case NULL:
+            case VOID:
+                return null;
+            default:
+                return value.getValue();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package embed;
+
+import interpreter.Interpreter;
+import parser.ModuleLoader;
+import javax.script.ScriptException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// Compiled programs kept in memory for a process that runs many sources, such as one
+// hosting many tenants' scripts, found by the SHA-256 of their source. The cache holds
+// at most 'maxBytes' of estimated program size and evicts the least recently used
+// programs to stay within it; a program larger than the whole budget is compiled but
+// not kept. Programs are held through soft references as well, so under memory
+// pressure the collector may drop them before the budget is reached. A CompiledProgram
+// is safe to run from any number of threads at once, so callers share what get()
+// returns. Two threads missing on the same source at once may both compile it; the
+// first program stored is the one kept and returned to both.
+public final class CompiledProgramCache {
+    // Retained heap of a parsed program per source character, measured on a 100 MB
+    // source (427 MB of AST), plus what every program costs however small
+    static final int BYTES_PER_SOURCE_CHAR = 4;
+    static final int BYTES_PER_PROGRAM = 2048;
+    
+    // Counters since the cache was created, and its size when they were read
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        // Dropped to stay within the budget
+        public final long evictions;
+        // Dropped by the garbage collector
+        public final long collected;
+        public final int programs;
+        public final long bytes;
+        
+        private Stats(long hits, long misses, long evictions, long collected, int programs, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.collected = collected;
+            this.programs = programs;
+            this.bytes = bytes;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses, %d evictions, %d collected, %d programs in %d bytes",
+                hits, misses, evictions, collected, programs, bytes);
+        }
+    }
+    
+    private static final class Entry extends SoftReference<CompiledProgram> {
+        final String key;
+        final long bytes;
+        
+        Entry(String key, CompiledProgram program, long bytes, ReferenceQueue<CompiledProgram> queue) {
+            super(program, queue);
+            this.key = key;
+            this.bytes = bytes;
+        }
+    }
+    
+    private final long maxBytes;
+    private final ModuleLoader modules;
+    private final Interpreter.Dispatch dispatch;
+    // Guarded by this; in access order, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<CompiledProgram> cleared = new ReferenceQueue<>();
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long collected = 0;
+    
+    public CompiledProgramCache(long maxBytes) {
+        this(maxBytes, null, Interpreter.Dispatch.VISITOR);
+    }
+    
+    // Programs are compiled as by CompiledProgram.compile(source, modules, dispatch)
+    public CompiledProgramCache(long maxBytes, ModuleLoader modules, Interpreter.Dispatch dispatch) {
+        this.maxBytes = maxBytes;
+        this.modules = modules;
+        this.dispatch = dispatch;
+    }
+    
+    // The compiled program for 'source', compiling it on a miss. Sources that do not
+    // compile are not remembered; each get() reports their errors again.
+    public CompiledProgram get(String source) throws ScriptException {
+        String key = key(source);
+        synchronized (this) {
+            expunge();
+            Entry entry = entries.get(key);
+            CompiledProgram program = entry != null ? entry.get() : null;
+            if (program != null) {
+                hits++;
+                return program;
+            }
+            misses++;
+        }
+        
+        // Compile outside the lock, so one large source does not hold up every other
+        CompiledProgram program = CompiledProgram.compile(source, modules, dispatch);
+        long size = estimateBytes(source.length());
+        synchronized (this) {
+            expunge();
+            Entry entry = entries.get(key);
+            CompiledProgram stored = entry != null ? entry.get() : null;
+            if (stored != null) {
+                return stored;
+            }
+            if (entry != null) {
+                remove(entry);
+                collected++;
+            }
+            if (size <= maxBytes) {
+                entries.put(key, new Entry(key, program, size, cleared));
+                bytes += size;
+                evict();
+            }
+        }
+        return program;
+    }
+    
+    // Drops entries, least recently used first, until the cache is within budget
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            bytes -= entry.bytes;
+            evictions++;
+        }
+    }
+    
+    // Forgets the entries whose program the collector has dropped
+    private void expunge() {
+        for (Object reference = cleared.poll(); reference != null; reference = cleared.poll()) {
+            Entry entry = (Entry) reference;
+            if (entries.get(entry.key) == entry) {
+                remove(entry);
+                collected++;
+            }
+        }
+    }
+    
+    private void remove(Entry entry) {
+        entries.remove(entry.key);
+        bytes -= entry.bytes;
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+    
+    public synchronized Stats stats() {
+        expunge();
+        return new Stats(hits, misses, evictions, collected, entries.size(), bytes);
+    }
+    
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+    
+    // What a compiled source of 'length' characters is taken to weigh against the
+    // budget. The AST dominates, and grows with the source; imported modules belong to
+    // the ModuleLoader and are not counted.
+    public static long estimateBytes(long length) {
+        return length * BYTES_PER_SOURCE_CHAR + BYTES_PER_PROGRAM;
+    }
+    
+    // Hex SHA-256 of the source's UTF-8 bytes
+    static String key(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package embed;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+// JSR-223 face of CompiledProgram. The global and engine scope bindings, the latter
+// winning, become the program's global variables; eval() returns Main.main()'s result
+// and writes what the program printed to the context's writer once it finishes.
+// compile() gives a CompiledScript that skips parsing on every later eval(); eval()
+// and compile() also find sources seen before in the factory's CompiledProgramCache.
+public class JavaSourceScriptEngine extends AbstractScriptEngine implements Compilable {
+    private final ScriptEngineFactory factory;
+    private final CompiledProgramCache programs;
+    
+    JavaSourceScriptEngine(ScriptEngineFactory factory, CompiledProgramCache programs) {
+        this.factory = factory;
+        this.programs = programs;
+    }
+    
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script).eval(context);
+    }
+    
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+    
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return new Script(programs.get(script));
+    }
+    
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+    
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+    
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+    
+    private static String read(Reader reader) throws ScriptException {
+        StringWriter text = new StringWriter();
+        try {
+            reader.transferTo(text);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return text.toString();
+    }
+    
+    private final class Script extends CompiledScript {
+        private final CompiledProgram program;
+        
+        Script(CompiledProgram program) {
+            this.program = program;
+        }
+        
+        @Override
+        public Object eval(ScriptContext context) throws ScriptException {
+            Map<String, Object> bindings = new HashMap<>();
+            Bindings global = context.getBindings(ScriptContext.GLOBAL_SCOPE);
+            if (global != null) bindings.putAll(global);
+            Bindings engine = context.getBindings(ScriptContext.ENGINE_SCOPE);
+            if (engine != null) bindings.putAll(engine);
+            
+            CompiledProgram.Result result = program.run(bindings);
+            try {
+                Writer writer = context.getWriter();
+                writer.write(result.output);
+                writer.flush();
+            } catch (IOException e) {
+                throw new ScriptException(e);
+            }
+            return result.value;
+        }
+        
+        @Override
+        public ScriptEngine getEngine() {
+            return JavaSourceScriptEngine.this;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package embed;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+// Describes JavaSourceScriptEngine to javax.script. Without a service registration the
+// ScriptEngineManager does not find it by name, so create engines from a factory:
+// new JavaSourceScriptEngineFactory().getScriptEngine()
+public class JavaSourceScriptEngineFactory implements ScriptEngineFactory {
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+    
+    // Shared by this factory's engines, so a source any of them has seen is not
+    // parsed again
+    private final CompiledProgramCache programs;
+    
+    public JavaSourceScriptEngineFactory() {
+        this(DEFAULT_CACHE_BYTES);
+    }
+    
+    public JavaSourceScriptEngineFactory(long cacheBytes) {
+        this.programs = new CompiledProgramCache(cacheBytes);
+    }
+    
+    public CompiledProgramCache getProgramCache() {
+        return programs;
+    }
+    
+    @Override
+    public String getEngineName() {
+        return "Java Source Interpreter";
+    }
+    
+    @Override
+    public String getEngineVersion() {
+        return "1.0";
+    }
+    
+    @Override
+    public List<String> getExtensions() {
+        return List.of("java");
+    }
+    
+    @Override
+    public List<String> getMimeTypes() {
+        return List.of("text/x-java-source");
+    }
+    
+    @Override
+    public List<String> getNames() {
+        return List.of("java-source", "jsi");
+    }
+    
+    @Override
+    public String getLanguageName() {
+        return "Java (subset)";
+    }
+    
+    @Override
+    public String getLanguageVersion() {
+        return "1.0";
+    }
+    
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE: return getEngineName();
+            case ScriptEngine.ENGINE_VERSION: return getEngineVersion();
+            case ScriptEngine.NAME: return getNames().get(0);
+            case ScriptEngine.LANGUAGE: return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION: return getLanguageVersion();
+            // Scripts may be evaluated from several threads; each eval has its own globals
+            case "THREADING": return "MULTITHREADED";
+            default: return null;
+        }
+    }
+    
+    @Override
+    public String getMethodCallSyntax(String object, String method, String... args) {
+        return object + "." + method + "(" + String.join(", ", args) + ")";
+    }
+    
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "System.out.println(" + toDisplay + ");";
+    }
+    
+    // The statements wrapped in Main.main()
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder program = new StringBuilder("class Main {\n    void main() {\n");
+        for (String statement : statements) {
+            program.append("        ").append(statement).append('\n');
+        }
+        return program.append("    }\n}\n").toString();
+    }
+    
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new JavaSourceScriptEngine(this, programs);
+    }
+}
@@ -1,10 +1,12 @@
 package interpreter;
 
-import java.util.HashMap;
-import java.util.Map;
+import lexer.Symbol;
+import lexer.SymbolMap;
+import java.util.function.Consumer;
 
+// Variables are keyed by interned Symbol; the String methods intern the name first
 public class Environment {
-    private final Map<String, Value> values = new HashMap<>();
+    private final SymbolMap<Value> values = new SymbolMap<>();
     private final Environment parent;
     
     // Global environment
@@ -18,38 +20,55 @@ public class Environment {
     }
     
     // Define a new variable in this scope
-    public void define(String name, Value value) {
+    public void define(Symbol name, Value value) {
         values.put(name, value);
     }
     
+    public void define(String name, Value value) {
+        define(Symbol.intern(name), value);
+    }
+    
     // Get a variable value (searches up the scope chain)
-    public Value get(String name) {
-        if (values.containsKey(name)) {
-            return values.get(name);
-        }
-        
-        if (parent != null) {
-            return parent.get(name);
+    public Value get(Symbol name) {
+        for (Environment scope = this; scope != null; scope = scope.parent) {
+            Value value = scope.values.get(name);
+            if (value != null) {
+                return value;
+            }
         }
         
         throw new RuntimeException("Undefined variable: " + name);
     }
     
+    public Value get(String name) {
+        return get(Symbol.intern(name));
+    }
+    
     // Assign to an existing variable (searches up the scope chain)
-    public void assign(String name, Value value) {
-        if (values.containsKey(name)) {
-            values.put(name, value);
-            return;
-        }
-        
-        if (parent != null) {
-            parent.assign(name, value);
-            return;
+    public void assign(Symbol name, Value value) {
+        for (Environment scope = this; scope != null; scope = scope.parent) {
+            if (scope.values.containsKey(name)) {
+                scope.values.put(name, value);
+                return;
+            }
         }
         
         throw new RuntimeException("Undefined variable: " + name);
     }
     
+    public void assign(String name, Value value) {
+        assign(Symbol.intern(name), value);
+    }
+    
+    // The variables of this scope only, for measuring what a run retains
+    void forEachLocal(Consumer<Value> action) {
+        values.forEachValue(action);
+    }
+    
+    Environment getParent() {
+        return parent;
+    }
+    
     // Create a child environment
     public Environment createChild() {
         return new Environment(this);
@@ -57,6 +76,6 @@ public class Environment {
     
     // Check if variable exists in this scope only
     public boolean hasInCurrentScope(String name) {
-        return values.containsKey(name);
+        return values.containsKey(Symbol.intern(name));
     }
 }
\ No newline at end of file
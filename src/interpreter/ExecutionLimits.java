@@ -0,0 +1,31 @@
+package interpreter;
+
+// Budgets for one execution of a program, for running code that is not trusted to
+// stop. Fuel is spent one unit per loop iteration and per method call, the only ways
+// a program can run unboundedly; the timeout is wall-clock time from the start of
+// run(); the depth is how many method calls may be active at once; the heap quota is
+// how many bytes the program's instances and strings may retain (see HeapMeter).
+// Zero means no limit. An execution that exceeds one stops with a
+// LimitExceededException.
+public final class ExecutionLimits {
+    public static final ExecutionLimits NONE = new ExecutionLimits(0, 0, 0, 0);
+    
+    public final long fuel;
+    public final long timeoutMillis;
+    public final int maxDepth;
+    public final long heapBytes;
+    
+    public ExecutionLimits(long fuel, long timeoutMillis, int maxDepth) {
+        this(fuel, timeoutMillis, maxDepth, 0);
+    }
+    
+    public ExecutionLimits(long fuel, long timeoutMillis, int maxDepth, long heapBytes) {
+        if (fuel < 0 || timeoutMillis < 0 || maxDepth < 0 || heapBytes < 0) {
+            throw new IllegalArgumentException("Limits cannot be negative");
+        }
+        this.fuel = fuel;
+        this.timeoutMillis = timeoutMillis;
+        this.maxDepth = maxDepth;
+        this.heapBytes = heapBytes;
+    }
+}
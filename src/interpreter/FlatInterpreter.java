@@ -0,0 +1,816 @@
+package interpreter;
+
+import lexer.Symbol;
+import lexer.SymbolMap;
+import lexer.TokenType;
+import parser.ast.FlatAst;
+import parser.ast.SwitchTable;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Runs a program in its flat encoding (see FlatAst), with the same semantics as
+// Interpreter: lazy class linking, vtables with per-site slot caches, overloads
+// resolved once per site from static types, switch/break and super calls.
+// Nodes are int indexes and every dispatch is a switch on the node's kind byte.
+public class FlatInterpreter {
+    private static final TokenType[] OPERATORS = TokenType.values();
+    
+    private final FlatAst ast;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Environment globals = new Environment();
+    private Environment environment = globals;
+    private JavaObject currentInstance = null;
+    private long firstOutputNanos = -1;
+    
+    private final SymbolMap<Integer> classNodes = new SymbolMap<>();
+    private final SymbolMap<FlatClass> classes = new SymbolMap<>();
+    private final Set<Symbol> linking = new HashSet<>();
+    private final OverloadResolver overloads = new OverloadResolver(this::superclassName);
+    
+    // Per-site caches, indexed by the site number of CALL and NEW nodes
+    private final Symbol[] siteSelectors;
+    private final int[] siteSlots;
+    // For receivers of unknown static type, the class the site's choice was made for
+    // and the chosen method's slot there (see Interpreter.resolveVirtual)
+    private final FlatClass[] siteReceiverClasses;
+    private final int[] siteReceiverSlots;
+    private final int[] siteTargets;
+    private static final int UNRESOLVED = -1;
+    private static final int NO_CONSTRUCTOR = -2;
+    private static final Value[] NO_ARGUMENTS = new Value[0];
+    private static final String[] NO_TYPES = new String[0];
+    
+    private static class ReturnException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final Value value;
+        
+        ReturnException(Value value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+    
+    private static class BreakException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        BreakException() {
+            super(null, null, false, false);
+        }
+    }
+    
+    private static final BreakException BREAK = new BreakException();
+    
+    private static final Symbol MAIN = Symbol.intern("Main");
+    private static final Symbol MAIN_METHOD = Symbol.intern("main");
+    private static final Symbol THIS = Symbol.intern("this");
+    
+    public FlatInterpreter(FlatAst ast) {
+        this(ast, System.out, System.err);
+    }
+    
+    // The program prints to 'out'; runtime errors are reported to 'err'
+    public FlatInterpreter(FlatAst ast, PrintStream out, PrintStream err) {
+        this.ast = ast;
+        this.out = out;
+        this.err = err;
+        this.siteSelectors = new Symbol[ast.siteCount()];
+        this.siteSlots = new int[ast.siteCount()];
+        this.siteReceiverClasses = new FlatClass[ast.siteCount()];
+        this.siteReceiverSlots = new int[ast.siteCount()];
+        this.siteTargets = new int[ast.siteCount()];
+        Arrays.fill(siteSlots, -1);
+        Arrays.fill(siteTargets, UNRESOLVED);
+    }
+    
+    public void interpret() {
+        try {
+            int root = ast.root();
+            for (int i = 0; i < ast.listSize(root); i++) {
+                int declaration = ast.listItem(root, i);
+                if (ast.kind(declaration) == FlatAst.CLASS) {
+                    classNodes.put(ast.symbol(ast.a(declaration)), declaration);
+                }
+            }
+            
+            FlatClass mainClass = findClass(MAIN);
+            if (mainClass == null) {
+                throw new RuntimeException("No Main class found");
+            }
+            
+            List<Integer> mains = mainClass.overloads(MAIN_METHOD, 0);
+            if (mains.size() != 1) {
+                throw new RuntimeException("No main() method found in Main class");
+            }
+            
+            currentInstance = mainClass.instantiate();
+            executeList(ast.a(ast.extra(ast.c(mains.get(0)))), environment);
+            
+        } catch (ReturnException e) {
+            // Main completed with return
+        } catch (RuntimeException e) {
+            err.println("Runtime Error: " + e.getMessage());
+            e.printStackTrace(err);
+        }
+    }
+    
+    // System.nanoTime() of the first println, or -1 if nothing was printed
+    public long getFirstOutputNanos() {
+        return firstOutputNanos;
+    }
+    
+    public int getClassCount() {
+        return classNodes.size();
+    }
+    
+    public int getLinkedClassCount() {
+        return classes.size();
+    }
+    
+    // ========== Expressions ==========
+    
+    private Value evaluate(int node) {
+        switch (ast.kind(node)) {
+            case FlatAst.BINARY: return binary(node);
+            case FlatAst.LITERAL: return literal(ast.a(node));
+            case FlatAst.VARIABLE: return environment.get(ast.symbol(ast.a(node)));
+            case FlatAst.ASSIGN: {
+                Value value = evaluate(ast.b(node));
+                environment.assign(ast.symbol(ast.a(node)), value);
+                return value;
+            }
+            case FlatAst.UNARY: return unary(node);
+            case FlatAst.CALL: return call(node);
+            case FlatAst.PRINTLN: return println(node);
+            case FlatAst.GET: return asObject(evaluate(ast.a(node))).get(ast.symbol(ast.b(node)));
+            case FlatAst.SET: {
+                JavaObject object = asObject(evaluate(ast.a(node)));
+                Value value = evaluate(ast.c(node));
+                object.set(ast.symbol(ast.b(node)), value);
+                return value;
+            }
+            case FlatAst.NEW: return instantiate(node);
+            case FlatAst.THIS: {
+                if (currentInstance == null) {
+                    throw new RuntimeException("Cannot use 'this' outside of a class");
+                }
+                return new Value(Value.Type.OBJECT, currentInstance);
+            }
+            case FlatAst.SUPER:
+                throw new RuntimeException("'super' can only be used to call a superclass method");
+            default:
+                throw new IllegalStateException("Not an expression: kind " + ast.kind(node));
+        }
+    }
+    
+    private Value binary(int node) {
+        Value left = evaluate(ast.a(node));
+        Value right = evaluate(ast.c(node));
+        TokenType operator = OPERATORS[ast.b(node)];
+        
+        switch (operator) {
+            case PLUS: return left.add(right);
+            case MINUS: return left.subtract(right);
+            case STAR: return left.multiply(right);
+            case SLASH: return left.divide(right);
+            case PERCENT: return left.modulo(right);
+            case EQUAL_EQUAL: return left.equals(right);
+            case BANG_EQUAL: return left.notEquals(right);
+            case LESS: return left.lessThan(right);
+            case LESS_EQUAL: return left.lessOrEqual(right);
+            case GREATER: return left.greaterThan(right);
+            case GREATER_EQUAL: return left.greaterOrEqual(right);
+            case AND: return left.and(right);
+            case OR: return left.or(right);
+            default:
+                throw new RuntimeException("Unknown binary operator: " + operator);
+        }
+    }
+    
+    private Value unary(int node) {
+        Value right = evaluate(ast.b(node));
+        TokenType operator = OPERATORS[ast.a(node)];
+        
+        switch (operator) {
+            case MINUS: return right.negate();
+            case BANG: return right.not();
+            default:
+                throw new RuntimeException("Unknown unary operator: " + operator);
+        }
+    }
+    
+    private Value literal(int constant) {
+        if (constant < 0) {
+            return new Value(Value.Type.NULL, null);
+        }
+        
+        Object value = ast.constant(constant);
+        if (value instanceof Integer) return new Value(Value.Type.INT, value);
+        if (value instanceof Double) return new Value(Value.Type.DOUBLE, value);
+        if (value instanceof Boolean) return new Value(Value.Type.BOOLEAN, value);
+        if (value instanceof String) return new Value(Value.Type.STRING, value);
+        
+        throw new RuntimeException("Unknown literal type: " + value.getClass());
+    }
+    
+    private Value println(int node) {
+        int arguments = ast.a(node);
+        if (ast.listSize(arguments) != 1) {
+            throw new RuntimeException("println expects 1 argument");
+        }
+        Value arg = evaluate(ast.listItem(arguments, 0));
+        if (firstOutputNanos < 0) {
+            firstOutputNanos = System.nanoTime();
+        }
+        out.println(arg.toString());
+        return new Value(Value.Type.VOID, null);
+    }
+    
+    private static JavaObject asObject(Value value) {
+        if (value.getType() != Value.Type.OBJECT) {
+            throw new RuntimeException("Only objects have fields");
+        }
+        return value.asObject();
+    }
+    
+    // ========== Calls ==========
+    
+    private Value call(int node) {
+        int callee = ast.a(node);
+        switch (ast.kind(callee)) {
+            case FlatAst.GET: {
+                Value objectValue = evaluate(ast.a(callee));
+                if (objectValue.getType() != Value.Type.OBJECT) {
+                    throw new RuntimeException("Cannot call method on non-object");
+                }
+                return invokeVirtual(node, ast.symbol(ast.b(callee)), objectValue.asObject());
+            }
+            case FlatAst.VARIABLE:
+                if (currentInstance == null) {
+                    throw new RuntimeException("Cannot call a method outside of a class");
+                }
+                return invokeVirtual(node, ast.symbol(ast.a(callee)), currentInstance);
+            case FlatAst.SUPER:
+                return invokeSuper(node, callee);
+            default:
+                throw new RuntimeException("Can only call methods");
+        }
+    }
+    
+    private Value invokeVirtual(int node, Symbol name, JavaObject object) {
+        Value[] arguments = evaluateArguments(ast.b(node));
+        int site = ast.c(node);
+        FlatClass klass = classes.get(object.getClassSymbol());
+        
+        // As in Interpreter.invokeVirtual: the slot cache is checked first, then the
+        // choice made for the receiver's class when its static type is unknown
+        Symbol selector = siteSelectors[site];
+        int slot = siteSlots[site];
+        if (selector != null && klass.hasSlot(slot, selector)) {
+            return callMethod(klass.methodAt(slot), arguments, object);
+        }
+        if (siteReceiverClasses[site] == klass) {
+            return callMethod(klass.methodAt(siteReceiverSlots[site]), arguments, object);
+        }
+        
+        if (selector == null) {
+            int target = resolveVirtual(site, name, klass, arguments);
+            if (siteSelectors[site] == null) {
+                // Chosen for this receiver's class or from this call's argument values,
+                // which another call may not share; still dispatched on the receiver
+                int own = klass.slotOf(selector(target));
+                return callMethod(own >= 0 ? klass.methodAt(own) : target, arguments, object);
+            }
+            selector = siteSelectors[site];
+        }
+        slot = klass.slotOf(selector);
+        if (slot < 0) {
+            throw new RuntimeException("Undefined method: " + selector + " in class " + klass.name);
+        }
+        siteSlots[site] = slot;
+        return callMethod(klass.methodAt(slot), arguments, object);
+    }
+    
+    private int resolveVirtual(int site, Symbol name, FlatClass receiverClass, Value[] arguments) {
+        String receiverType = ast.receiverType(site);
+        FlatClass declared = receiverType != null ? findClass(Symbol.intern(receiverType)) : null;
+        FlatClass klass = declared != null ? declared : receiverClass;
+        List<Integer> candidates = klass.overloads(name, arguments.length);
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("Undefined method: " + name + "/" + arguments.length);
+        }
+        int target = resolveStatically(name.name, candidates, ast.argumentTypes(site));
+        if (target < 0) {
+            return resolveDynamically(name.name, candidates, arguments);
+        }
+        if (declared != null) {
+            siteSelectors[site] = selector(target);
+        } else {
+            siteReceiverSlots[site] = receiverClass.slotOf(selector(target));
+            siteReceiverClasses[site] = receiverClass;
+        }
+        return target;
+    }
+    
+    private Value invokeSuper(int node, int callee) {
+        Value[] arguments = evaluateArguments(ast.b(node));
+        int site = ast.c(node);
+        
+        int target = siteTargets[site];
+        if (target == UNRESOLVED || ast.a(callee) < 0) {
+            Symbol enclosingName = ast.symbol(ast.b(callee));
+            FlatClass enclosing = findClass(enclosingName);
+            FlatClass superclass = enclosing != null ? enclosing.superclass : null;
+            if (superclass == null) {
+                throw new RuntimeException("Class " + enclosingName + " has no superclass");
+            }
+            
+            if (ast.a(callee) < 0) {
+                // As at a 'new' site, the constructor is kept unless it depends on runtime types
+                if (target == UNRESOLVED) {
+                    String[] argumentTypes = ast.argumentTypes(site);
+                    target = resolveConstructor(superclass, argumentTypes, arguments);
+                    if (superclass.constructors(arguments.length).size() <= 1 || OverloadResolver.allKnown(argumentTypes)) {
+                        siteTargets[site] = target;
+                    }
+                }
+                runConstructor(superclass, target, arguments, currentInstance);
+                return new Value(Value.Type.VOID, null);
+            }
+            
+            Symbol name = ast.symbol(ast.a(callee));
+            List<Integer> candidates = superclass.overloads(name, arguments.length);
+            if (candidates.isEmpty()) {
+                throw new RuntimeException("Undefined method in superclass: " + name);
+            }
+            target = resolveStatically(name.name, candidates, ast.argumentTypes(site));
+            if (target >= 0) {
+                siteTargets[site] = target;
+            } else {
+                target = resolveDynamically(name.name, candidates, arguments);
+            }
+        }
+        
+        return callMethod(target, arguments, currentInstance);
+    }
+    
+    private Value[] evaluateArguments(int list) {
+        Value[] values = new Value[ast.listSize(list)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(ast.listItem(list, i));
+        }
+        return values;
+    }
+    
+    private Value callMethod(int method, Value[] argValues, JavaObject instance) {
+        int signature = ast.c(method);
+        
+        Environment previous = this.environment;
+        JavaObject previousInstance = this.currentInstance;
+        
+        try {
+            this.environment = new Environment(globals);
+            this.currentInstance = instance;
+            this.environment.define(THIS, new Value(Value.Type.OBJECT, instance));
+            
+            for (int i = 0; i < argValues.length; i++) {
+                this.environment.define(ast.symbol(ast.extra(signature + 3 + 2 * i)), argValues[i]);
+            }
+            
+            try {
+                executeList(ast.a(ast.extra(signature)), this.environment);
+            } catch (ReturnException returnValue) {
+                return returnValue.value;
+            }
+            
+            // No explicit return - return void or default value (constructors return void)
+            return ast.b(method) < 0 ? new Value(Value.Type.VOID, null) : defaultValue(ast.name(ast.b(method)));
+            
+        } finally {
+            this.environment = previous;
+            this.currentInstance = previousInstance;
+        }
+    }
+    
+    private static Value defaultValue(String type) {
+        switch (type) {
+            case "void": return new Value(Value.Type.VOID, null);
+            case "int": return new Value(Value.Type.INT, 0);
+            case "double": return new Value(Value.Type.DOUBLE, 0.0);
+            case "boolean": return new Value(Value.Type.BOOLEAN, false);
+            default: return new Value(Value.Type.NULL, null);
+        }
+    }
+    
+    private Value instantiate(int node) {
+        Symbol className = ast.symbol(ast.a(node));
+        FlatClass klass = findClass(className);
+        if (klass == null) {
+            throw new RuntimeException("Undefined class: " + className);
+        }
+        
+        JavaObject instance = klass.instantiate();
+        
+        // Field initializers, inherited ones first
+        JavaObject previousInstance = this.currentInstance;
+        try {
+            this.currentInstance = instance;
+            for (int field : klass.fields.values()) {
+                if (ast.c(field) >= 0) {
+                    instance.set(ast.symbol(ast.b(field)), evaluate(ast.c(field)));
+                }
+            }
+        } finally {
+            this.currentInstance = previousInstance;
+        }
+        
+        Value[] arguments = evaluateArguments(ast.b(node));
+        int site = ast.c(node);
+        int constructor = siteTargets[site];
+        if (constructor == UNRESOLVED) {
+            String[] argumentTypes = ast.argumentTypes(site);
+            constructor = resolveConstructor(klass, argumentTypes, arguments);
+            if (klass.constructors(arguments.length).size() <= 1 || OverloadResolver.allKnown(argumentTypes)) {
+                siteTargets[site] = constructor;
+            }
+        }
+        runConstructor(klass, constructor, arguments, instance);
+        
+        return new Value(Value.Type.OBJECT, instance);
+    }
+    
+    // The constructor node of klass for these arguments; NO_CONSTRUCTOR when it declares none
+    private int resolveConstructor(FlatClass klass, String[] argumentTypes, Value[] arguments) {
+        List<Integer> candidates = klass.constructors(arguments.length);
+        if (candidates.isEmpty()) {
+            if (!klass.hasConstructors() && arguments.length == 0) {
+                return NO_CONSTRUCTOR;
+            }
+            throw new RuntimeException("Class " + klass.name + " has no constructor taking " +
+                arguments.length + " arguments");
+        }
+        int constructor = resolveStatically(klass.name.name, candidates, argumentTypes);
+        return constructor >= 0 ? constructor : resolveDynamically(klass.name.name, candidates, arguments);
+    }
+    
+    private void runConstructor(FlatClass klass, int constructor, Value[] arguments, JavaObject instance) {
+        if (klass.superclass != null && (constructor == NO_CONSTRUCTOR || !startsWithSuperCall(constructor))) {
+            int implicit = klass.superclass.noArgumentConstructor;
+            if (implicit == UNRESOLVED) {
+                // Reports the missing or ambiguous no-argument constructor
+                implicit = resolveConstructor(klass.superclass, NO_TYPES, NO_ARGUMENTS);
+            }
+            runConstructor(klass.superclass, implicit, NO_ARGUMENTS, instance);
+        }
+        
+        if (constructor != NO_CONSTRUCTOR) {
+            callMethod(constructor, arguments, instance);
+        }
+    }
+    
+    private boolean startsWithSuperCall(int constructor) {
+        int statements = ast.a(ast.extra(ast.c(constructor)));
+        if (ast.listSize(statements) == 0) return false;
+        int first = ast.listItem(statements, 0);
+        if (ast.kind(first) != FlatAst.EXPRESSION) return false;
+        int expr = ast.a(first);
+        return ast.kind(expr) == FlatAst.CALL && ast.kind(ast.a(expr)) == FlatAst.SUPER && ast.a(ast.a(expr)) < 0;
+    }
+    
+    private int resolveStatically(String name, List<Integer> candidates, String[] argumentTypes) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        int index = overloads.resolveStatically(name, parameterTypes(candidates), argumentTypes);
+        return index < 0 ? -1 : candidates.get(index);
+    }
+    
+    private int resolveDynamically(String name, List<Integer> candidates, Value[] arguments) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        return candidates.get(overloads.resolveDynamically(name, parameterTypes(candidates), arguments));
+    }
+    
+    private List<String[]> parameterTypes(List<Integer> methods) {
+        List<String[]> types = new ArrayList<>(methods.size());
+        for (int method : methods) {
+            int signature = ast.c(method);
+            String[] parameterTypes = new String[ast.extra(signature + 1)];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = ast.name(ast.extra(signature + 2 + 2 * i));
+            }
+            types.add(parameterTypes);
+        }
+        return types;
+    }
+    
+    // Same selectors as JavaClass.selector, e.g. "add(int,double)"
+    private Symbol selector(int method) {
+        int signature = ast.c(method);
+        StringBuilder builder = new StringBuilder(ast.name(ast.a(method))).append('(');
+        for (int i = 0; i < ast.extra(signature + 1); i++) {
+            if (i > 0) builder.append(',');
+            builder.append(ast.name(ast.extra(signature + 2 + 2 * i)));
+        }
+        return Symbol.intern(builder.append(')').toString());
+    }
+    
+    // ========== Statements ==========
+    
+    private void execute(int node) {
+        switch (ast.kind(node)) {
+            case FlatAst.EXPRESSION:
+                evaluate(ast.a(node));
+                break;
+            case FlatAst.VAR_DECL:
+                defineVariable(node);
+                break;
+            case FlatAst.BLOCK:
+                executeList(ast.a(node), new Environment(environment));
+                break;
+            case FlatAst.IF:
+                if (evaluate(ast.a(node)).asBoolean()) {
+                    execute(ast.b(node));
+                } else if (ast.c(node) >= 0) {
+                    execute(ast.c(node));
+                }
+                break;
+            case FlatAst.WHILE:
+                try {
+                    while (evaluate(ast.a(node)).asBoolean()) {
+                        execute(ast.b(node));
+                    }
+                } catch (BreakException e) {
+                    // Loop exited with break
+                }
+                break;
+            case FlatAst.FOR:
+                executeFor(node);
+                break;
+            case FlatAst.RETURN:
+                throw new ReturnException(ast.a(node) >= 0 ? evaluate(ast.a(node)) : new Value(Value.Type.VOID, null));
+            case FlatAst.BREAK:
+                throw BREAK;
+            case FlatAst.SWITCH:
+                executeSwitch(node);
+                break;
+            case FlatAst.TOP_LEVEL:
+                execute(ast.a(node));
+                break;
+            default:
+                throw new IllegalStateException("Not a statement: kind " + ast.kind(node));
+        }
+    }
+    
+    private void defineVariable(int node) {
+        Value value;
+        if (ast.c(node) >= 0) {
+            value = evaluate(ast.c(node));
+        } else {
+            value = defaultValue(ast.name(ast.a(node)));
+            if (value.getType() == Value.Type.VOID) {
+                value = new Value(Value.Type.NULL, null);
+            }
+        }
+        environment.define(ast.symbol(ast.b(node)), value);
+    }
+    
+    private void executeList(int list, Environment blockEnv) {
+        Environment previous = this.environment;
+        try {
+            this.environment = blockEnv;
+            int size = ast.listSize(list);
+            for (int i = 0; i < size; i++) {
+                execute(ast.listItem(list, i));
+            }
+        } finally {
+            this.environment = previous;
+        }
+    }
+    
+    private void executeFor(int node) {
+        int initializer = ast.a(node);
+        int condition = ast.b(node);
+        int increment = ast.extra(ast.c(node));
+        int body = ast.extra(ast.c(node) + 1);
+        
+        Environment previous = this.environment;
+        try {
+            this.environment = new Environment(environment);
+            if (initializer >= 0) {
+                execute(initializer);
+            }
+            while (condition < 0 || evaluate(condition).asBoolean()) {
+                execute(body);
+                if (increment >= 0) {
+                    evaluate(increment);
+                }
+            }
+        } catch (BreakException e) {
+            // Loop exited with break
+        } finally {
+            this.environment = previous;
+        }
+    }
+    
+    private void executeSwitch(int node) {
+        Value subject = evaluate(ast.a(node));
+        SwitchTable table = (SwitchTable) ast.constant(ast.c(node));
+        
+        int entry;
+        if (subject.getType() == Value.Type.INT) {
+            entry = table.entryFor(subject.asInt());
+        } else if (subject.getType() == Value.Type.STRING) {
+            entry = table.entryFor(subject.asString());
+        } else {
+            throw new RuntimeException("Cannot switch on " + subject.getType());
+        }
+        
+        if (entry < 0) {
+            return;
+        }
+        
+        Environment previous = this.environment;
+        try {
+            this.environment = new Environment(environment);
+            int body = ast.b(node);
+            for (int i = entry; i < ast.listSize(body); i++) {
+                execute(ast.listItem(body, i));
+            }
+        } catch (BreakException e) {
+            // Switch exited with break
+        } finally {
+            this.environment = previous;
+        }
+    }
+    
+    // ========== Classes ==========
+    
+    private FlatClass findClass(Symbol name) {
+        FlatClass klass = classes.get(name);
+        if (klass != null) {
+            return klass;
+        }
+        Integer node = classNodes.get(name);
+        return node != null ? linkClass(node) : null;
+    }
+    
+    private String superclassName(String className) {
+        Integer node = classNodes.get(Symbol.intern(className));
+        return node != null && ast.b(node) >= 0 ? ast.name(ast.b(node)) : null;
+    }
+    
+    private FlatClass linkClass(int node) {
+        Symbol name = ast.symbol(ast.a(node));
+        FlatClass klass = classes.get(name);
+        if (klass != null) {
+            return klass;
+        }
+        
+        if (!linking.add(name)) {
+            throw new RuntimeException("Cyclic inheritance involving class " + name);
+        }
+        
+        FlatClass superclass = null;
+        if (ast.b(node) >= 0) {
+            Symbol superName = ast.symbol(ast.b(node));
+            Integer superNode = classNodes.get(superName);
+            if (superNode == null) {
+                throw new RuntimeException("Undefined superclass: " + superName);
+            }
+            superclass = linkClass(superNode);
+        }
+        
+        klass = new FlatClass(node, superclass);
+        classes.put(name, klass);
+        linking.remove(name);
+        return klass;
+    }
+    
+    // Runtime class over the flat encoding; mirrors JavaClass with method nodes
+    // in place of Declaration.Method objects
+    private class FlatClass {
+        final Symbol name;
+        final FlatClass superclass;
+        // Field name to its VAR_DECL node, inherited fields first
+        final Map<Symbol, Integer> fields = new LinkedHashMap<>();
+        final SymbolMap<Integer> slots;
+        final Symbol[] selectors;
+        final int[] vtable;
+        final Map<Integer, List<Integer>> constructors = new HashMap<>();
+        final SymbolMap<List<List<Integer>>> overloads = new SymbolMap<>();
+        final boolean declaresConstructors;
+        // The constructor an implicit super() runs: NO_CONSTRUCTOR when none is declared,
+        // UNRESOLVED when there is no single one taking no arguments
+        final int noArgumentConstructor;
+        
+        FlatClass(int node, FlatClass superclass) {
+            this.name = ast.symbol(ast.a(node));
+            this.superclass = superclass;
+            
+            int fieldList = ast.c(node);
+            int constructorList = ast.listEnd(fieldList);
+            int methodList = ast.listEnd(constructorList);
+            
+            if (superclass != null) {
+                fields.putAll(superclass.fields);
+            }
+            for (int i = 0; i < ast.listSize(fieldList); i++) {
+                int field = ast.listItem(fieldList, i);
+                fields.put(ast.symbol(ast.b(field)), field);
+            }
+            
+            declaresConstructors = ast.listSize(constructorList) > 0;
+            for (int i = 0; i < ast.listSize(constructorList); i++) {
+                int constructor = ast.listItem(constructorList, i);
+                constructors.computeIfAbsent(arity(constructor), k -> new ArrayList<>()).add(constructor);
+            }
+            List<Integer> noArguments = constructors(0);
+            noArgumentConstructor = !declaresConstructors ? NO_CONSTRUCTOR
+                : noArguments.size() == 1 ? noArguments.get(0) : UNRESOLVED;
+            
+            SymbolMap<Integer> slotMap = superclass != null ? new SymbolMap<>(superclass.slots) : new SymbolMap<>();
+            int methodCount = ast.listSize(methodList);
+            Symbol[] selectorTable = Arrays.copyOf(superclass != null ? superclass.selectors : new Symbol[0],
+                slotMap.size() + methodCount);
+            int[] methodTable = Arrays.copyOf(superclass != null ? superclass.vtable : new int[0],
+                slotMap.size() + methodCount);
+            int size = slotMap.size();
+            
+            for (int i = 0; i < methodCount; i++) {
+                int method = ast.listItem(methodList, i);
+                Symbol selector = selector(method);
+                Integer slot = slotMap.get(selector);
+                if (slot == null) {
+                    slot = size++;
+                    slotMap.put(selector, slot);
+                    selectorTable[slot] = selector;
+                }
+                methodTable[slot] = method;
+            }
+            
+            this.slots = slotMap;
+            this.selectors = Arrays.copyOf(selectorTable, size);
+            this.vtable = Arrays.copyOf(methodTable, size);
+            
+            for (int method : vtable) {
+                List<List<Integer>> byArity = overloads.get(ast.symbol(ast.a(method)));
+                if (byArity == null) {
+                    byArity = new ArrayList<>();
+                    overloads.put(ast.symbol(ast.a(method)), byArity);
+                }
+                while (byArity.size() <= arity(method)) {
+                    byArity.add(new ArrayList<>());
+                }
+                byArity.get(arity(method)).add(method);
+            }
+        }
+        
+        private int arity(int method) {
+            return ast.extra(ast.c(method) + 1);
+        }
+        
+        JavaObject instantiate() {
+            return new JavaObject(null, name, fields.keySet());
+        }
+        
+        List<Integer> overloads(Symbol methodName, int arity) {
+            List<List<Integer>> byArity = overloads.get(methodName);
+            if (byArity == null || arity >= byArity.size()) {
+                return Collections.emptyList();
+            }
+            return byArity.get(arity);
+        }
+        
+        List<Integer> constructors(int arity) {
+            List<Integer> candidates = constructors.get(arity);
+            return candidates != null ? candidates : Collections.emptyList();
+        }
+        
+        boolean hasConstructors() {
+            return declaresConstructors;
+        }
+        
+        int slotOf(Symbol selector) {
+            Integer slot = slots.get(selector);
+            return slot != null ? slot : -1;
+        }
+        
+        boolean hasSlot(int slot, Symbol selector) {
+            return slot >= 0 && slot < selectors.length && selectors[slot] == selector;
+        }
+        
+        int methodAt(int slot) {
+            return vtable[slot];
+        }
+    }
+}
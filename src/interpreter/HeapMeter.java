@@ -0,0 +1,108 @@
+package interpreter;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+// Estimates of the heap a program's own values take: its instances, with their fields,
+// and its strings. Sizes assume a 64-bit JVM with compressed references and compact
+// strings; interpreter bookkeeping (environments, call frames, boxed numbers) is not
+// counted. Allocation is counted where it happens, which costs an add and a compare;
+// what is retained is measured now and then by walking everything a run can still
+// reach, and only when allocation has grown enough to pay for the walk.
+final class HeapMeter {
+    // A JavaObject and its field map (two arrays of eight slots), before its fields
+    static final int OBJECT_BYTES = 88;
+    // A field's slot in both arrays and its Value
+    static final int FIELD_BYTES = 32;
+    // A Value, its String and the String's byte[], before the characters
+    static final int STRING_BYTES = 64;
+    // Length taken for the text of a number, boolean or null joined to a string
+    static final int OTHER_TEXT_LENGTH = 12;
+    // The least allocation between two measurements of what is retained, unless the
+    // quota is nearer (see Interpreter.measureInterval)
+    static final long MIN_INTERVAL = 1 << 20;
+    // Allocation between measurements per byte last retained; a walk then costs at
+    // most a fraction of the allocating that led up to it
+    static final int INTERVAL_RATIO = 4;
+    
+    private HeapMeter() {}
+    
+    static long objectBytes(int fields) {
+        return OBJECT_BYTES + (long) FIELD_BYTES * fields;
+    }
+    
+    // What joining two values with + allocates, when either is a string
+    static long concatenationBytes(Value left, Value right) {
+        return STRING_BYTES + (long) textLength(left) + textLength(right);
+    }
+    
+    private static int textLength(Value value) {
+        return value.getType() == Value.Type.STRING ? ((String) value.getValue()).length() : OTHER_TEXT_LENGTH;
+    }
+    
+    // Bytes of instances and strings reachable from the given scopes (each with its
+    // enclosing ones) and instances, counting each instance and string once
+    static long retained(Environment[] scopes, int scopeCount, JavaObject... instances) {
+        IdentitySet seen = new IdentitySet();
+        ArrayDeque<Value> pending = new ArrayDeque<>();
+        Consumer<Value> reach = pending::push;
+        for (int i = 0; i < scopeCount; i++) {
+            for (Environment scope = scopes[i]; scope != null; scope = scope.getParent()) {
+                if (!seen.add(scope)) break;
+                scope.forEachLocal(reach);
+            }
+        }
+        for (JavaObject instance : instances) {
+            if (instance != null) {
+                pending.push(new Value(Value.Type.OBJECT, instance));
+            }
+        }
+        
+        long bytes = 0;
+        while (!pending.isEmpty()) {
+            Value value = pending.pop();
+            Value.Type type = value.getType();
+            if (type != Value.Type.STRING && type != Value.Type.OBJECT) continue;
+            Object referent = value.getValue();
+            if (!seen.add(referent)) continue;
+            if (type == Value.Type.STRING) {
+                bytes += STRING_BYTES + ((String) referent).length();
+            } else {
+                JavaObject object = (JavaObject) referent;
+                bytes += objectBytes(object.fieldCount());
+                object.forEachField(reach);
+            }
+        }
+        return bytes;
+    }
+    
+    // Objects compared by identity, in open addressing. Unlike IdentityHashMap it
+    // stores no values and spreads identity hashes, which are often sequential.
+    private static final class IdentitySet {
+        private Object[] slots = new Object[256];
+        private int size = 0;
+        
+        // False if it was already there
+        boolean add(Object object) {
+            int mask = slots.length - 1;
+            int hash = System.identityHashCode(object) * 0x9E3779B9;
+            int i = (hash ^ hash >>> 16) & mask;
+            for (Object slot = slots[i]; slot != null; slot = slots[i]) {
+                if (slot == object) return false;
+                i = (i + 1) & mask;
+            }
+            slots[i] = object;
+            if (++size * 2 > slots.length) grow();
+            return true;
+        }
+        
+        private void grow() {
+            Object[] old = slots;
+            slots = new Object[old.length * 2];
+            size = 0;
+            for (Object object : old) {
+                if (object != null) add(object);
+            }
+        }
+    }
+}
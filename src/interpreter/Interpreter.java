@@ -1,18 +1,63 @@
 package interpreter;
 
+import lexer.Symbol;
 import lexer.Token;
 import lexer.TokenType;
 import parser.ast.*;
-import java.util.HashMap;
+import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+// One execution of a Program. Everything a run changes (variables, the current
+// instance, output) lives here, while classes and call-site caches are shared through
+// the Program, so many Interpreters can run one Program concurrently, one per thread.
 public class Interpreter implements Visitor<Value> {
+    // How evaluate/execute pick the code for a node: double dispatch through
+    // accept(), or a switch on the sealed node kind
+    public enum Dispatch {
+        VISITOR, SWITCH
+    }
+    
+    private final Dispatch dispatch;
+    private final PrintStream out;
+    private Program program;
+    private OverloadResolver overloads;
     private final Environment globals = new Environment();
     private Environment environment = globals;
-    private final Map<String, JavaClass> classes = new HashMap<>();
+    
+    // Startup statistics
+    private long firstOutputNanos = -1;
     private JavaObject currentInstance = null;
     
+    // Metering (see step). Fuel is handed out in slices of at most CHECK_INTERVAL
+    // steps; 'ticks' counts down the current one, so a step costs a decrement and a
+    // compare, and the limits and the interrupt flag are looked at once per slice.
+    private static final int CHECK_INTERVAL = 1024;
+    private ExecutionLimits limits = ExecutionLimits.NONE;
+    private long fuelLeft = Long.MAX_VALUE;
+    private int slice = CHECK_INTERVAL;
+    private int ticks = CHECK_INTERVAL;
+    // The time limit, if any, counted from when run() started
+    private boolean timed = false;
+    private long startNanos = 0;
+    private long timeoutNanos = Long.MAX_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int depth = 0;
+    // The caller's scope for each active call, so measuring the heap finds every
+    // variable still in use
+    private Environment[] frames = new Environment[16];
+    
+    // Heap accounting (see HeapMeter); retained bytes are measured again once
+    // allocatedBytes reaches nextMeasure
+    private long heapQuota = Long.MAX_VALUE;
+    private long allocatedBytes = 0;
+    private long nextMeasure = HeapMeter.MIN_INTERVAL;
+    private long peakRetainedBytes = -1;
+    // Main.main()'s instance, which no scope binds as 'this'
+    private JavaObject mainInstance = null;
+    
     // Return value exception for control flow
     private static class ReturnException extends RuntimeException {
         final Value value;
@@ -22,36 +67,113 @@ public class Interpreter implements Visitor<Value> {
         }
     }
     
+    // Break exception for leaving loops and switches; carries no state, so one instance is shared
+    private static class BreakException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        BreakException() {
+            super(null, null, false, false);
+        }
+    }
+    
+    private static final BreakException BREAK = new BreakException();
+    
+    private static final Symbol MAIN = Symbol.intern("Main");
+    private static final Symbol MAIN_METHOD = Symbol.intern("main");
+    private static final Symbol THIS = Symbol.intern("this");
+    // Arguments and their types for an implicit super()
+    private static final Value[] NO_ARGUMENTS = new Value[0];
+    private static final String[] NO_TYPES = new String[0];
+    
+    public Interpreter() {
+        this(Dispatch.VISITOR);
+    }
+    
+    public Interpreter(Dispatch dispatch) {
+        this(dispatch, System.out);
+    }
+    
+    // System.out.println in the program prints to 'out'
+    public Interpreter(Dispatch dispatch, PrintStream out) {
+        this.dispatch = dispatch;
+        this.out = out;
+    }
+    
+    // An execution of a shared program; start it with run()
+    public Interpreter(Program program, Dispatch dispatch, PrintStream out) {
+        this(dispatch, out);
+        use(program);
+    }
+    
+    private void use(Program program) {
+        this.program = program;
+        this.overloads = program.getOverloads();
+    }
+    
+    // Budgets for the next run(); the timeout starts counting when it does
+    public void setLimits(ExecutionLimits limits) {
+        this.limits = limits;
+        this.fuelLeft = limits.fuel > 0 ? limits.fuel : Long.MAX_VALUE;
+        this.slice = (int) Math.min(CHECK_INTERVAL, fuelLeft);
+        this.ticks = slice;
+        this.maxDepth = limits.maxDepth > 0 ? limits.maxDepth : Integer.MAX_VALUE;
+        this.heapQuota = limits.heapBytes > 0 ? limits.heapBytes : Long.MAX_VALUE;
+        this.nextMeasure = allocatedBytes + measureInterval(0);
+    }
+    
+    // Makes 'value' a global variable, visible in every method unless shadowed
+    public void defineGlobal(Symbol name, Value value) {
+        globals.define(name, value);
+    }
+    
+    // Runs the program, reporting a runtime error instead of throwing it
     public void interpret(List<Declaration> declarations) {
         try {
-            // First pass: register all classes
-            for (Declaration declaration : declarations) {
-                if (declaration instanceof Declaration.Class) {
-                    declaration.accept(this);
-                }
-            }
-            
+            run(declarations);
+        } catch (RuntimeException e) {
+            System.err.println("Runtime Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    // Runs the declarations as a program of their own
+    public Value run(List<Declaration> declarations) {
+        use(new Program(declarations));
+        return run();
+    }
+    
+    // Runs Main.main() and returns the value it returns (VOID if none); runtime
+    // errors are thrown to the caller
+    public Value run() {
+        if (limits.timeoutMillis > 0) {
+            // Saturates, so a huge timeout means no deadline rather than one in the past
+            timed = true;
+            startNanos = System.nanoTime();
+            timeoutNanos = TimeUnit.MILLISECONDS.toNanos(limits.timeoutMillis);
+        }
+        try {
             // Find and execute Main.main()
-            JavaClass mainClass = classes.get("Main");
+            JavaClass mainClass = findClass(MAIN);
             if (mainClass == null) {
                 throw new RuntimeException("No Main class found");
             }
             
-            Declaration.Method mainMethod = mainClass.findMethod("main");
+            Declaration.Method mainMethod = mainClass.findMethod(MAIN_METHOD, 0);
             if (mainMethod == null) {
                 throw new RuntimeException("No main() method found in Main class");
             }
             
             // Create Main instance and call main()
-            JavaObject mainInstance = mainClass.instantiate();
+            allocate(HeapMeter.objectBytes(mainClass.getFields().size()));
+            mainInstance = mainClass.instantiate();
             currentInstance = mainInstance;
+            program.prepare(mainMethod);
             executeBlock(mainMethod.body.statements, environment);
+            return new Value(Value.Type.VOID, null);
             
         } catch (ReturnException e) {
             // Main completed with return
-        } catch (RuntimeException e) {
-            System.err.println("Runtime Error: " + e.getMessage());
-            e.printStackTrace();
+            return e.value;
         }
     }
     
@@ -64,6 +186,9 @@ public class Interpreter implements Visitor<Value> {
         
         switch (expr.operator.type) {
             case PLUS:
+                if (left.getType() == Value.Type.STRING || right.getType() == Value.Type.STRING) {
+                    allocate(HeapMeter.concatenationBytes(left, right));
+                }
                 return left.add(right);
             case MINUS:
                 return left.subtract(right);
@@ -118,13 +243,13 @@ public class Interpreter implements Visitor<Value> {
     
     @Override
     public Value visitVariableExpr(Expression.Variable expr) {
-        return environment.get(expr.name.lexeme);
+        return environment.get(expr.name.symbol);
     }
     
     @Override
     public Value visitAssignExpr(Expression.Assign expr) {
         Value value = evaluate(expr.value);
-        environment.assign(expr.name.lexeme, value);
+        environment.assign(expr.name.symbol, value);
         return value;
     }
     
@@ -144,17 +269,20 @@ public class Interpreter implements Visitor<Value> {
     
     @Override
     public Value visitCallExpr(Expression.Call expr) {
-        // Check for System.out.println special case
-        if (isSystemOutPrintln(expr)) {
+        // System.out.println call sites are marked when their method is prepared
+        if (expr.println) {
             if (expr.arguments.size() != 1) {
                 throw new RuntimeException("println expects 1 argument");
             }
             Value arg = evaluate(expr.arguments.get(0));
-            System.out.println(arg.toString());
+            if (firstOutputNanos < 0) {
+                firstOutputNanos = System.nanoTime();
+            }
+            out.println(arg.toString());
             return new Value(Value.Type.VOID, null);
         }
         
-        // If callee is a Get expression, it's a method call on an object
+        // If callee is a Get expression, it's a virtual call on an object
         if (expr.callee instanceof Expression.Get) {
             Expression.Get get = (Expression.Get) expr.callee;
             Value objectValue = evaluate(get.object);
@@ -163,58 +291,173 @@ public class Interpreter implements Visitor<Value> {
                 throw new RuntimeException("Cannot call method on non-object");
             }
             
-            JavaObject object = objectValue.asObject();
-            JavaClass klass = object.getJavaClass();
-            Declaration.Method method = klass.findMethod(get.name.lexeme);
-            
-            if (method == null) {
-                throw new RuntimeException("Undefined method: " + get.name.lexeme);
+            return invokeVirtual(expr, get.name, objectValue.asObject());
+        }
+        
+        // Unqualified call: a virtual call on 'this'
+        if (expr.callee instanceof Expression.Variable) {
+            if (currentInstance == null) {
+                throw new RuntimeException("Cannot call a method outside of a class");
             }
-            
-            return callMethod(method, expr.arguments, object);
+            return invokeVirtual(expr, ((Expression.Variable) expr.callee).name, currentInstance);
+        }
+        
+        // super.method(...) and super(...): bound statically in the superclass
+        if (expr.callee instanceof Expression.Super) {
+            return invokeSuper(expr, (Expression.Super) expr.callee);
         }
         
         throw new RuntimeException("Can only call methods");
     }
     
-    private boolean isSystemOutPrintln(Expression.Call expr) {
-        if (!(expr.callee instanceof Expression.Get)) return false;
-        Expression.Get printlnGet = (Expression.Get) expr.callee;
+    private Value invokeVirtual(Expression.Call expr, Token name, JavaObject object) {
+        Value[] arguments = evaluateArguments(expr.arguments);
         
-        if (!printlnGet.name.lexeme.equals("println")) return false;
-        if (!(printlnGet.object instanceof Expression.Get)) return false;
+        // Sites with a provably unique target (see analysis.CallGraph) skip dispatch
+        if (expr.boundMethod != null) {
+            return callMethod(expr.boundMethod, arguments, object);
+        }
         
-        Expression.Get outGet = (Expression.Get) printlnGet.object;
-        if (!outGet.name.lexeme.equals("out")) return false;
-        if (!(outGet.object instanceof Expression.Variable)) return false;
+        JavaClass klass = object.getJavaClass();
         
-        Expression.Variable systemVar = (Expression.Variable) outGet.object;
-        return systemVar.name.lexeme.equals("System");
+        // The cached slot stays valid for every receiver class that shares the
+        // vtable layout it was resolved against (the class and its subclasses)
+        Symbol selector = expr.selector;
+        int slot = expr.cachedSlot;
+        if (selector != null && klass.hasSlot(slot, selector)) {
+            return callMethod(klass.methodAt(slot), arguments, object);
+        }
+        Expression.Call.ReceiverChoice choice = expr.receiverChoice;
+        if (choice != null && choice.receiverClass == klass) {
+            return callMethod(klass.methodAt(choice.slot), arguments, object);
+        }
+        
+        if (selector == null) {
+            Declaration.Method target = resolveVirtual(expr, name, klass, arguments);
+            if (expr.selector == null) {
+                // Chosen for this receiver's class or from this call's argument values,
+                // which another call may not share; still dispatched on the receiver
+                int own = klass.slotOf(JavaClass.selector(target));
+                return callMethod(own >= 0 ? klass.methodAt(own) : target, arguments, object);
+            }
+            selector = expr.selector;
+        }
+        slot = klass.slotOf(selector);
+        if (slot < 0) {
+            throw new RuntimeException("Undefined method: " + selector + " in class " + klass.getName());
+        }
+        expr.cachedSlot = slot;
+        return callMethod(klass.methodAt(slot), arguments, object);
     }
     
-    private Value callMethod(Declaration.Method method, List<Expression> arguments, JavaObject instance) {
-        // Check parameter count
-        if (arguments.size() != method.parameters.size()) {
-            throw new RuntimeException("Expected " + method.parameters.size() + 
-                " arguments but got " + arguments.size());
+    // The overload is chosen as Java chooses it: among the methods of the receiver's
+    // static type, from the static argument types. That choice is the same for every
+    // receiver, so it is kept in the site as a selector. When the receiver's static type
+    // is unknown, the overload is chosen among the receiver's own methods and kept with
+    // its class. Only when the choice needs the arguments' runtime types is it made per
+    // call and not kept.
+    private Declaration.Method resolveVirtual(Expression.Call expr, Token name, JavaClass receiverClass,
+                                              Value[] arguments) {
+        JavaClass declared = expr.receiverType != null ? findClass(Symbol.intern(expr.receiverType)) : null;
+        JavaClass klass = declared != null ? declared : receiverClass;
+        List<Declaration.Method> candidates = klass.overloads(name.symbol, arguments.length);
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("Undefined method: " + name.lexeme + "/" + arguments.length);
+        }
+        Declaration.Method target = overloads.resolveStatically(candidates, expr.argumentTypes);
+        if (target == null) {
+            return overloads.resolveDynamically(candidates, arguments);
+        }
+        Symbol selector = JavaClass.selector(target);
+        if (declared != null) {
+            expr.selector = selector;
+        } else {
+            expr.receiverChoice = new Expression.Call.ReceiverChoice(receiverClass, selector,
+                receiverClass.slotOf(selector));
+        }
+        return target;
+    }
+    
+    private Value invokeSuper(Expression.Call expr, Expression.Super callee) {
+        Value[] arguments = evaluateArguments(expr.arguments);
+        
+        Declaration.Method target = expr.boundMethod;
+        if (target == null || callee.method == null) {
+            JavaClass enclosing = findClass(callee.enclosingClass.symbol);
+            JavaClass superclass = enclosing != null ? enclosing.getSuperclass() : null;
+            if (superclass == null) {
+                throw new RuntimeException("Class " + callee.enclosingClass.lexeme + " has no superclass");
+            }
+            
+            if (callee.method == null) {
+                // super(...) runs the superclass constructor on the current instance. As at
+                // a 'new' site, the constructor is kept unless it depends on runtime types.
+                if (target == null) {
+                    target = resolveConstructor(superclass, expr.argumentTypes, arguments);
+                    if (superclass.constructors(arguments.length).size() <= 1 ||
+                        OverloadResolver.allKnown(expr.argumentTypes)) {
+                        expr.boundMethod = target;
+                    }
+                }
+                runConstructor(superclass, target, arguments, currentInstance);
+                return new Value(Value.Type.VOID, null);
+            }
+            
+            List<Declaration.Method> candidates = superclass.overloads(callee.method.symbol, arguments.length);
+            if (candidates.isEmpty()) {
+                throw new RuntimeException("Undefined method in superclass: " + callee.method.lexeme);
+            }
+            target = overloads.resolveStatically(candidates, expr.argumentTypes);
+            if (target != null) {
+                expr.boundMethod = target;
+            } else {
+                target = overloads.resolveDynamically(candidates, arguments);
+            }
+        }
+        
+        return callMethod(target, arguments, currentInstance);
+    }
+    
+    private Value[] evaluateArguments(List<Expression> arguments) {
+        Value[] values = new Value[arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(arguments.get(i));
+        }
+        return values;
+    }
+    
+    // Arguments are already evaluated in the caller's scope, and their count matches
+    // because the target was resolved by arity
+    private Value callMethod(Declaration.Method method, Value[] argValues, JavaObject instance) {
+        if (!method.prepared) {
+            program.prepare(method);
+        }
+        step();
+        if (depth >= maxDepth) {
+            throw new LimitExceededException(LimitExceededException.Limit.DEPTH,
+                "Call depth limit of " + maxDepth + " exceeded calling " + method.name.lexeme);
         }
         
         // Create new environment for method
         Environment previous = this.environment;
         JavaObject previousInstance = this.currentInstance;
         
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        frames[depth] = previous;
+        depth++;
         try {
             this.environment = new Environment(globals);
             this.currentInstance = instance;
             
             // Bind this
-            this.environment.define("this", new Value(Value.Type.OBJECT, instance));
+            this.environment.define(THIS, new Value(Value.Type.OBJECT, instance));
             
             // Bind parameters
-            for (int i = 0; i < method.parameters.size(); i++) {
-                String paramName = method.parameters.get(i).name.lexeme;
-                Value argValue = evaluate(arguments.get(i));
-                this.environment.define(paramName, argValue);
+            Symbol[] parameterNames = method.parameterNames;
+            for (int i = 0; i < parameterNames.length; i++) {
+                this.environment.define(parameterNames[i], argValues[i]);
             }
             
             // Execute method body
@@ -224,8 +467,8 @@ public class Interpreter implements Visitor<Value> {
                 return returnValue.value;
             }
             
-            // No explicit return - return void or default value
-            if (method.returnType.type == TokenType.VOID) {
+            // No explicit return - return void or default value (constructors return void)
+            if (method.returnType == null || method.returnType.type == TokenType.VOID) {
                 return new Value(Value.Type.VOID, null);
             } else if (method.returnType.type == TokenType.INT) {
                 return new Value(Value.Type.INT, 0);
@@ -240,6 +483,7 @@ public class Interpreter implements Visitor<Value> {
         } finally {
             this.environment = previous;
             this.currentInstance = previousInstance;
+            depth--;
         }
     }
     
@@ -251,7 +495,7 @@ public class Interpreter implements Visitor<Value> {
             throw new RuntimeException("Only objects have fields");
         }
         
-        return object.asObject().get(expr.name.lexeme);
+        return object.asObject().get(expr.name.symbol);
     }
     
     @Override
@@ -263,36 +507,88 @@ public class Interpreter implements Visitor<Value> {
         }
         
         Value value = evaluate(expr.value);
-        object.asObject().set(expr.name.lexeme, value);
+        object.asObject().set(expr.name.symbol, value);
         return value;
     }
     
     @Override
     public Value visitNewExpr(Expression.New expr) {
-        String className = expr.className.lexeme;
-        JavaClass klass = classes.get(className);
+        JavaClass klass = findClass(expr.className.symbol);
         
         if (klass == null) {
-            throw new RuntimeException("Undefined class: " + className);
+            throw new RuntimeException("Undefined class: " + expr.className.lexeme);
         }
         
+        allocate(HeapMeter.objectBytes(klass.getFields().size()));
         JavaObject instance = klass.instantiate();
         
         // Initialize fields with their initializers
-        for (Map.Entry<String, Declaration.Var> entry : klass.getFields().entrySet()) {
+        for (Map.Entry<Symbol, Declaration.Var> entry : klass.getFields().entrySet()) {
             Declaration.Var field = entry.getValue();
             if (field.initializer != null) {
                 JavaObject previousInstance = this.currentInstance;
                 this.currentInstance = instance;
                 Value initValue = evaluate(field.initializer);
-                instance.set(field.name.lexeme, initValue);
+                instance.set(field.name.symbol, initValue);
                 this.currentInstance = previousInstance;
             }
         }
         
+        // Run the constructor overload for these arguments, resolved once per 'new' site
+        // unless the choice depended on runtime argument types
+        Value[] arguments = evaluateArguments(expr.arguments);
+        // constructorResolved is volatile and written last, so it is read first
+        Declaration.Method constructor;
+        if (expr.constructorResolved) {
+            constructor = expr.constructor;
+        } else {
+            constructor = resolveConstructor(klass, expr.argumentTypes, arguments);
+            expr.constructor = constructor;
+            expr.constructorResolved = klass.constructors(arguments.length).size() <= 1 ||
+                OverloadResolver.allKnown(expr.argumentTypes);
+        }
+        runConstructor(klass, constructor, arguments, instance);
+        
         return new Value(Value.Type.OBJECT, instance);
     }
     
+    // The constructor of klass for these arguments; null when klass declares none
+    private Declaration.Method resolveConstructor(JavaClass klass, String[] argumentTypes, Value[] arguments) {
+        if (!klass.hasConstructors()) {
+            if (arguments.length != 0) {
+                throw new RuntimeException("Class " + klass.getName() + " has no constructor taking " +
+                    arguments.length + " arguments");
+            }
+            return null;
+        }
+        
+        List<Declaration.Method> candidates = klass.constructors(arguments.length);
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("Class " + klass.getName() + " has no constructor taking " +
+                arguments.length + " arguments");
+        }
+        Declaration.Method constructor = overloads.resolveStatically(candidates, argumentTypes);
+        return constructor != null ? constructor : overloads.resolveDynamically(candidates, arguments);
+    }
+    
+    // Runs a constructor, first chaining to the superclass's no-argument constructor
+    // unless the body starts with an explicit super(...) call
+    private void runConstructor(JavaClass klass, Declaration.Method constructor, Value[] arguments, JavaObject instance) {
+        JavaClass superclass = klass.getSuperclass();
+        if (superclass != null && (constructor == null || !constructor.startsWithSuperCall())) {
+            Declaration.Method implicit = superclass.getNoArgumentConstructor();
+            if (implicit == null && superclass.hasConstructors()) {
+                // Reports the missing or ambiguous no-argument constructor
+                implicit = resolveConstructor(superclass, NO_TYPES, NO_ARGUMENTS);
+            }
+            runConstructor(superclass, implicit, NO_ARGUMENTS, instance);
+        }
+        
+        if (constructor != null) {
+            callMethod(constructor, arguments, instance);
+        }
+    }
+    
     @Override
     public Value visitThisExpr(Expression.This expr) {
         if (currentInstance == null) {
@@ -301,6 +597,11 @@ public class Interpreter implements Visitor<Value> {
         return new Value(Value.Type.OBJECT, currentInstance);
     }
     
+    @Override
+    public Value visitSuperExpr(Expression.Super expr) {
+        throw new RuntimeException("'super' can only be used to call a superclass method");
+    }
+    
     // ========== Statement Visitors ==========
     
     @Override
@@ -309,6 +610,31 @@ public class Interpreter implements Visitor<Value> {
         return null;
     }
     
+    @Override
+    public Value visitVarDeclStmt(Statement.VarDecl stmt) {
+        defineVariable(stmt.type, stmt.name, stmt.initializer);
+        return null;
+    }
+    
+    private void defineVariable(Token type, Token name, Expression initializer) {
+        Value value = new Value(Value.Type.NULL, null);
+        
+        if (initializer != null) {
+            value = evaluate(initializer);
+        } else {
+            // Default initialization based on type
+            if (type.type == TokenType.INT) {
+                value = new Value(Value.Type.INT, 0);
+            } else if (type.type == TokenType.DOUBLE) {
+                value = new Value(Value.Type.DOUBLE, 0.0);
+            } else if (type.type == TokenType.BOOLEAN) {
+                value = new Value(Value.Type.BOOLEAN, false);
+            }
+        }
+        
+        environment.define(name.symbol, value);
+    }
+    
     @Override
     public Value visitBlockStmt(Statement.Block stmt) {
         executeBlock(stmt.statements, new Environment(environment));
@@ -342,8 +668,13 @@ public class Interpreter implements Visitor<Value> {
     
     @Override
     public Value visitWhileStmt(Statement.While stmt) {
-        while (evaluate(stmt.condition).asBoolean()) {
-            execute(stmt.body);
+        try {
+            while (evaluate(stmt.condition).asBoolean()) {
+                execute(stmt.body);
+                step();
+            }
+        } catch (BreakException e) {
+            // Loop exited with break
         }
         return null;
     }
@@ -365,7 +696,10 @@ public class Interpreter implements Visitor<Value> {
                 if (stmt.increment != null) {
                     evaluate(stmt.increment);
                 }
+                step();
             }
+        } catch (BreakException e) {
+            // Loop exited with break
         } finally {
             this.environment = previous;
         }
@@ -385,26 +719,63 @@ public class Interpreter implements Visitor<Value> {
         throw new ReturnException(value);
     }
     
-    // ========== Declaration Visitors ==========
+    @Override
+    public Value visitBreakStmt(Statement.Break stmt) {
+        throw BREAK;
+    }
     
     @Override
-    public Value visitVarDecl(Declaration.Var decl) {
-        Value value = new Value(Value.Type.NULL, null);
+    public Value visitSwitchStmt(Statement.Switch stmt) {
+        Value subject = evaluate(stmt.subject);
         
-        if (decl.initializer != null) {
-            value = evaluate(decl.initializer);
+        // Jump straight to the matching entry via the switch's precomputed table
+        int entry;
+        if (subject.getType() == Value.Type.INT) {
+            entry = stmt.table.entryFor(subject.asInt());
+        } else if (subject.getType() == Value.Type.STRING) {
+            entry = stmt.table.entryFor(subject.asString());
         } else {
-            // Default initialization based on type
-            if (decl.type.type == TokenType.INT) {
-                value = new Value(Value.Type.INT, 0);
-            } else if (decl.type.type == TokenType.DOUBLE) {
-                value = new Value(Value.Type.DOUBLE, 0.0);
-            } else if (decl.type.type == TokenType.BOOLEAN) {
-                value = new Value(Value.Type.BOOLEAN, false);
+            throw new RuntimeException("Cannot switch on " + subject.getType());
+        }
+        
+        if (entry < 0) {
+            return null;
+        }
+        
+        // The whole switch body shares one scope, like in Java
+        Environment previous = this.environment;
+        try {
+            this.environment = new Environment(environment);
+            List<Statement> body = stmt.body;
+            for (int i = entry; i < body.size(); i++) {
+                execute(body.get(i));
             }
+        } catch (BreakException e) {
+            // Switch exited with break
+        } finally {
+            this.environment = previous;
         }
         
-        environment.define(decl.name.lexeme, value);
+        return null;
+    }
+    
+    // ========== Declaration Visitors ==========
+    
+    @Override
+    public Value visitVarDecl(Declaration.Var decl) {
+        defineVariable(decl.type, decl.name, decl.initializer);
+        return null;
+    }
+    
+    @Override
+    public Value visitTopLevelDecl(Declaration.TopLevel decl) {
+        execute(decl.statement);
+        return null;
+    }
+    
+    // Imports are resolved by ModuleLoader before the program runs
+    @Override
+    public Value visitImportDecl(Declaration.Import decl) {
         return null;
     }
     
@@ -416,18 +787,165 @@ public class Interpreter implements Visitor<Value> {
     
     @Override
     public Value visitClassDecl(Declaration.Class decl) {
-        JavaClass klass = new JavaClass(decl.name.lexeme, decl.fields, decl.methods);
-        classes.put(decl.name.lexeme, klass);
+        findClass(decl.name.symbol);
         return null;
     }
     
+    private JavaClass findClass(Symbol name) {
+        return program.findClass(name);
+    }
+    
+    // One step of metering, taken at every loop back-edge and method entry: loops and
+    // calls are the only ways a program can run unboundedly
+    private void step() {
+        if (--ticks < 0) {
+            checkpoint();
+        }
+    }
+    
+    // Charges the finished slice and checks the limits; this step is the first of
+    // the next slice. A host may also stop a runaway program by interrupting the
+    // thread running it; the flag is left set for the host to clear.
+    private void checkpoint() {
+        fuelLeft -= slice;
+        slice = 0;
+        ticks = 0;
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Execution interrupted");
+        }
+        if (fuelLeft == 0) {
+            throw new LimitExceededException(LimitExceededException.Limit.FUEL,
+                "Out of fuel after " + limits.fuel + " steps");
+        }
+        if (timed && System.nanoTime() - startNanos > timeoutNanos) {
+            throw new LimitExceededException(LimitExceededException.Limit.TIMEOUT,
+                "Time limit of " + limits.timeoutMillis + " ms exceeded");
+        }
+        slice = (int) Math.min(CHECK_INTERVAL, fuelLeft);
+        ticks = slice - 1;
+    }
+    
+    // Counts bytes the program is about to allocate. When allocation has grown enough
+    // since the last measurement, measures what the run retains, with these bytes,
+    // and enforces the quota, so an allocation that would exceed it is never made.
+    private void allocate(long bytes) {
+        allocatedBytes += bytes;
+        if (allocatedBytes >= nextMeasure) {
+            measureHeap(bytes);
+        }
+    }
+    
+    private void measureHeap(long pendingBytes) {
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        frames[depth] = environment;
+        long retained = HeapMeter.retained(frames, depth + 1, currentInstance, mainInstance) + pendingBytes;
+        peakRetainedBytes = Math.max(peakRetainedBytes, retained);
+        if (retained > heapQuota) {
+            throw new LimitExceededException(LimitExceededException.Limit.HEAP,
+                "Heap quota of " + heapQuota + " bytes exceeded (" + retained + " bytes retained)");
+        }
+        nextMeasure = allocatedBytes + measureInterval(retained);
+    }
+    
+    // Allocation until the next measurement: a multiple of what is retained, so each
+    // walk is paid for by the allocation before it, but no more than could take the run
+    // past its quota, and at least a sixteenth of the quota, which is then as far as
+    // the run can overshoot it before it is stopped
+    private long measureInterval(long retained) {
+        long interval = Math.max(HeapMeter.MIN_INTERVAL, retained * HeapMeter.INTERVAL_RATIO);
+        if (heapQuota != Long.MAX_VALUE) {
+            interval = Math.min(interval, Math.max(heapQuota - retained, Math.max(heapQuota / 16, 1)));
+        }
+        return interval;
+    }
+    
+    // Estimated bytes of instances and strings the program has allocated
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+    
+    // The most the program was measured to retain; until the first measurement,
+    // everything it allocated, which bounds it
+    public long getPeakRetainedBytes() {
+        return peakRetainedBytes >= 0 ? peakRetainedBytes : allocatedBytes;
+    }
+    
+    // Loop iterations and method calls so far
+    public long getSteps() {
+        long total = limits.fuel > 0 ? limits.fuel : Long.MAX_VALUE;
+        return total - fuelLeft + slice - ticks;
+    }
+    
+    // ========== Statistics ==========
+    
+    public Program getProgram() {
+        return program;
+    }
+    
+    public int getClassCount() {
+        return program.getClassCount();
+    }
+    
+    public int getLinkedClassCount() {
+        return program.getLinkedClassCount();
+    }
+    
+    public int getMethodCount() {
+        return program.getMethodCount();
+    }
+    
+    public int getPreparedMethodCount() {
+        return program.getPreparedMethodCount();
+    }
+    
+    // System.nanoTime() of the first println, or -1 if nothing was printed
+    public long getFirstOutputNanos() {
+        return firstOutputNanos;
+    }
+    
     // ========== Helper Methods ==========
     
     private Value evaluate(Expression expr) {
-        return expr.accept(this);
+        if (dispatch == Dispatch.VISITOR) {
+            return expr.accept(this);
+        }
+        
+        // The AST is sealed, so a switch on the node kind covers every case
+        switch (expr.kind) {
+            case BINARY: return visitBinaryExpr((Expression.Binary) expr);
+            case LITERAL: return visitLiteralExpr((Expression.Literal) expr);
+            case VARIABLE: return visitVariableExpr((Expression.Variable) expr);
+            case ASSIGN: return visitAssignExpr((Expression.Assign) expr);
+            case UNARY: return visitUnaryExpr((Expression.Unary) expr);
+            case CALL: return visitCallExpr((Expression.Call) expr);
+            case GET: return visitGetExpr((Expression.Get) expr);
+            case SET: return visitSetExpr((Expression.Set) expr);
+            case NEW: return visitNewExpr((Expression.New) expr);
+            case THIS: return visitThisExpr((Expression.This) expr);
+            case SUPER: return visitSuperExpr((Expression.Super) expr);
+            default: throw new IllegalStateException("Unknown expression kind: " + expr.kind);
+        }
     }
     
     private void execute(Statement stmt) {
-        stmt.accept(this);
+        if (dispatch == Dispatch.VISITOR) {
+            stmt.accept(this);
+            return;
+        }
+        
+        switch (stmt.kind) {
+            case EXPRESSION: visitExpressionStmt((Statement.ExpressionStmt) stmt); break;
+            case VAR_DECL: visitVarDeclStmt((Statement.VarDecl) stmt); break;
+            case BLOCK: visitBlockStmt((Statement.Block) stmt); break;
+            case IF: visitIfStmt((Statement.If) stmt); break;
+            case WHILE: visitWhileStmt((Statement.While) stmt); break;
+            case FOR: visitForStmt((Statement.For) stmt); break;
+            case RETURN: visitReturnStmt((Statement.Return) stmt); break;
+            case BREAK: visitBreakStmt((Statement.Break) stmt); break;
+            case SWITCH: visitSwitchStmt((Statement.Switch) stmt); break;
+            default: throw new IllegalStateException("Unknown statement kind: " + stmt.kind);
+        }
     }
 }
\ No newline at end of file
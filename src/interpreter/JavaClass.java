@@ -1,42 +1,169 @@
 package interpreter;
 
+import lexer.Symbol;
+import lexer.SymbolMap;
 import parser.ast.Declaration;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class JavaClass {
     private final String name;
-    private final Map<String, Declaration.Var> fields;
-    private final Map<String, Declaration.Method> methods;
+    private final Symbol symbol;
+    private final JavaClass superclass;
+    private final Map<Symbol, Declaration.Var> fields;
+    private final List<Declaration.Method> constructors;
+    // Declared constructors by arity, and the one an implicit super() runs: the single
+    // constructor taking no arguments, null if there is none or more than one
+    private final List<List<Declaration.Method>> constructorsByArity = new ArrayList<>();
+    private final Declaration.Method noArgumentConstructor;
     
-    public JavaClass(String name, List<Declaration.Var> fieldList, List<Declaration.Method> methodList) {
+    // Virtual dispatch table, built once at link time. A subclass starts from a copy of
+    // its superclass's table, so an overriding method reuses the overridden method's slot.
+    private final SymbolMap<Integer> slots;
+    private final Symbol[] selectors;
+    private final Declaration.Method[] vtable;
+    
+    // Overload candidates by name, then by arity, for call-site resolution
+    private final SymbolMap<List<List<Declaration.Method>>> overloads = new SymbolMap<>();
+    
+    public JavaClass(String name, JavaClass superclass, List<Declaration.Var> fieldList,
+                     List<Declaration.Method> constructorList, List<Declaration.Method> methodList) {
         this.name = name;
-        this.fields = new HashMap<>();
-        this.methods = new HashMap<>();
+        this.symbol = Symbol.intern(name);
+        this.superclass = superclass;
+        this.constructors = constructorList;
+        for (Declaration.Method constructor : constructorList) {
+            while (constructorsByArity.size() <= constructor.parameters.size()) {
+                constructorsByArity.add(new ArrayList<>());
+            }
+            constructorsByArity.get(constructor.parameters.size()).add(constructor);
+        }
+        List<Declaration.Method> noArguments = constructors(0);
+        this.noArgumentConstructor = noArguments.size() == 1 ? noArguments.get(0) : null;
+        this.fields = new LinkedHashMap<>();
         
+        // Inherited fields come first so their initializers run before ours
+        if (superclass != null) {
+            fields.putAll(superclass.fields);
+        }
         for (Declaration.Var field : fieldList) {
-            fields.put(field.name.lexeme, field);
+            fields.put(field.name.symbol, field);
         }
         
+        SymbolMap<Integer> slotMap = superclass != null ? new SymbolMap<>(superclass.slots) : new SymbolMap<>();
+        Symbol[] selectorTable = superclass != null ? superclass.selectors : new Symbol[0];
+        Declaration.Method[] methodTable = superclass != null ? superclass.vtable : new Declaration.Method[0];
+        selectorTable = Arrays.copyOf(selectorTable, selectorTable.length + methodList.size());
+        methodTable = Arrays.copyOf(methodTable, methodTable.length + methodList.size());
+        int size = slotMap.size();
+        
         for (Declaration.Method method : methodList) {
-            methods.put(method.name.lexeme, method);
+            Symbol selector = selector(method);
+            Integer slot = slotMap.get(selector);
+            if (slot == null) {
+                slot = size++;
+                slotMap.put(selector, slot);
+                selectorTable[slot] = selector;
+            }
+            methodTable[slot] = method;
+        }
+        
+        this.slots = slotMap;
+        this.selectors = Arrays.copyOf(selectorTable, size);
+        this.vtable = Arrays.copyOf(methodTable, size);
+        
+        for (Declaration.Method method : vtable) {
+            List<List<Declaration.Method>> byArity = overloads.get(method.name.symbol);
+            if (byArity == null) {
+                byArity = new ArrayList<>();
+                overloads.put(method.name.symbol, byArity);
+            }
+            while (byArity.size() <= method.parameters.size()) {
+                byArity.add(new ArrayList<>());
+            }
+            byArity.get(method.parameters.size()).add(method);
         }
     }
     
+    // A selector is the method's signature, e.g. "add(int,double)". Overloads get distinct
+    // selectors; an override has the same one. Selectors are interned as symbols, so
+    // call sites compare them by identity and vtable slots are found by symbol id.
+    public static Symbol selector(Declaration.Method method) {
+        StringBuilder signature = new StringBuilder(method.name.lexeme).append('(');
+        for (int i = 0; i < method.parameters.size(); i++) {
+            if (i > 0) signature.append(',');
+            signature.append(method.parameters.get(i).type.lexeme);
+        }
+        return Symbol.intern(signature.append(')').toString());
+    }
+    
     public String getName() {
         return name;
     }
     
+    public Symbol getSymbol() {
+        return symbol;
+    }
+    
+    public JavaClass getSuperclass() {
+        return superclass;
+    }
+    
     public JavaObject instantiate() {
         return new JavaObject(this);
     }
     
-    public Declaration.Method findMethod(String name) {
-        return methods.get(name);
+    // The single method with this name and arity, or null if there is none or it is overloaded
+    public Declaration.Method findMethod(Symbol name, int arity) {
+        List<Declaration.Method> candidates = overloads(name, arity);
+        return candidates.size() == 1 ? candidates.get(0) : null;
+    }
+    
+    // Methods (own and inherited) with this name and arity
+    public List<Declaration.Method> overloads(Symbol name, int arity) {
+        List<List<Declaration.Method>> byArity = overloads.get(name);
+        if (byArity == null || arity >= byArity.size()) {
+            return Collections.emptyList();
+        }
+        return byArity.get(arity);
+    }
+    
+    // Constructors declared by this class itself with this arity
+    public List<Declaration.Method> constructors(int arity) {
+        if (arity >= constructorsByArity.size()) {
+            return Collections.emptyList();
+        }
+        return constructorsByArity.get(arity);
+    }
+    
+    public Declaration.Method getNoArgumentConstructor() {
+        return noArgumentConstructor;
+    }
+    
+    public boolean hasConstructors() {
+        return !constructors.isEmpty();
+    }
+    
+    // Vtable slot for a selector, or -1 if this class does not understand it
+    public int slotOf(Symbol selector) {
+        Integer slot = slots.get(selector);
+        return slot == null ? -1 : slot;
+    }
+    
+    // True if slot holds the given selector in this class's vtable
+    public boolean hasSlot(int slot, Symbol selector) {
+        return slot >= 0 && slot < selectors.length && selectors[slot] == selector;
+    }
+    
+    public Declaration.Method methodAt(int slot) {
+        return vtable[slot];
     }
     
-    public Map<String, Declaration.Var> getFields() {
+    public Map<Symbol, Declaration.Var> getFields() {
         return fields;
     }
     
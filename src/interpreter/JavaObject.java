@@ -1,19 +1,26 @@
 package interpreter;
 
-import parser.ast.Declaration;
-import java.util.HashMap;
-import java.util.Map;
+import lexer.Symbol;
+import lexer.SymbolMap;
+import java.util.Collection;
+import java.util.function.Consumer;
 
 public class JavaObject {
     private final JavaClass klass;
-    private final Map<String, Value> fields = new HashMap<>();
+    private final Symbol className;
+    private final SymbolMap<Value> fields = new SymbolMap<>();
     
     public JavaObject(JavaClass klass) {
+        this(klass, klass.getSymbol(), klass.getFields().keySet());
+    }
+    
+    // For interpreters that keep their own class model (klass is then null)
+    JavaObject(JavaClass klass, Symbol className, Collection<Symbol> fieldNames) {
         this.klass = klass;
+        this.className = className;
         
         // Initialize fields with default values
-        for (Map.Entry<String, Declaration.Var> entry : klass.getFields().entrySet()) {
-            String fieldName = entry.getKey();
+        for (Symbol fieldName : fieldNames) {
             // Initialize with null/0/false based on type
             fields.put(fieldName, new Value(Value.Type.NULL, null));
         }
@@ -23,24 +30,45 @@ public class JavaObject {
         return klass;
     }
     
-    public Value get(String name) {
-        if (fields.containsKey(name)) {
-            return fields.get(name);
+    public String getClassName() {
+        return className.name;
+    }
+    
+    public Symbol getClassSymbol() {
+        return className;
+    }
+    
+    public Value get(Symbol name) {
+        Value value = fields.get(name);
+        if (value != null) {
+            return value;
         }
         throw new RuntimeException("Undefined field: " + name);
     }
     
-    public void set(String name, Value value) {
-        if (fields.containsKey(name)) {
-            fields.put(name, value);
-            return;
-        }
-        // Allow setting new fields dynamically (for simplicity)
+    public Value get(String name) {
+        return get(Symbol.intern(name));
+    }
+    
+    public void set(Symbol name, Value value) {
+        // Also allows setting new fields dynamically (for simplicity)
         fields.put(name, value);
     }
     
+    public void set(String name, Value value) {
+        set(Symbol.intern(name), value);
+    }
+    
+    int fieldCount() {
+        return fields.size();
+    }
+    
+    void forEachField(Consumer<Value> action) {
+        fields.forEachValue(action);
+    }
+    
     @Override
     public String toString() {
-        return "<instance of " + klass.getName() + ">";
+        return "<instance of " + className + ">";
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package interpreter;
+
+// Thrown out of an execution that used up one of its ExecutionLimits. Programs cannot
+// catch it, so it always ends the run; hosts see which limit it was.
+public class LimitExceededException extends RuntimeException {
+    public enum Limit {
+        FUEL, TIMEOUT, DEPTH, HEAP
+    }
+    
+    private static final long serialVersionUID = 1L;
+    
+    public final Limit limit;
+    
+    LimitExceededException(Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+}
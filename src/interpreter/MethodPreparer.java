@@ -0,0 +1,36 @@
+package interpreter;
+
+import lexer.Symbol;
+import parser.ast.Declaration;
+import parser.ast.Expression;
+
+// Per-method preparation, run lazily the first time a method is called (or, for
+// field initializers, when their class is linked). Binds System.out.println call
+// sites once so the interpreter does not re-inspect the callee on every call.
+class MethodPreparer extends TreeScanner {
+    
+    void prepare(Declaration.Method method) {
+        Symbol[] parameterNames = new Symbol[method.parameters.size()];
+        for (int i = 0; i < parameterNames.length; i++) {
+            parameterNames[i] = method.parameters.get(i).name.symbol;
+        }
+        method.parameterNames = parameterNames;
+        
+        visitMethodDecl(method);
+        method.prepared = true;
+    }
+    
+    void prepare(Expression expr) {
+        scan(expr);
+    }
+    
+    @Override
+    public Void visitCallExpr(Expression.Call expr) {
+        if (expr.isSystemOutPrintln()) {
+            expr.println = true;
+            scanAll(expr.arguments);
+            return null;
+        }
+        return super.visitCallExpr(expr);
+    }
+}
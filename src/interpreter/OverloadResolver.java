@@ -0,0 +1,145 @@
+package interpreter;
+
+import parser.ast.Declaration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Picks the most specific applicable overload for a list of argument types.
+// Types are the names used in declarations: "int", "double", "boolean", "String",
+// class names, plus "null" for the null literal.
+class OverloadResolver {
+    private final Function<String, String> superclassOf;
+    
+    // superclassOf maps a class name to its superclass name (null at the root)
+    OverloadResolver(Function<String, String> superclassOf) {
+        this.superclassOf = superclassOf;
+    }
+    
+    // Resolution from static types, done once per call site. Returns null when some
+    // argument type is unknown and more than one candidate remains.
+    Declaration.Method resolveStatically(List<Declaration.Method> candidates, String[] argumentTypes) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        int index = resolveStatically(candidates.get(0).name.lexeme, parameterTypes(candidates), argumentTypes);
+        return index < 0 ? null : candidates.get(index);
+    }
+    
+    // Fallback resolution from the runtime types of already evaluated arguments
+    Declaration.Method resolveDynamically(List<Declaration.Method> candidates, Value[] arguments) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        return candidates.get(resolveDynamically(candidates.get(0).name.lexeme, parameterTypes(candidates), arguments));
+    }
+    
+    // Index-based forms, for callers that do not keep Declaration.Method objects
+    int resolveStatically(String name, List<String[]> candidates, String[] argumentTypes) {
+        if (candidates.size() == 1) {
+            return 0;
+        }
+        if (!allKnown(argumentTypes)) {
+            return -1;
+        }
+        return mostSpecific(name, candidates, argumentTypes);
+    }
+    
+    int resolveDynamically(String name, List<String[]> candidates, Value[] arguments) {
+        if (candidates.size() == 1) {
+            return 0;
+        }
+        String[] types = new String[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            types[i] = runtimeType(arguments[i]);
+        }
+        return mostSpecific(name, candidates, types);
+    }
+    
+    static boolean allKnown(String[] argumentTypes) {
+        for (String type : argumentTypes) {
+            if (type == null) return false;
+        }
+        return true;
+    }
+    
+    private static List<String[]> parameterTypes(List<Declaration.Method> methods) {
+        List<String[]> types = new ArrayList<>(methods.size());
+        for (Declaration.Method method : methods) {
+            String[] parameterTypes = new String[method.parameters.size()];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                parameterTypes[i] = method.parameters.get(i).type.lexeme;
+            }
+            types.add(parameterTypes);
+        }
+        return types;
+    }
+    
+    // The applicable candidate that is at least as specific as every other applicable
+    // one; the call is ambiguous when there is no such candidate, or another has the
+    // same parameter types
+    private int mostSpecific(String name, List<String[]> candidates, String[] argumentTypes) {
+        int best = -1;
+        for (int i = 0; i < candidates.size(); i++) {
+            String[] candidate = candidates.get(i);
+            if (isApplicable(argumentTypes, candidate) && (best < 0 || isApplicable(candidate, candidates.get(best)))) {
+                best = i;
+            }
+        }
+        if (best < 0) {
+            throw new RuntimeException("No overload of " + name +
+                " applicable to (" + String.join(", ", argumentTypes) + ")");
+        }
+        
+        // Choosing the best by pairwise steps depends on declaration order, so check
+        // it against all of them
+        String[] chosen = candidates.get(best);
+        for (int i = 0; i < candidates.size(); i++) {
+            String[] candidate = candidates.get(i);
+            if (i == best || !isApplicable(argumentTypes, candidate)) continue;
+            if (!isApplicable(chosen, candidate) || isApplicable(candidate, chosen)) {
+                throw new RuntimeException("Ambiguous call to " + name +
+                    " with (" + String.join(", ", argumentTypes) + ")");
+            }
+        }
+        return best;
+    }
+    
+    // True if values of the types in 'from' can be passed to parameters of the types in 'to'
+    private boolean isApplicable(String[] from, String[] to) {
+        for (int i = 0; i < from.length; i++) {
+            if (!isAssignable(from[i], to[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    boolean isAssignable(String from, String to) {
+        if (from.equals(to)) return true;
+        if (from.equals("int")) return to.equals("double");
+        if (isPrimitive(from) || isPrimitive(to)) return false;
+        if (from.equals("null")) return true;
+        
+        // Walk the superclass chain of a class type
+        for (String type = superclassOf.apply(from); type != null; type = superclassOf.apply(type)) {
+            if (type.equals(to)) return true;
+        }
+        return false;
+    }
+    
+    private static boolean isPrimitive(String type) {
+        return type.equals("int") || type.equals("double") || type.equals("boolean");
+    }
+    
+    private static String runtimeType(Value value) {
+        switch (value.getType()) {
+            case INT: return "int";
+            case DOUBLE: return "double";
+            case BOOLEAN: return "boolean";
+            case STRING: return "String";
+            case OBJECT: return value.asObject().getClassName();
+            default: return "null";
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package interpreter;
+
+import lexer.Symbol;
+import lexer.SymbolMap;
+import parser.ast.Declaration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The shareable half of a run: the program's classes and their runtime metadata. Any
+// number of Interpreters, on any threads, may execute one Program at once; each keeps
+// its own variables, instances and output. Classes are still linked, and methods
+// prepared, on first use, so both go through this object and are published safely:
+// a linked class is immutable once it is in 'classes', and a method is marked
+// prepared (a volatile write) only after everything preparation fills in.
+public final class Program {
+    private final List<Declaration> declarations;
+    private final SymbolMap<Declaration.Class> classDeclarations = new SymbolMap<>();
+    private final Map<Symbol, JavaClass> classes = new ConcurrentHashMap<>();
+    private final Set<Symbol> linking = new HashSet<>();
+    private final OverloadResolver overloads = new OverloadResolver(this::superclassName);
+    private final MethodPreparer preparer = new MethodPreparer();
+    private final int methodCount;
+    private int preparedMethodCount = 0;
+    
+    public Program(List<Declaration> declarations) {
+        this.declarations = List.copyOf(declarations);
+        
+        // Only register classes here; each is linked on first use (see findClass)
+        int methods = 0;
+        for (Declaration declaration : this.declarations) {
+            if (declaration instanceof Declaration.Class) {
+                Declaration.Class classDecl = (Declaration.Class) declaration;
+                classDeclarations.put(classDecl.name.symbol, classDecl);
+                methods += classDecl.constructors.size() + classDecl.methods.size();
+            }
+        }
+        this.methodCount = methods;
+    }
+    
+    public List<Declaration> getDeclarations() {
+        return declarations;
+    }
+    
+    // The runtime class for a name, linking it on first use; null if no such class
+    JavaClass findClass(Symbol name) {
+        JavaClass klass = classes.get(name);
+        return klass != null ? klass : link(name);
+    }
+    
+    private synchronized JavaClass link(Symbol name) {
+        Declaration.Class decl = classDeclarations.get(name);
+        return decl != null ? linkClass(decl) : null;
+    }
+    
+    // Builds the runtime class (and its superclasses first), including its vtable
+    private JavaClass linkClass(Declaration.Class decl) {
+        Symbol name = decl.name.symbol;
+        JavaClass klass = classes.get(name);
+        if (klass != null) {
+            return klass;
+        }
+        
+        if (!linking.add(name)) {
+            linking.clear();
+            throw new RuntimeException("Cyclic inheritance involving class " + name);
+        }
+        
+        JavaClass superclass = null;
+        if (decl.superclass != null) {
+            Declaration.Class superDecl = classDeclarations.get(decl.superclass.symbol);
+            if (superDecl == null) {
+                linking.clear();
+                throw new RuntimeException("Undefined superclass: " + decl.superclass.lexeme);
+            }
+            superclass = linkClass(superDecl);
+        }
+        
+        klass = new JavaClass(decl.name.lexeme, superclass, decl.fields, decl.constructors, decl.methods);
+        for (Declaration.Var field : decl.fields) {
+            if (field.initializer != null) {
+                preparer.prepare(field.initializer);
+            }
+        }
+        classes.put(name, klass);
+        linking.remove(name);
+        return klass;
+    }
+    
+    // Prepares a method before its first call; callers check method.prepared first.
+    // Preparation writes only what the method's own AST determines, so Programs that
+    // share a library's AST may prepare the same method at once without harm.
+    synchronized void prepare(Declaration.Method method) {
+        if (!method.prepared) {
+            preparer.prepare(method);
+            preparedMethodCount++;
+        }
+    }
+    
+    OverloadResolver getOverloads() {
+        return overloads;
+    }
+    
+    private String superclassName(String className) {
+        Declaration.Class decl = classDeclarations.get(Symbol.intern(className));
+        return decl != null && decl.superclass != null ? decl.superclass.lexeme : null;
+    }
+    
+    // ========== Statistics ==========
+    
+    public int getClassCount() {
+        return classDeclarations.size();
+    }
+    
+    public int getLinkedClassCount() {
+        return classes.size();
+    }
+    
+    public int getMethodCount() {
+        return methodCount;
+    }
+    
+    public synchronized int getPreparedMethodCount() {
+        return preparedMethodCount;
+    }
+}
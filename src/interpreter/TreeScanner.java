@@ -0,0 +1,188 @@
+package interpreter;
+
+import parser.ast.Declaration;
+import parser.ast.Expression;
+import parser.ast.Statement;
+
+// A visitor that walks every node of a tree and does nothing else. Analysis passes
+// extend it and override the visits for the nodes they care about.
+public class TreeScanner implements Visitor<Void> {
+    
+    protected void scan(Expression expr) {
+        if (expr != null) expr.accept(this);
+    }
+    
+    protected void scan(Statement stmt) {
+        if (stmt != null) stmt.accept(this);
+    }
+    
+    protected void scanAll(Iterable<? extends Expression> exprs) {
+        for (Expression expr : exprs) scan(expr);
+    }
+    
+    protected void scanStatements(Iterable<? extends Statement> stmts) {
+        for (Statement stmt : stmts) scan(stmt);
+    }
+    
+    // ========== Expressions ==========
+    
+    @Override
+    public Void visitBinaryExpr(Expression.Binary expr) {
+        scan(expr.left);
+        scan(expr.right);
+        return null;
+    }
+    
+    @Override
+    public Void visitLiteralExpr(Expression.Literal expr) {
+        return null;
+    }
+    
+    @Override
+    public Void visitVariableExpr(Expression.Variable expr) {
+        return null;
+    }
+    
+    @Override
+    public Void visitAssignExpr(Expression.Assign expr) {
+        scan(expr.value);
+        return null;
+    }
+    
+    @Override
+    public Void visitUnaryExpr(Expression.Unary expr) {
+        scan(expr.right);
+        return null;
+    }
+    
+    @Override
+    public Void visitCallExpr(Expression.Call expr) {
+        scan(expr.callee);
+        scanAll(expr.arguments);
+        return null;
+    }
+    
+    @Override
+    public Void visitGetExpr(Expression.Get expr) {
+        scan(expr.object);
+        return null;
+    }
+    
+    @Override
+    public Void visitSetExpr(Expression.Set expr) {
+        scan(expr.object);
+        scan(expr.value);
+        return null;
+    }
+    
+    @Override
+    public Void visitNewExpr(Expression.New expr) {
+        scanAll(expr.arguments);
+        return null;
+    }
+    
+    @Override
+    public Void visitThisExpr(Expression.This expr) {
+        return null;
+    }
+    
+    @Override
+    public Void visitSuperExpr(Expression.Super expr) {
+        return null;
+    }
+    
+    // ========== Statements ==========
+    
+    @Override
+    public Void visitExpressionStmt(Statement.ExpressionStmt stmt) {
+        scan(stmt.expression);
+        return null;
+    }
+    
+    @Override
+    public Void visitVarDeclStmt(Statement.VarDecl stmt) {
+        scan(stmt.initializer);
+        return null;
+    }
+    
+    @Override
+    public Void visitBlockStmt(Statement.Block stmt) {
+        scanStatements(stmt.statements);
+        return null;
+    }
+    
+    @Override
+    public Void visitIfStmt(Statement.If stmt) {
+        scan(stmt.condition);
+        scan(stmt.thenBranch);
+        scan(stmt.elseBranch);
+        return null;
+    }
+    
+    @Override
+    public Void visitWhileStmt(Statement.While stmt) {
+        scan(stmt.condition);
+        scan(stmt.body);
+        return null;
+    }
+    
+    @Override
+    public Void visitForStmt(Statement.For stmt) {
+        scan(stmt.initializer);
+        scan(stmt.condition);
+        scan(stmt.increment);
+        scan(stmt.body);
+        return null;
+    }
+    
+    @Override
+    public Void visitReturnStmt(Statement.Return stmt) {
+        scan(stmt.value);
+        return null;
+    }
+    
+    @Override
+    public Void visitBreakStmt(Statement.Break stmt) {
+        return null;
+    }
+    
+    @Override
+    public Void visitSwitchStmt(Statement.Switch stmt) {
+        scan(stmt.subject);
+        scanStatements(stmt.body);
+        return null;
+    }
+    
+    // ========== Declarations ==========
+    
+    @Override
+    public Void visitVarDecl(Declaration.Var decl) {
+        scan(decl.initializer);
+        return null;
+    }
+    
+    @Override
+    public Void visitMethodDecl(Declaration.Method decl) {
+        scanStatements(decl.body.statements);
+        return null;
+    }
+    
+    @Override
+    public Void visitClassDecl(Declaration.Class decl) {
+        for (Declaration.Var field : decl.fields) visitVarDecl(field);
+        for (Declaration.Method constructor : decl.constructors) visitMethodDecl(constructor);
+        for (Declaration.Method method : decl.methods) visitMethodDecl(method);
+        return null;
+    }
+    
+    @Override
+    public Void visitTopLevelDecl(Declaration.TopLevel decl) {
+        scan(decl.statement);
+        return null;
+    }
+    
+    @Override
+    public Void visitImportDecl(Declaration.Import decl) {
+        return null;
+    }
+}
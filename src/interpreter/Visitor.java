@@ -16,17 +16,23 @@ public interface Visitor<R> {
     R visitSetExpr(Expression.Set expr);
     R visitNewExpr(Expression.New expr);
     R visitThisExpr(Expression.This expr);
+    R visitSuperExpr(Expression.Super expr);
     
     // Statement visitors
     R visitExpressionStmt(Statement.ExpressionStmt stmt);
+    R visitVarDeclStmt(Statement.VarDecl stmt);
     R visitBlockStmt(Statement.Block stmt);
     R visitIfStmt(Statement.If stmt);
     R visitWhileStmt(Statement.While stmt);
     R visitForStmt(Statement.For stmt);
     R visitReturnStmt(Statement.Return stmt);
+    R visitBreakStmt(Statement.Break stmt);
+    R visitSwitchStmt(Statement.Switch stmt);
     
     // Declaration visitors
     R visitVarDecl(Declaration.Var decl);
     R visitMethodDecl(Declaration.Method decl);
     R visitClassDecl(Declaration.Class decl);
+    R visitTopLevelDecl(Declaration.TopLevel decl);
+    R visitImportDecl(Declaration.Import decl);
 }
\ No newline at end of file
@@ -1,93 +1,129 @@
 package lexer;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class Lexer {
+// Produces tokens on demand through nextToken(), so a parser can consume the source
+// without the whole token list ever existing; scanTokens() still collects them all.
+// tokenize() instead records every token as offsets into the source (TokenBuffer).
+// The scanner itself only finds token boundaries and types; text and literal values
+// are made from the source range when a Token is actually built.
+public class Lexer implements TokenSource {
     private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final PrintStream errors;
     private int start = 0;
     private int current = 0;
-    private int line = 1;
-    
-    private static final Map<String, TokenType> keywords = new HashMap<>();
-    
-    static {
-        keywords.put("class", TokenType.CLASS);
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("while", TokenType.WHILE);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("new", TokenType.NEW);
-        keywords.put("this", TokenType.THIS);
-        keywords.put("int", TokenType.INT);
-        keywords.put("double", TokenType.DOUBLE);
-        keywords.put("boolean", TokenType.BOOLEAN);
-        keywords.put("void", TokenType.VOID);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("null", TokenType.NULL);
-    }
+    private int line;
+    private int tokenCount = 0;
+    private boolean hadErrors = false;
+    private Token eof = null;
     
     public Lexer(String source) {
+        this(source, 1, System.err);
+    }
+    
+    // Lexes a source that starts on line 'firstLine', reporting errors to 'errors'
+    public Lexer(String source, int firstLine, PrintStream errors) {
         this.source = source;
+        this.errors = errors;
+        this.line = firstLine;
     }
     
     public List<Token> scanTokens() {
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+        return tokens;
+    }
+    
+    // The next token; once the source is exhausted, EOF on every call
+    @Override
+    public Token nextToken() {
         while (!isAtEnd()) {
             start = current;
-            scanToken();
+            TokenType type = scanToken();
+            if (type != null) {
+                tokenCount++;
+                return token(source, type, start, current, line);
+            }
         }
         
-        tokens.add(new Token(TokenType.EOF, "", null, line));
-        return tokens;
+        if (eof == null) {
+            eof = new Token(TokenType.EOF, "", null, line);
+            tokenCount++;
+        }
+        return eof;
+    }
+    
+    // Scans the whole source into primitive arrays, without creating any Token or string
+    public TokenBuffer tokenize() {
+        TokenBuffer buffer = new TokenBuffer(source);
+        while (!isAtEnd()) {
+            start = current;
+            TokenType type = scanToken();
+            if (type != null) {
+                buffer.add(type, start, current - start, line);
+                tokenCount++;
+            }
+        }
+        buffer.add(TokenType.EOF, current, 0, line);
+        tokenCount++;
+        return buffer;
+    }
+    
+    // Tokens produced so far, counting EOF once
+    public int getTokenCount() {
+        return tokenCount;
     }
     
-    private void scanToken() {
+    // True once any lexical error has been reported
+    public boolean hadErrors() {
+        return hadErrors;
+    }
+    
+    // Type of the token starting at 'start' and ending at 'current', or null for
+    // whitespace, comments and errors
+    private TokenType scanToken() {
         char c = advance();
         switch (c) {
-            case '(': addToken(TokenType.LPAREN); break;
-            case ')': addToken(TokenType.RPAREN); break;
-            case '{': addToken(TokenType.LBRACE); break;
-            case '}': addToken(TokenType.RBRACE); break;
-            case ',': addToken(TokenType.COMMA); break;
-            case '.': addToken(TokenType.DOT); break;
-            case ';': addToken(TokenType.SEMICOLON); break;
-            case '+': addToken(TokenType.PLUS); break;
-            case '-': addToken(TokenType.MINUS); break;
-            case '*': addToken(TokenType.STAR); break;
-            case '%': addToken(TokenType.PERCENT); break;
+            case '(': return TokenType.LPAREN;
+            case ')': return TokenType.RPAREN;
+            case '{': return TokenType.LBRACE;
+            case '}': return TokenType.RBRACE;
+            case ',': return TokenType.COMMA;
+            case '.': return TokenType.DOT;
+            case ';': return TokenType.SEMICOLON;
+            case ':': return TokenType.COLON;
+            case '+': return TokenType.PLUS;
+            case '-': return TokenType.MINUS;
+            case '*': return TokenType.STAR;
+            case '%': return TokenType.PERCENT;
             
             // Two-character operators
             case '!':
-                addToken(match('=') ? TokenType.BANG_EQUAL : TokenType.BANG);
-                break;
+                return match('=') ? TokenType.BANG_EQUAL : TokenType.BANG;
             case '=':
-                addToken(match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL);
-                break;
+                return match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL;
             case '<':
-                addToken(match('=') ? TokenType.LESS_EQUAL : TokenType.LESS);
-                break;
+                return match('=') ? TokenType.LESS_EQUAL : TokenType.LESS;
             case '>':
-                addToken(match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER);
-                break;
+                return match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER;
             case '&':
                 if (match('&')) {
-                    addToken(TokenType.AND);
-                } else {
-                    error(line, "Unexpected character: &");
+                    return TokenType.AND;
                 }
-                break;
+                error(line, "Unexpected character: &");
+                return null;
             case '|':
                 if (match('|')) {
-                    addToken(TokenType.OR);
-                } else {
-                    error(line, "Unexpected character: |");
+                    return TokenType.OR;
                 }
-                break;
+                error(line, "Unexpected character: |");
+                return null;
             
             // Comments and division
             case '/':
@@ -98,34 +134,32 @@ public class Lexer {
                     // Multi-line comment
                     blockComment();
                 } else {
-                    addToken(TokenType.SLASH);
+                    return TokenType.SLASH;
                 }
-                break;
+                return null;
             
             // Whitespace
             case ' ':
             case '\r':
             case '\t':
                 // Ignore whitespace
-                break;
+                return null;
             case '\n':
                 line++;
-                break;
+                return null;
             
             // String literals
             case '"':
-                string();
-                break;
+                return string();
             
             default:
                 if (isDigit(c)) {
-                    number();
+                    return number();
                 } else if (isAlpha(c)) {
-                    identifier();
-                } else {
-                    error(line, "Unexpected character: " + c);
+                    return identifier();
                 }
-                break;
+                error(line, "Unexpected character: " + c);
+                return null;
         }
     }
     
@@ -141,42 +175,85 @@ public class Lexer {
         }
     }
     
-    private void identifier() {
+    private TokenType identifier() {
         while (isAlphaNumeric(peek())) advance();
-        
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = TokenType.IDENTIFIER;
-        
-        // Handle boolean literals
-        if (type == TokenType.TRUE) {
-            addToken(type, true);
-        } else if (type == TokenType.FALSE) {
-            addToken(type, false);
-        } else if (type == TokenType.NULL) {
-            addToken(type, null);
-        } else {
-            addToken(type);
+        return keyword(source, start, current - start);
+    }
+    
+    // Keyword type for the identifier at source[start, start + length), or IDENTIFIER.
+    // Only the candidate picked by length and leading characters is compared against
+    // the range in place, so no substring is made for the lookup.
+    public static TokenType keyword(String source, int start, int length) {
+        if (length < 2) return TokenType.IDENTIFIER;
+        TokenType candidate = keywordCandidate(source.charAt(start), source.charAt(start + 1), length);
+        if (candidate != TokenType.IDENTIFIER && source.startsWith(candidate.spelling, start)) {
+            return candidate;
+        }
+        return TokenType.IDENTIFIER;
+    }
+    
+    // The only keyword an identifier of this length starting with these two characters
+    // could be, or IDENTIFIER; the caller still has to compare the full spelling
+    static TokenType keywordCandidate(char first, char second, int length) {
+        switch (length) {
+            case 2:
+                return first == 'i' ? TokenType.IF : TokenType.IDENTIFIER;
+            case 3:
+                switch (first) {
+                    case 'f': return TokenType.FOR;
+                    case 'i': return TokenType.INT;
+                    case 'n': return TokenType.NEW;
+                }
+                break;
+            case 4:
+                switch (first) {
+                    case 'c': return TokenType.CASE;
+                    case 'e': return TokenType.ELSE;
+                    case 'n': return TokenType.NULL;
+                    case 't': return second == 'h' ? TokenType.THIS : TokenType.TRUE;
+                    case 'v': return TokenType.VOID;
+                }
+                break;
+            case 5:
+                switch (first) {
+                    case 'b': return TokenType.BREAK;
+                    case 'c': return TokenType.CLASS;
+                    case 'f': return TokenType.FALSE;
+                    case 's': return TokenType.SUPER;
+                    case 'w': return TokenType.WHILE;
+                }
+                break;
+            case 6:
+                switch (first) {
+                    case 'd': return TokenType.DOUBLE;
+                    case 'i': return TokenType.IMPORT;
+                    case 'r': return TokenType.RETURN;
+                    case 's': return TokenType.SWITCH;
+                }
+                break;
+            case 7:
+                switch (first) {
+                    case 'b': return TokenType.BOOLEAN;
+                    case 'd': return TokenType.DEFAULT;
+                    case 'e': return TokenType.EXTENDS;
+                }
+                break;
         }
+        return TokenType.IDENTIFIER;
     }
     
-    private void number() {
+    private TokenType number() {
         while (isDigit(peek())) advance();
         
         // Look for decimal part
         if (peek() == '.' && isDigit(peekNext())) {
             advance(); // consume the '.'
             while (isDigit(peek())) advance();
-            
-            double value = Double.parseDouble(source.substring(start, current));
-            addToken(TokenType.NUMBER, value);
-        } else {
-            int value = Integer.parseInt(source.substring(start, current));
-            addToken(TokenType.NUMBER, value);
         }
+        return TokenType.NUMBER;
     }
     
-    private void string() {
+    private TokenType string() {
         while (peek() != '"' && !isAtEnd()) {
             if (peek() == '\n') line++;
             advance();
@@ -184,13 +261,50 @@ public class Lexer {
         
         if (isAtEnd()) {
             error(line, "Unterminated string");
-            return;
+            return null;
         }
         
         advance(); // closing "
-        
-        String value = source.substring(start + 1, current - 1);
-        addToken(TokenType.STRING, value);
+        return TokenType.STRING;
+    }
+    
+    // Builds the token for source[start, end); identifiers are interned right here,
+    // and their lexeme is the symbol's shared name
+    static Token token(String source, TokenType type, int start, int end, int line) {
+        if (type == TokenType.IDENTIFIER) {
+            Symbol symbol = Symbol.intern(source, start, end);
+            return new Token(type, symbol.name, null, line, symbol);
+        }
+        return new Token(type, lexeme(source, type, start, end), literal(source, type, start, end), line, null);
+    }
+    
+    // Text of a token: the shared spelling for fixed tokens and the symbol name for
+    // identifiers, else a copy of its range
+    static String lexeme(String source, TokenType type, int start, int end) {
+        if (type.spelling != null) return type.spelling;
+        if (type == TokenType.IDENTIFIER) return Symbol.intern(source, start, end).name;
+        return source.substring(start, end);
+    }
+    
+    // Literal value of a token, parsed from its range in the source
+    static Object literal(String source, TokenType type, int start, int end) {
+        switch (type) {
+            case NUMBER:
+                for (int i = start; i < end; i++) {
+                    if (source.charAt(i) == '.') {
+                        return Double.parseDouble(source.substring(start, end));
+                    }
+                }
+                return Integer.parseInt(source, start, end, 10);
+            case STRING:
+                return source.substring(start + 1, end - 1);
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                return null;
+        }
     }
     
     private boolean match(char expected) {
@@ -233,16 +347,8 @@ public class Lexer {
         return source.charAt(current++);
     }
     
-    private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-    
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
-    }
-    
     private void error(int line, String message) {
-        System.err.println("[Line " + line + "] Lexer Error: " + message);
+        hadErrors = true;
+        errors.println("[Line " + line + "] Lexer Error: " + message);
     }
 }
\ No newline at end of file
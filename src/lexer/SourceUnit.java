@@ -0,0 +1,110 @@
+package lexer;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// A byte range of a UTF-8 source that can be lexed and parsed on its own. split()
+// cuts a source before every 'class' keyword at brace depth 0, skipping strings and
+// comments the way the lexer does, so each unit holds one class declaration plus any
+// top-level code that follows it. The parser resynchronizes at 'class' too, so
+// parsing the units separately gives the same declarations as parsing the whole.
+public final class SourceUnit {
+    public final ByteBuffer source;
+    public final int start;
+    public final int end;
+    // Line the unit starts on
+    public final int line;
+    
+    private SourceUnit(ByteBuffer source, int start, int end, int line) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.line = line;
+    }
+    
+    public int length() {
+        return end - start;
+    }
+    
+    // A lexer over source[start, end) of 'first' through 'last', which must be
+    // consecutive units of one source
+    public static Utf8Lexer lexer(SourceUnit first, SourceUnit last, Utf8Lexer.Scan scan, PrintStream errors) {
+        ByteBuffer slice = first.source.slice(first.start, last.end - first.start);
+        return new Utf8Lexer(slice, scan, first.line, errors);
+    }
+    
+    public static List<SourceUnit> split(ByteBuffer source) {
+        List<SourceUnit> units = new ArrayList<>();
+        int length = source.limit();
+        int unitStart = 0;
+        int unitLine = 1;
+        int line = 1;
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            byte c = source.get(i);
+            switch (c) {
+                case '\n':
+                    line++;
+                    i++;
+                    break;
+                case '{':
+                    depth++;
+                    i++;
+                    break;
+                case '}':
+                    // A stray '}' is an error, but must not stop later splits
+                    if (depth > 0) depth--;
+                    i++;
+                    break;
+                case '"':
+                    // Strings have no escapes and end at the next quote, or at the end
+                    for (i++; i < length && source.get(i) != '"'; i++) {
+                        if (source.get(i) == '\n') line++;
+                    }
+                    i++;
+                    break;
+                case '/':
+                    i++;
+                    if (i < length && source.get(i) == '/') {
+                        while (i < length && source.get(i) != '\n') i++;
+                    } else if (i < length && source.get(i) == '*') {
+                        for (i++; i < length && !(source.get(i) == '*' && i + 1 < length && source.get(i + 1) == '/'); i++) {
+                            if (source.get(i) == '\n') line++;
+                        }
+                        i += 2;
+                    }
+                    break;
+                case 'c':
+                    // Whole words only, so 'class' inside another name does not count
+                    if (depth == 0 && i > unitStart && i + 5 <= length && isClass(source, i) &&
+                        !isIdentifierPart(source.get(i - 1)) &&
+                        (i + 5 == length || !isIdentifierPart(source.get(i + 5)))) {
+                        units.add(new SourceUnit(source, unitStart, i, unitLine));
+                        unitStart = i;
+                        unitLine = line;
+                    }
+                    i++;
+                    break;
+                default:
+                    i++;
+                    break;
+            }
+        }
+        units.add(new SourceUnit(source, unitStart, length, unitLine));
+        return units;
+    }
+    
+    private static boolean isClass(ByteBuffer source, int at) {
+        return source.get(at + 1) == 'l' && source.get(at + 2) == 'a' &&
+               source.get(at + 3) == 's' && source.get(at + 4) == 's';
+    }
+    
+    // Letters, digits, '_', and every byte of a non-ASCII character, so that bytes of
+    // a multi-byte character never split a word
+    private static boolean isIdentifierPart(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c < 0;
+    }
+}
@@ -0,0 +1,181 @@
+package lexer;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// An interned identifier. Every occurrence of a name in every source maps to the
+// same Symbol while any of them is in use, so names compare by identity and can be
+// placed by their integer id (see SymbolMap). The table is shared by the lexer, the
+// parser and the interpreters; interning is thread-safe.
+public final class Symbol {
+    public final int id;
+    public final String name;
+    
+    private Symbol(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+    
+    // ========== Symbol table ==========
+    
+    // Open-addressing table over the name's characters, so a lookup from a source
+    // range does not have to copy the range into a String first. The table holds its
+    // symbols weakly: a name no token, AST node or map refers to any more is collected,
+    // so a long-running process that parses many sources keeps only the symbols its
+    // live programs use. Nothing can tell a collected symbol from one never interned.
+    //
+    // Lookups probe without the lock. A slot is never emptied, only given a new entry
+    // under the lock or dropped when the table is rebuilt, so a probe chain stays
+    // unbroken; a cleared entry is probed past, and a slot read as empty just sends the
+    // lookup on to the locked path, which probes again. A Symbol read from an entry is
+    // safe to use because its fields are final.
+    private static final int MIN_CAPACITY = 1024;
+    private static volatile Entry[] table = new Entry[MIN_CAPACITY];
+    // Slots holding an entry, cleared or not
+    private static int used = 0;
+    // Ids only place symbols in SymbolMaps, so one wrapping around after 2^32 symbols
+    // would only cost an extra probe there
+    private static int nextId = 0;
+    
+    private static final class Entry extends WeakReference<Symbol> {
+        Entry(Symbol symbol) {
+            super(symbol);
+        }
+    }
+    
+    public static Symbol intern(String name) {
+        return intern(name, 0, name.length());
+    }
+    
+    // The symbol for source[start, end)
+    public static Symbol intern(String source, int start, int end) {
+        Symbol symbol = lookup(table, source, start, end);
+        return symbol != null ? symbol : add(source, start, end);
+    }
+    
+    private static Symbol lookup(Entry[] table, String source, int start, int end) {
+        int mask = table.length - 1;
+        for (int i = hash(source, start, end) & mask; ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+            if (entry == null) return null;
+            Symbol symbol = entry.get();
+            if (symbol != null && symbol.name.length() == end - start && source.startsWith(symbol.name, start)) {
+                return symbol;
+            }
+        }
+    }
+    
+    private static synchronized Symbol add(String source, int start, int end) {
+        Symbol symbol = lookup(table, source, start, end);
+        return symbol != null ? symbol : insert(source.substring(start, end));
+    }
+    
+    // The symbol for the ASCII bytes source[start, end). Hashes and compares the bytes
+    // as characters, so it finds the same symbol as the String overloads.
+    public static Symbol intern(ByteBuffer source, int start, int end) {
+        Symbol symbol = lookup(table, source, start, end);
+        return symbol != null ? symbol : add(source, start, end);
+    }
+    
+    private static Symbol lookup(Entry[] table, ByteBuffer source, int start, int end) {
+        int mask = table.length - 1;
+        for (int i = hash(source, start, end) & mask; ; i = (i + 1) & mask) {
+            Entry entry = table[i];
+            if (entry == null) return null;
+            Symbol symbol = entry.get();
+            if (symbol != null && symbol.name.length() == end - start && spells(symbol.name, source, start)) {
+                return symbol;
+            }
+        }
+    }
+    
+    private static synchronized Symbol add(ByteBuffer source, int start, int end) {
+        Symbol symbol = lookup(table, source, start, end);
+        if (symbol != null) return symbol;
+        
+        byte[] bytes = new byte[end - start];
+        source.get(start, bytes);
+        return insert(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+    
+    // Adds a name known to be missing, in the first cleared or empty slot of its probe
+    // chain; called with the lock held
+    private static Symbol insert(String name) {
+        Symbol symbol = new Symbol(nextId++, name);
+        Entry[] table = Symbol.table;
+        int mask = table.length - 1;
+        int i = hash(name, 0, name.length()) & mask;
+        while (table[i] != null && table[i].get() != null) {
+            i = (i + 1) & mask;
+        }
+        if (table[i] == null) used++;
+        table[i] = new Entry(symbol);
+        if (used * 2 > table.length) {
+            rebuild();
+        }
+        return symbol;
+    }
+    
+    private static int hash(String source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+    
+    private static int hash(ByteBuffer source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (source.get(i) & 0xFF);
+        }
+        return hash ^ (hash >>> 16);
+    }
+    
+    private static boolean spells(String name, ByteBuffer source, int start) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != (source.get(start + i) & 0xFF)) return false;
+        }
+        return true;
+    }
+    
+    // Fills a copy holding only the live symbols before publishing it, so lock-free
+    // readers only ever see a complete table. The copy has at least four slots per
+    // live symbol, so it grows when most are live and shrinks when most were collected.
+    private static void rebuild() {
+        Entry[] old = table;
+        int live = 0;
+        for (Entry entry : old) {
+            if (entry != null && entry.get() != null) live++;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < live * 4) {
+            capacity *= 2;
+        }
+        Entry[] rebuilt = new Entry[capacity];
+        int mask = capacity - 1;
+        used = 0;
+        for (Entry entry : old) {
+            Symbol symbol = entry == null ? null : entry.get();
+            if (symbol == null) continue;
+            int i = hash(symbol.name, 0, symbol.name.length()) & mask;
+            while (rebuilt[i] != null) {
+                i = (i + 1) & mask;
+            }
+            rebuilt[i] = entry;
+            used++;
+        }
+        table = rebuilt;
+    }
+    
+    @Override
+    public int hashCode() {
+        return id;
+    }
+    
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,105 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// A map keyed by Symbol. Keys are compared by identity and placed by their id, so
+// there is no string hashing and no equals call; since ids are dense, distinct
+// keys rarely share a slot.
+public final class SymbolMap<V> {
+    private Symbol[] keys;
+    private Object[] values;
+    private int size = 0;
+    
+    public SymbolMap() {
+        this(8);
+    }
+    
+    // capacity must be a power of two
+    public SymbolMap(int capacity) {
+        keys = new Symbol[capacity];
+        values = new Object[capacity];
+    }
+    
+    // A copy of 'other', which is left as it is
+    public SymbolMap(SymbolMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public V get(Symbol symbol) {
+        int i = slot(symbol);
+        return i >= 0 ? (V) values[i] : null;
+    }
+    
+    public boolean containsKey(Symbol symbol) {
+        return slot(symbol) >= 0;
+    }
+    
+    public void put(Symbol symbol, V value) {
+        int mask = keys.length - 1;
+        int i = symbol.id & mask;
+        while (keys[i] != null) {
+            if (keys[i] == symbol) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = symbol;
+        values[i] = value;
+        size++;
+        if (size * 4 > keys.length * 3) {
+            grow();
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    // Keys in no particular order
+    public List<Symbol> keys() {
+        List<Symbol> result = new ArrayList<>(size);
+        for (Symbol key : keys) {
+            if (key != null) result.add(key);
+        }
+        return result;
+    }
+    
+    // Values in no particular order
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) action.accept((V) values[i]);
+        }
+    }
+    
+    private int slot(Symbol symbol) {
+        int mask = keys.length - 1;
+        for (int i = symbol.id & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == symbol) return i;
+        }
+        return -1;
+    }
+    
+    private void grow() {
+        Symbol[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new Symbol[oldKeys.length * 2];
+        values = new Object[keys.length];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) continue;
+            int i = oldKeys[j].id & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
@@ -5,12 +5,19 @@ public class Token {
     public final String lexeme;
     public final Object literal;
     public final int line;
+    // The interned name of an identifier (null for other tokens)
+    public final Symbol symbol;
     
     public Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, literal, line, type == TokenType.IDENTIFIER ? Symbol.intern(lexeme) : null);
+    }
+    
+    Token(TokenType type, String lexeme, Object literal, int line, Symbol symbol) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = symbol;
     }
     
     @Override
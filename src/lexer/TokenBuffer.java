@@ -0,0 +1,96 @@
+package lexer;
+
+import java.util.Arrays;
+
+// Tokens stored as parallel primitive arrays (type ordinal, start offset, length,
+// line) that point into the source instead of copying it. A token's text and
+// literal value are only made when asked for, and punctuation and keywords never
+// need a copy at all. As a TokenSource it hands out Token objects one at a time.
+public final class TokenBuffer implements TokenSource {
+    private static final TokenType[] TYPES = TokenType.values();
+    
+    private final String source;
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int size = 0;
+    private int cursor = 0;
+    
+    TokenBuffer(String source) {
+        this.source = source;
+        
+        // Typical code has about one token per three characters
+        int capacity = source.length() / 3 + 16;
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+    }
+    
+    void add(TokenType type, int start, int length, int line) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+    
+    // Number of tokens, including the final EOF
+    public int size() {
+        return size;
+    }
+    
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+    
+    public int start(int index) {
+        return starts[index];
+    }
+    
+    public int length(int index) {
+        return lengths[index];
+    }
+    
+    public int line(int index) {
+        return lines[index];
+    }
+    
+    // Compares a token's text with a string without copying it out of the source
+    public boolean lexemeEquals(int index, String text) {
+        return lengths[index] == text.length() && source.startsWith(text, starts[index]);
+    }
+    
+    public String lexeme(int index) {
+        return Lexer.lexeme(source, type(index), starts[index], starts[index] + lengths[index]);
+    }
+    
+    public Object literal(int index) {
+        return Lexer.literal(source, type(index), starts[index], starts[index] + lengths[index]);
+    }
+    
+    public Token token(int index) {
+        return Lexer.token(source, type(index), starts[index], starts[index] + lengths[index], lines[index]);
+    }
+    
+    // Bytes held by the token arrays
+    public long byteSize() {
+        return (long) types.length * (1 + 3 * 4);
+    }
+    
+    // Hands out the tokens in order; EOF is repeated at the end
+    @Override
+    public Token nextToken() {
+        Token token = token(cursor);
+        if (cursor < size - 1) cursor++;
+        return token;
+    }
+}
@@ -0,0 +1,6 @@
+package lexer;
+
+// A pull-based stream of tokens. After the last token, EOF is returned on every call.
+public interface TokenSource {
+    Token nextToken();
+}
@@ -2,55 +2,71 @@ package lexer;
 
 public enum TokenType {
     // Literals
-    NUMBER,        // 123, 45.67
-    STRING,        // "hello"
-    TRUE,          // true
-    FALSE,         // false
-    NULL,          // null
+    NUMBER(null),           // 123, 45.67
+    STRING(null),           // "hello"
+    TRUE("true"),           // true
+    FALSE("false"),         // false
+    NULL("null"),           // null
     
     // Keywords
-    CLASS,         // class
-    IF,            // if
-    ELSE,          // else
-    WHILE,         // while
-    FOR,           // for
-    RETURN,        // return
-    NEW,           // new
-    THIS,          // this
-    INT,           // int
-    DOUBLE,        // double
-    BOOLEAN,       // boolean
-    VOID,          // void
+    CLASS("class"),         // class
+    EXTENDS("extends"),     // extends
+    IF("if"),               // if
+    ELSE("else"),           // else
+    WHILE("while"),         // while
+    FOR("for"),             // for
+    RETURN("return"),       // return
+    NEW("new"),             // new
+    THIS("this"),           // this
+    SUPER("super"),         // super
+    INT("int"),             // int
+    DOUBLE("double"),       // double
+    BOOLEAN("boolean"),     // boolean
+    VOID("void"),           // void
+    SWITCH("switch"),       // switch
+    CASE("case"),           // case
+    DEFAULT("default"),     // default
+    BREAK("break"),         // break
+    IMPORT("import"),       // import
     
     // Identifiers
-    IDENTIFIER,    // variable names, method names, etc.
+    IDENTIFIER(null),       // variable names, method names, etc.
     
     // Operators
-    PLUS,          // +
-    MINUS,         // -
-    STAR,          // *
-    SLASH,         // /
-    PERCENT,       // %
-    EQUAL,         // =
-    EQUAL_EQUAL,   // ==
-    BANG,          // !
-    BANG_EQUAL,    // !=
-    LESS,          // <
-    LESS_EQUAL,    // <=
-    GREATER,       // >
-    GREATER_EQUAL, // >=
-    AND,           // &&
-    OR,            // ||
+    PLUS("+"),              // +
+    MINUS("-"),             // -
+    STAR("*"),              // *
+    SLASH("/"),             // /
+    PERCENT("%"),           // %
+    EQUAL("="),             // =
+    EQUAL_EQUAL("=="),      // ==
+    BANG("!"),              // !
+    BANG_EQUAL("!="),       // !=
+    LESS("<"),              // <
+    LESS_EQUAL("<="),       // <=
+    GREATER(">"),           // >
+    GREATER_EQUAL(">="),    // >=
+    AND("&&"),              // &&
+    OR("||"),               // ||
     
     // Delimiters
-    LPAREN,        // (
-    RPAREN,        // )
-    LBRACE,        // {
-    RBRACE,        // }
-    SEMICOLON,     // ;
-    COMMA,         // ,
-    DOT,           // .
+    LPAREN("("),            // (
+    RPAREN(")"),            // )
+    LBRACE("{"),            // {
+    RBRACE("}"),            // }
+    SEMICOLON(";"),         // ;
+    COMMA(","),             // ,
+    COLON(":"),             // :
+    DOT("."),               // .
     
     // Special
-    EOF            // End of file
+    EOF("");                // End of file
+    
+    // Fixed source text of the token, shared by every occurrence; null for
+    // numbers, strings and identifiers, whose text varies
+    public final String spelling;
+    
+    TokenType(String spelling) {
+        this.spelling = spelling;
+    }
 }
\ No newline at end of file
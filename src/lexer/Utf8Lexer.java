@@ -0,0 +1,397 @@
+package lexer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// The same scanner as Lexer, but run directly over UTF-8 bytes, typically a memory-
+// mapped source file, so the source is never copied or decoded to UTF-16 as a whole.
+// Everything the language treats as syntax is ASCII and is matched byte by byte.
+// Identifiers are ASCII too and are interned straight from their bytes. Only string
+// literals are decoded, when their token is built, and other non-ASCII bytes are
+// decoded just to report them. Offsets are byte offsets.
+public class Utf8Lexer implements TokenSource {
+    // How runs of spaces, comment bodies and string bodies are skipped: one byte per
+    // step, or eight at a time by testing a whole long for the bytes that end the run
+    public enum Scan {
+        SCALAR, SWAR
+    }
+    
+    private final ByteBuffer source;
+    private final ByteBuffer words;
+    private final Scan scan;
+    private final PrintStream errors;
+    private final int length;
+    private int start = 0;
+    private int current = 0;
+    private int line;
+    private int tokenCount = 0;
+    private boolean hadErrors = false;
+    private Token eof = null;
+    
+    public Utf8Lexer(ByteBuffer source) {
+        this(source, Scan.SCALAR);
+    }
+    
+    public Utf8Lexer(ByteBuffer source, Scan scan) {
+        this(source, scan, 1, System.err);
+    }
+    
+    // Lexes a source that starts on line 'firstLine', reporting errors to 'errors'
+    public Utf8Lexer(ByteBuffer source, Scan scan, int firstLine, PrintStream errors) {
+        this.source = source;
+        this.words = source.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.scan = scan;
+        this.errors = errors;
+        this.length = source.limit();
+        this.line = firstLine;
+    }
+    
+    // Maps the whole file read-only; the mapping stays valid after the channel is closed
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large to map: " + size + " bytes");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+    
+    // The next token; once the source is exhausted, EOF on every call
+    @Override
+    public Token nextToken() {
+        while (!isAtEnd()) {
+            start = current;
+            TokenType type = scanToken();
+            if (type != null) {
+                tokenCount++;
+                return token(type, start, current, line);
+            }
+        }
+        
+        if (eof == null) {
+            eof = new Token(TokenType.EOF, "", null, line);
+            tokenCount++;
+        }
+        return eof;
+    }
+    
+    // Tokens produced so far, counting EOF once
+    public int getTokenCount() {
+        return tokenCount;
+    }
+    
+    // True once any lexical error has been reported
+    public boolean hadErrors() {
+        return hadErrors;
+    }
+    
+    // Type of the token starting at 'start' and ending at 'current', or null for
+    // whitespace, comments and errors
+    private TokenType scanToken() {
+        int c = advance();
+        switch (c) {
+            case '(': return TokenType.LPAREN;
+            case ')': return TokenType.RPAREN;
+            case '{': return TokenType.LBRACE;
+            case '}': return TokenType.RBRACE;
+            case ',': return TokenType.COMMA;
+            case '.': return TokenType.DOT;
+            case ';': return TokenType.SEMICOLON;
+            case ':': return TokenType.COLON;
+            case '+': return TokenType.PLUS;
+            case '-': return TokenType.MINUS;
+            case '*': return TokenType.STAR;
+            case '%': return TokenType.PERCENT;
+            
+            // Two-character operators
+            case '!':
+                return match('=') ? TokenType.BANG_EQUAL : TokenType.BANG;
+            case '=':
+                return match('=') ? TokenType.EQUAL_EQUAL : TokenType.EQUAL;
+            case '<':
+                return match('=') ? TokenType.LESS_EQUAL : TokenType.LESS;
+            case '>':
+                return match('=') ? TokenType.GREATER_EQUAL : TokenType.GREATER;
+            case '&':
+                if (match('&')) {
+                    return TokenType.AND;
+                }
+                error(line, "Unexpected character: &");
+                return null;
+            case '|':
+                if (match('|')) {
+                    return TokenType.OR;
+                }
+                error(line, "Unexpected character: |");
+                return null;
+            
+            // Comments and division
+            case '/':
+                if (match('/')) {
+                    // Single-line comment - skip until end of line
+                    if (scan == Scan.SWAR) {
+                        current = find(current, NEWLINES, false);
+                    } else {
+                        while (peek() != '\n' && !isAtEnd()) advance();
+                    }
+                } else if (match('*')) {
+                    // Multi-line comment
+                    blockComment();
+                } else {
+                    return TokenType.SLASH;
+                }
+                return null;
+            
+            // Whitespace
+            case ' ':
+                if (scan == Scan.SWAR) {
+                    current = skipSpaces(current);
+                }
+                return null;
+            case '\r':
+            case '\t':
+                // Ignore whitespace
+                return null;
+            case '\n':
+                line++;
+                return null;
+            
+            // String literals
+            case '"':
+                return string();
+            
+            default:
+                if (isDigit(c)) {
+                    return number();
+                } else if (isAlpha(c)) {
+                    return identifier();
+                } else if (c >= 0x80) {
+                    error(line, "Unexpected character: " + nonAscii());
+                    return null;
+                }
+                error(line, "Unexpected character: " + (char) c);
+                return null;
+        }
+    }
+    
+    // Consumes the rest of the UTF-8 sequence whose lead byte was just read and
+    // returns its text
+    private String nonAscii() {
+        while (!isAtEnd() && (source.get(current) & 0xC0) == 0x80) current++;
+        return decode(start, current);
+    }
+    
+    private void blockComment() {
+        if (scan == Scan.SWAR) {
+            // Jump from one '*' to the next until one is followed by '/'
+            while (!isAtEnd()) {
+                current = find(current, STARS, true);
+                if (isAtEnd()) break;
+                current++;
+                if (match('/')) break;
+            }
+            return;
+        }
+        while (!isAtEnd()) {
+            if (peek() == '*' && peekNext() == '/') {
+                advance(); // consume *
+                advance(); // consume /
+                break;
+            }
+            if (peek() == '\n') line++;
+            advance();
+        }
+    }
+    
+    private TokenType identifier() {
+        while (isAlphaNumeric(peek())) advance();
+        int length = current - start;
+        if (length < 2) return TokenType.IDENTIFIER;
+        
+        TokenType candidate = Lexer.keywordCandidate((char) source.get(start), (char) source.get(start + 1), length);
+        if (candidate != TokenType.IDENTIFIER && spells(candidate.spelling, start)) {
+            return candidate;
+        }
+        return TokenType.IDENTIFIER;
+    }
+    
+    private boolean spells(String text, int at) {
+        for (int i = 0; i < text.length(); i++) {
+            if (source.get(at + i) != text.charAt(i)) return false;
+        }
+        return true;
+    }
+    
+    private TokenType number() {
+        while (isDigit(peek())) advance();
+        
+        // Look for decimal part
+        if (peek() == '.' && isDigit(peekNext())) {
+            advance(); // consume the '.'
+            while (isDigit(peek())) advance();
+        }
+        return TokenType.NUMBER;
+    }
+    
+    // Neither '"' nor '\n' can occur inside a multi-byte UTF-8 sequence, so the
+    // literal is scanned without decoding it
+    private TokenType string() {
+        if (scan == Scan.SWAR) {
+            current = find(current, QUOTES, true);
+        }
+        while (peek() != '"' && !isAtEnd()) {
+            if (peek() == '\n') line++;
+            advance();
+        }
+        
+        if (isAtEnd()) {
+            error(line, "Unterminated string");
+            return null;
+        }
+        
+        advance(); // closing "
+        return TokenType.STRING;
+    }
+    
+    // ========== SWAR scanning ==========
+    
+    private static final long LOW_SEVEN = 0x7F7F7F7F7F7F7F7FL;
+    private static final long SPACES = 0x2020202020202020L;
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long STARS = 0x2A2A2A2A2A2A2A2AL;
+    private static final long QUOTES = 0x2222222222222222L;
+    
+    // High bit set in each byte of x that is zero, and clear everywhere else. Unlike
+    // the shorter (x - 0x01..) & ~x form this is exact, so its bits can be counted.
+    private static long zeroBytes(long x) {
+        return ~(((x & LOW_SEVEN) + LOW_SEVEN) | x | LOW_SEVEN);
+    }
+    
+    // Index of the first byte at or after 'from' that repeats in 'pattern', or the end
+    // of the source. With countLines, the newlines passed over are added to 'line'.
+    private int find(int from, long pattern, boolean countLines) {
+        int i = from;
+        for (; i + 8 <= length; i += 8) {
+            long word = words.getLong(i);
+            long hits = zeroBytes(word ^ pattern);
+            long newlines = countLines ? zeroBytes(word ^ NEWLINES) : 0;
+            if (hits != 0) {
+                // Bits below the first hit cover exactly the bytes before it
+                line += Long.bitCount(newlines & ((hits & -hits) - 1));
+                return i + (Long.numberOfTrailingZeros(hits) >>> 3);
+            }
+            line += Long.bitCount(newlines);
+        }
+        
+        byte target = (byte) pattern;
+        for (; i < length; i++) {
+            byte b = source.get(i);
+            if (b == target) return i;
+            if (countLines && b == '\n') line++;
+        }
+        return length;
+    }
+    
+    // Index of the first byte at or after 'from' that is not a space
+    private int skipSpaces(int from) {
+        int i = from;
+        for (; i + 8 <= length; i += 8) {
+            long others = ~zeroBytes(words.getLong(i) ^ SPACES) & ~LOW_SEVEN;
+            if (others != 0) {
+                return i + (Long.numberOfTrailingZeros(others) >>> 3);
+            }
+        }
+        while (i < length && source.get(i) == ' ') i++;
+        return i;
+    }
+    
+    private Token token(TokenType type, int start, int end, int line) {
+        if (type == TokenType.IDENTIFIER) {
+            Symbol symbol = Symbol.intern(source, start, end);
+            return new Token(type, symbol.name, null, line, symbol);
+        }
+        String lexeme = type.spelling != null ? type.spelling : decode(start, end);
+        return new Token(type, lexeme, literal(type, lexeme), line, null);
+    }
+    
+    private static Object literal(TokenType type, String lexeme) {
+        switch (type) {
+            case NUMBER:
+                if (lexeme.indexOf('.') >= 0) {
+                    return Double.parseDouble(lexeme);
+                }
+                return Integer.parseInt(lexeme);
+            case STRING:
+                return lexeme.substring(1, lexeme.length() - 1);
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                return null;
+        }
+    }
+    
+    // Text of source[start, end); ASCII ranges are copied as they are, and only ranges
+    // holding non-ASCII bytes go through the UTF-8 decoder
+    private String decode(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        source.get(start, bytes);
+        for (byte b : bytes) {
+            if (b < 0) return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    
+    private boolean match(char expected) {
+        if (isAtEnd()) return false;
+        if (source.get(current) != expected) return false;
+        
+        current++;
+        return true;
+    }
+    
+    private int peek() {
+        if (isAtEnd()) return '\0';
+        return source.get(current) & 0xFF;
+    }
+    
+    private int peekNext() {
+        if (current + 1 >= length) return '\0';
+        return source.get(current + 1) & 0xFF;
+    }
+    
+    private boolean isAlpha(int c) {
+        return (c >= 'a' && c <= 'z') ||
+               (c >= 'A' && c <= 'Z') ||
+               c == '_';
+    }
+    
+    private boolean isAlphaNumeric(int c) {
+        return isAlpha(c) || isDigit(c);
+    }
+    
+    private boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+    
+    private boolean isAtEnd() {
+        return current >= length;
+    }
+    
+    private int advance() {
+        return source.get(current++) & 0xFF;
+    }
+    
+    private void error(int line, String message) {
+        hadErrors = true;
+        errors.println("[Line " + line + "] Lexer Error: " + message);
+    }
+}
@@ -0,0 +1,76 @@
+package parser;
+
+import lexer.Utf8Lexer;
+import parser.ast.FlatAst;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Parsed programs kept on disk in their flat encoding, so an unchanged source is
+// neither lexed nor parsed again. An entry is named by the SHA-256 of VERSION and the
+// source bytes, so editing the source or upgrading the interpreter simply misses.
+// Entries are written to a temporary file and renamed into place, so a reader only
+// ever sees complete ones, and are loaded by mapping the file and reading the arrays
+// out of the mapping in bulk.
+public class AstCache {
+    // Part of every key; change it whenever the parser or the flat encoding changes,
+    // so that entries written by older versions are no longer found
+    public static final String VERSION = "jsi-ast-3";
+    
+    private final Path directory;
+    
+    public AstCache(Path directory) {
+        this.directory = directory;
+    }
+    
+    // Hex SHA-256 of VERSION followed by the source
+    public String key(ByteBuffer source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update(source.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    public Path path(String key) {
+        return directory.resolve(key + ".ast");
+    }
+    
+    // The cached program for 'key', or null if there is none; a damaged entry counts
+    // as missing and is replaced by the next store()
+    public FlatAst load(String key) {
+        Path path = path(key);
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            return FlatAst.read(Utf8Lexer.map(path));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    public void store(String key, FlatAst ast) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                ast.write(out);
+            }
+            Files.move(temporary, path(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
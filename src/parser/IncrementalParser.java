@@ -0,0 +1,498 @@
+package parser;
+
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenBuffer;
+import lexer.TokenSource;
+import parser.ast.Declaration;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps a parsed source up to date under text edits, for editors that re-parse on
+// every keystroke. The source is held as class units, cut where SourceUnit.split
+// would cut it (before each 'class' at brace depth 0), each with its own text,
+// tokens, declarations and errors. An edit re-lexes and re-parses only the method or
+// constructor body it falls in, when it stays inside one; otherwise only the units it
+// touches plus any neighbours the new text runs into. All other units, and all other
+// members of an edited class, are reused as they are. Units and members below an edit
+// that adds or removes lines are moved by copying their declarations with a new line
+// offset (see Declaration.lineOffset): tokens are never renumbered, so a program
+// returned earlier is never changed by a later edit.
+// The result always equals a fresh IncrementalParser over the new text, which for
+// programs without parse errors equals a plain Parser over the whole source.
+public class IncrementalParser {
+    private final List<Unit> units = new ArrayList<>();
+    private int lastRelexedLength;
+    
+    private static final class Unit {
+        final String text;
+        final int newlines;
+        final int firstLine;
+        // Source lines minus the lines of the unit's tokens: how far the unit has moved
+        // since they were lexed. Always 0 for a unit with errors, which is parsed again.
+        final int lineOffset;
+        // Every token of the unit in source order, ending with its EOF
+        final Token[] tokens;
+        // Offset of each token in text
+        final int[] starts;
+        final List<Declaration> declarations;
+        final String errors;
+        
+        Unit(String text, int firstLine, int lineOffset, Token[] tokens, int[] starts,
+             List<Declaration> declarations, String errors) {
+            this.text = text;
+            this.newlines = countNewlines(text, 0, text.length());
+            this.firstLine = firstLine;
+            this.lineOffset = lineOffset;
+            this.tokens = tokens;
+            this.starts = starts;
+            this.declarations = declarations;
+            this.errors = errors;
+        }
+    }
+    
+    public IncrementalParser(String source) {
+        int[] cuts = cuts(source);
+        int line = 1;
+        for (int i = 0; i < cuts.length; i++) {
+            int end = i + 1 < cuts.length ? cuts[i + 1] : source.length();
+            Unit unit = parse(source.substring(cuts[i], end), line);
+            units.add(unit);
+            line += unit.newlines;
+        }
+        lastRelexedLength = source.length();
+    }
+    
+    // Replaces 'removed' characters at 'offset' with 'inserted' and returns the new program
+    public List<Declaration> edit(int offset, int removed, String inserted) {
+        // Units the edit overlaps or borders
+        int first = -1;
+        int last = -1;
+        int length = 0;
+        int[] unitStarts = new int[units.size()];
+        for (int i = 0; i < units.size(); i++) {
+            unitStarts[i] = length;
+            int end = length + units.get(i).text.length();
+            if (first < 0 && end >= offset) first = i;
+            if (length <= offset + removed) last = i;
+            length = end;
+        }
+        if (offset < 0 || removed < 0 || offset + removed > length) {
+            throw new IndexOutOfBoundsException("Edit " + offset + "+" + removed + " outside source of length " + length);
+        }
+        
+        // Start one unit early: that unit's leading 'class' is intact, so its start is
+        // still a cut in the new text
+        int from = Math.max(first - 1, 0);
+        int to = last;
+        StringBuilder region = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            region.append(units.get(i).text);
+        }
+        int at = offset - unitStarts[from];
+        region.replace(at, at + removed, inserted);
+        String text = region.toString();
+        
+        // Take in following units until the new text ends where one of them still starts
+        int[] cuts = null;
+        while (cuts == null && to + 1 < units.size()) {
+            String next = units.get(to + 1).text;
+            int[] extended = cuts(text + next);
+            int boundary = indexOf(extended, text.length());
+            if (boundary >= 0) {
+                cuts = Arrays.copyOf(extended, boundary);
+            } else {
+                text = text + next;
+                to++;
+            }
+        }
+        if (cuts == null) {
+            cuts = cuts(text);
+        }
+        
+        List<Unit> replaced = new ArrayList<>(units.subList(from, to + 1));
+        List<Unit> reparsed = reparse(replaced, text, cuts);
+        
+        int delta = 0;
+        for (Unit unit : reparsed) delta += unit.newlines;
+        for (Unit unit : replaced) delta -= unit.newlines;
+        
+        units.subList(from, to + 1).clear();
+        units.addAll(from, reparsed);
+        if (delta != 0) {
+            for (int i = from + reparsed.size(); i < units.size(); i++) {
+                units.set(i, moved(units.get(i), delta));
+            }
+        }
+        return program();
+    }
+    
+    // New units for 'text' cut at 'cuts', reusing the old units whose text is unchanged
+    private List<Unit> reparse(List<Unit> old, String text, int[] cuts) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < cuts.length; i++) {
+            texts.add(text.substring(cuts[i], i + 1 < cuts.length ? cuts[i + 1] : text.length()));
+        }
+        
+        // Unchanged units at either end keep everything; the ones after the change may
+        // only need their lines moved
+        int front = 0;
+        while (front < old.size() && front < texts.size() && old.get(front).text.equals(texts.get(front))) {
+            front++;
+        }
+        int back = 0;
+        while (back < old.size() - front && back < texts.size() - front &&
+               old.get(old.size() - 1 - back).text.equals(texts.get(texts.size() - 1 - back))) {
+            back++;
+        }
+        
+        lastRelexedLength = 0;
+        List<Unit> result = new ArrayList<>(old.subList(0, front));
+        int line = old.get(0).firstLine;
+        for (Unit unit : result) line += unit.newlines;
+        
+        int changedOld = old.size() - front - back;
+        int changedNew = texts.size() - front - back;
+        Unit member = changedOld == 1 && changedNew == 1 ? reparseMember(old.get(front), texts.get(front)) : null;
+        if (member != null) {
+            result.add(member);
+            line += member.newlines;
+        } else {
+            for (int i = front; i < front + changedNew; i++) {
+                Unit unit = parse(texts.get(i), line);
+                result.add(unit);
+                line += unit.newlines;
+            }
+        }
+        
+        for (int i = old.size() - back; i < old.size(); i++) {
+            Unit unit = old.get(i);
+            result.add(moved(unit, line - unit.firstLine));
+            line += unit.newlines;
+        }
+        return result;
+    }
+    
+    // The unit with its lines moved by delta, holding copies of its declarations. Units
+    // with errors are parsed again instead, since their messages carry line numbers.
+    private Unit moved(Unit unit, int delta) {
+        if (delta == 0) return unit;
+        if (!unit.errors.isEmpty()) {
+            return parse(unit.text, unit.firstLine + delta);
+        }
+        List<Declaration> declarations = new ArrayList<>(unit.declarations.size());
+        for (Declaration declaration : unit.declarations) {
+            declarations.add(declaration.movedBy(delta));
+        }
+        return new Unit(unit.text, unit.firstLine + delta, unit.lineOffset + delta, unit.tokens, unit.starts,
+            declarations, "");
+    }
+    
+    // ========== Member re-parsing ==========
+    
+    // The class unit with just one method or constructor re-parsed, when the change
+    // from old.text to text lies inside that member's body and the new member parses
+    // cleanly as a single member of the same kind; otherwise null
+    private Unit reparseMember(Unit old, String text) {
+        if (!old.errors.isEmpty() || old.declarations.isEmpty() ||
+            !(old.declarations.get(0) instanceof Declaration.Class)) {
+            return null;
+        }
+        
+        // Changed range: old.text[prefix, old.length - suffix) became text[prefix, text.length - suffix)
+        int oldLength = old.text.length();
+        int limit = Math.min(oldLength, text.length());
+        int prefix = 0;
+        while (prefix < limit && old.text.charAt(prefix) == text.charAt(prefix)) prefix++;
+        int suffix = 0;
+        while (suffix < limit - prefix &&
+               old.text.charAt(oldLength - 1 - suffix) == text.charAt(text.length() - 1 - suffix)) suffix++;
+        
+        int[] member = null;
+        for (int[] candidate : members(old.text)) {
+            if (candidate[2] >= 0 && candidate[2] < prefix && oldLength - suffix < candidate[1]) {
+                member = candidate;
+                break;
+            }
+        }
+        if (member == null) return null;
+        
+        int lengthDelta = text.length() - oldLength;
+        int start = member[0];
+        int oldEnd = member[1];
+        int end = oldEnd + lengthDelta;
+        // The member is lexed on the line its tokens would have had when the unit was,
+        // since the class's line offset is added to those of all its members
+        int memberLine = old.firstLine - old.lineOffset + countNewlines(old.text, 0, start);
+        
+        // Lex and parse just the member, as its class body would
+        Declaration.Class decl = (Declaration.Class) old.declarations.get(0);
+        ByteArrayOutputStream errorText = new ByteArrayOutputStream();
+        PrintStream errors = new PrintStream(errorText);
+        String memberText = text.substring(start, end);
+        TokenBuffer buffer = new Lexer(memberText, memberLine, errors).tokenize();
+        Token[] memberTokens = tokens(buffer);
+        Declaration.Method method = new Parser(source(memberTokens), errors).parseMethod(decl.name);
+        errors.flush();
+        lastRelexedLength = memberText.length();
+        if (method == null || errorText.size() > 0) return null;
+        
+        // The old node it replaces is the one whose name token lies in the member
+        Map<Token, Integer> tokenIndex = new IdentityHashMap<>();
+        for (int i = 0; i < old.tokens.length; i++) tokenIndex.put(old.tokens[i], i);
+        boolean constructor = method.returnType == null;
+        List<Declaration.Method> list = constructor ? decl.constructors : decl.methods;
+        int replacedIndex = -1;
+        for (int i = 0; i < list.size(); i++) {
+            Integer index = tokenIndex.get(list.get(i).name);
+            if (index != null && old.starts[index] >= start && old.starts[index] < oldEnd) {
+                replacedIndex = i;
+                break;
+            }
+        }
+        if (replacedIndex < 0) return null;
+        
+        // Members after it, and any declarations after the class, move by the change in lines
+        int lineDelta = countNewlines(text, start, end) - countNewlines(old.text, start, oldEnd);
+        List<Declaration.Var> fields = moved(decl.fields, old, tokenIndex, oldEnd, lineDelta);
+        List<Declaration.Method> constructors = moved(decl.constructors, old, tokenIndex, oldEnd, lineDelta);
+        List<Declaration.Method> methods = moved(decl.methods, old, tokenIndex, oldEnd, lineDelta);
+        (constructor ? constructors : methods).set(replacedIndex, method);
+        Declaration.Class updated = new Declaration.Class(decl.name, decl.superclass, fields, constructors, methods,
+            decl.lineOffset);
+        List<Declaration> declarations = new ArrayList<>(old.declarations.size());
+        declarations.add(updated);
+        for (int i = 1; i < old.declarations.size(); i++) {
+            Declaration declaration = old.declarations.get(i);
+            declarations.add(lineDelta == 0 ? declaration : declaration.movedBy(lineDelta));
+        }
+        
+        // Splice the member's tokens in; later tokens keep their lines and move by the
+        // change in length
+        List<Token> tokens = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < old.tokens.length; i++) {
+            if (old.starts[i] < start) {
+                tokens.add(old.tokens[i]);
+                starts.add(old.starts[i]);
+            }
+        }
+        for (int i = 0; i < memberTokens.length - 1; i++) {
+            tokens.add(memberTokens[i]);
+            starts.add(start + buffer.start(i));
+        }
+        for (int i = 0; i < old.tokens.length; i++) {
+            if (old.starts[i] >= oldEnd) {
+                tokens.add(old.tokens[i]);
+                starts.add(old.starts[i] + lengthDelta);
+            }
+        }
+        int[] startArray = new int[starts.size()];
+        for (int i = 0; i < startArray.length; i++) startArray[i] = starts.get(i);
+        return new Unit(text, old.firstLine, old.lineOffset, tokens.toArray(new Token[0]), startArray,
+            declarations, "");
+    }
+    
+    // The members of a class unit, with copies moved by lineDelta for those that start
+    // at or after 'end'
+    private static <T extends Declaration> List<T> moved(List<T> members, Unit unit, Map<Token, Integer> tokenIndex,
+                                                         int end, int lineDelta) {
+        List<T> result = new ArrayList<>(members);
+        if (lineDelta == 0) return result;
+        for (int i = 0; i < result.size(); i++) {
+            T member = result.get(i);
+            Token name = member instanceof Declaration.Var ? ((Declaration.Var) member).name
+                : ((Declaration.Method) member).name;
+            if (unit.starts[tokenIndex.get(name)] >= end) {
+                @SuppressWarnings("unchecked")
+                T copy = (T) member.movedBy(lineDelta);
+                result.set(i, copy);
+            }
+        }
+        return result;
+    }
+    
+    // [start, end, body] of each member of the class whose body is the first '{' in text:
+    // start is just after the previous member, end just after its ';' or closing '}',
+    // and body the offset of a method or constructor's '{', or -1 for a field
+    private static List<int[]> members(String text) {
+        List<int[]> members = new ArrayList<>();
+        int depth = 0;
+        int memberStart = -1;
+        int body = -1;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                i = text.indexOf('"', i + 1);
+                if (i < 0) break;
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '/') {
+                i = text.indexOf('\n', i);
+                if (i < 0) break;
+            } else if (c == '/' && i + 1 < length && text.charAt(i + 1) == '*') {
+                i = text.indexOf("*/", i + 2);
+                if (i < 0) break;
+                i++;
+            } else if (c == '{') {
+                depth++;
+                if (depth == 1) memberStart = i + 1;
+                if (depth == 2) body = i;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) break;
+                if (depth == 1) {
+                    members.add(new int[] {memberStart, i + 1, body});
+                    memberStart = i + 1;
+                }
+            } else if (c == ';' && depth == 1) {
+                members.add(new int[] {memberStart, i + 1, -1});
+                memberStart = i + 1;
+            }
+            i++;
+        }
+        return members;
+    }
+    
+    // ========== Units ==========
+    
+    private Unit parse(String text, int firstLine) {
+        ByteArrayOutputStream errorText = new ByteArrayOutputStream();
+        PrintStream errors = new PrintStream(errorText);
+        TokenBuffer buffer = new Lexer(text, firstLine, errors).tokenize();
+        Token[] tokens = tokens(buffer);
+        int[] starts = new int[tokens.length];
+        for (int i = 0; i < starts.length; i++) starts[i] = buffer.start(i);
+        List<Declaration> declarations = new Parser(source(tokens), errors).parse();
+        errors.flush();
+        lastRelexedLength += text.length();
+        return new Unit(text, firstLine, 0, tokens, starts, declarations, errorText.toString());
+    }
+    
+    private static Token[] tokens(TokenBuffer buffer) {
+        Token[] tokens = new Token[buffer.size()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = buffer.token(i);
+        }
+        return tokens;
+    }
+    
+    // Hands out the tokens in order, repeating the final EOF
+    private static TokenSource source(Token[] tokens) {
+        int[] cursor = {0};
+        return () -> tokens[Math.min(cursor[0]++, tokens.length - 1)];
+    }
+    
+    // Offsets where units start: 0, then every 'class' keyword at brace depth 0 outside
+    // strings and comments, preceded and followed by a non-identifier character. The
+    // same rules as SourceUnit.split, over characters instead of bytes.
+    private static int[] cuts(String text) {
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        int length = text.length();
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '{':
+                    depth++;
+                    i++;
+                    break;
+                case '}':
+                    if (depth > 0) depth--;
+                    i++;
+                    break;
+                case '"': {
+                    int close = text.indexOf('"', i + 1);
+                    i = close < 0 ? length : close + 1;
+                    break;
+                }
+                case '/':
+                    i++;
+                    if (i < length && text.charAt(i) == '/') {
+                        int newline = text.indexOf('\n', i);
+                        i = newline < 0 ? length : newline;
+                    } else if (i < length && text.charAt(i) == '*') {
+                        int close = text.indexOf("*/", i + 1);
+                        i = close < 0 ? length : close + 2;
+                    }
+                    break;
+                case 'c':
+                    if (depth == 0 && i > 0 && text.startsWith("class", i) &&
+                        !isIdentifierPart(text.charAt(i - 1)) &&
+                        (i + 5 == length || !isIdentifierPart(text.charAt(i + 5)))) {
+                        cuts.add(i);
+                    }
+                    i++;
+                    break;
+                default:
+                    i++;
+                    break;
+            }
+        }
+        int[] result = new int[cuts.size()];
+        for (int j = 0; j < result.length; j++) result[j] = cuts.get(j);
+        return result;
+    }
+    
+    private static boolean isIdentifierPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c >= 0x80;
+    }
+    
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+    
+    private static int countNewlines(String text, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+    
+    // ========== Results ==========
+    
+    public List<Declaration> program() {
+        List<Declaration> program = new ArrayList<>();
+        for (Unit unit : units) {
+            program.addAll(unit.declarations);
+        }
+        return program;
+    }
+    
+    // Lexer and parser errors of the current source, in source order
+    public String errors() {
+        StringBuilder errors = new StringBuilder();
+        for (Unit unit : units) {
+            errors.append(unit.errors);
+        }
+        return errors.toString();
+    }
+    
+    public String source() {
+        StringBuilder source = new StringBuilder();
+        for (Unit unit : units) {
+            source.append(unit.text);
+        }
+        return source.toString();
+    }
+    
+    // Characters lexed again by the last edit (the whole source after construction)
+    public int getLastRelexedLength() {
+        return lastRelexedLength;
+    }
+    
+    public int getUnitCount() {
+        return units.size();
+    }
+}
@@ -0,0 +1,212 @@
+package parser;
+
+import lexer.Symbol;
+import lexer.Utf8Lexer;
+import parser.ast.Declaration;
+import parser.ast.FlatAst;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Resolves 'import a.b.C;' declarations to library sources. An import names the file
+// a/b/C.java under the first search root that has it, and brings in every class that
+// file declares, plus whatever the file imports itself. Each library is compiled once
+// into a Module, through the AstCache when there is one, and kept in memory by path
+// until its file changes, so all programs linked by one loader share its AST. A
+// library with syntax errors is not kept. Each load compiles it again and reports the
+// errors to that load's caller, since callers may print to different streams.
+// Linking only adds a library's classes to the program. The interpreters link each
+// class on first use, so unused library classes cost only their parse. Call sites
+// cache what they resolve to, so a library must import the classes it uses rather
+// than rely on ones its importers declare.
+public class ModuleLoader {
+    // One compiled library source. Its declarations leave out its imports, which are
+    // kept by name instead.
+    public static final class Module {
+        public final Path path;
+        public final List<Declaration> declarations;
+        public final List<String> imports;
+        // Lexer and parser errors, one per line, without the file name
+        private final String errors;
+        private final FileTime modified;
+        private final long size;
+        
+        private Module(Path path, List<Declaration> declarations, List<String> imports, String errors,
+                       BasicFileAttributes attributes) {
+            this.path = path;
+            this.declarations = declarations;
+            this.imports = imports;
+            this.errors = errors;
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+        }
+        
+        private boolean isCurrent(BasicFileAttributes attributes) {
+            return modified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+    
+    private final List<Path> roots;
+    private final AstCache cache;
+    private final Utf8Lexer.Scan scan;
+    private final Map<Path, Module> modules = new ConcurrentHashMap<>();
+    private final AtomicInteger compileCount = new AtomicInteger();
+    
+    // 'cache' may be null to always parse libraries from source
+    public ModuleLoader(List<Path> roots, AstCache cache, Utf8Lexer.Scan scan) {
+        this.roots = List.copyOf(roots);
+        this.cache = cache;
+        this.scan = scan;
+    }
+    
+    // Every module the program imports, directly or through other modules, each once
+    // and after the modules it imports; empty if the program has no imports. Syntax
+    // errors in the libraries are printed to 'errors', each line prefixed with its file.
+    public List<Module> imports(List<Declaration> program, PrintStream errors) throws IOException {
+        List<Module> closure = new ArrayList<>();
+        Set<Path> visited = new HashSet<>();
+        for (Declaration declaration : program) {
+            if (declaration instanceof Declaration.Import) {
+                addModule(((Declaration.Import) declaration).name, visited, closure, errors);
+            }
+        }
+        return closure;
+    }
+    
+    private void addModule(String name, Set<Path> visited, List<Module> closure, PrintStream errors) throws IOException {
+        Path path = resolve(name);
+        if (!visited.add(path)) return;
+        Module module = load(path, errors);
+        for (String dependency : module.imports) {
+            addModule(dependency, visited, closure, errors);
+        }
+        closure.add(module);
+    }
+    
+    // The declarations of 'modules' followed by the program's own, without its imports.
+    // A class name may be declared only once across all of them.
+    public static List<Declaration> link(List<Module> modules, List<Declaration> program) {
+        List<Declaration> linked = new ArrayList<>();
+        Map<Symbol, String> origins = new HashMap<>();
+        for (Module module : modules) {
+            for (Declaration declaration : module.declarations) {
+                add(declaration, module.path.toString(), linked, origins);
+            }
+        }
+        for (Declaration declaration : program) {
+            if (!(declaration instanceof Declaration.Import)) {
+                add(declaration, "the program", linked, origins);
+            }
+        }
+        return linked;
+    }
+    
+    private static void add(Declaration declaration, String origin, List<Declaration> linked, Map<Symbol, String> origins) {
+        if (declaration instanceof Declaration.Class) {
+            Symbol name = ((Declaration.Class) declaration).name.symbol;
+            String previous = origins.putIfAbsent(name, origin);
+            if (previous != null) {
+                throw new IllegalStateException("Class " + name + " is declared in both " + previous + " and " + origin);
+            }
+        }
+        linked.add(declaration);
+    }
+    
+    // The file an import names, under the first root that has it
+    public Path resolve(String name) throws IOException {
+        String relative = name.replace('.', '/') + ".java";
+        for (Path root : roots) {
+            Path candidate = root.resolve(relative);
+            if (Files.isRegularFile(candidate)) {
+                return candidate.toRealPath();
+            }
+        }
+        throw new NoSuchFileException(relative, null, "import " + name + " not found in " + roots);
+    }
+    
+    // The compiled module for a library file, compiling it unless the copy in memory is
+    // still current. compute() makes concurrent loads of one file compile it once; a
+    // module with errors is left out of the map, so the next load compiles it again.
+    private Module load(Path path, PrintStream errors) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Module[] loaded = new Module[1];
+        try {
+            modules.compute(path, (p, old) -> {
+                loaded[0] = old != null && old.isCurrent(attributes) ? old : compile(p, attributes);
+                return loaded[0].errors.isEmpty() ? loaded[0] : null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Module module = loaded[0];
+        // Line numbers are the library's own, so say which file they are in
+        module.errors.lines().forEach(line -> errors.println(path + ": " + line));
+        return module;
+    }
+    
+    private Module compile(Path path, BasicFileAttributes attributes) {
+        try {
+            ByteBuffer source = Utf8Lexer.map(path);
+            String key = cache == null ? null : cache.key(source);
+            FlatAst cached = cache == null ? null : cache.load(key);
+            List<Declaration> parsed;
+            String errors = "";
+            if (cached != null) {
+                parsed = cached.decode();
+            } else {
+                ByteArrayOutputStream errorText = new ByteArrayOutputStream();
+                PrintStream errorStream = new PrintStream(errorText, true);
+                Utf8Lexer lexer = new Utf8Lexer(source, scan, 1, errorStream);
+                Parser parser = new Parser(lexer, errorStream);
+                parsed = parser.parse();
+                if (lexer.hadErrors() || parser.hadErrors()) {
+                    errors = errorText.toString();
+                } else if (cache != null) {
+                    cache.store(key, FlatAst.encode(parsed));
+                }
+            }
+            compileCount.incrementAndGet();
+            
+            List<Declaration> declarations = new ArrayList<>();
+            List<String> imports = new ArrayList<>();
+            for (Declaration declaration : parsed) {
+                if (declaration instanceof Declaration.Import) {
+                    imports.add(((Declaration.Import) declaration).name);
+                } else if (declaration != null) {
+                    declarations.add(declaration);
+                }
+            }
+            return new Module(path, Collections.unmodifiableList(declarations), Collections.unmodifiableList(imports),
+                errors, attributes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // Modules held in memory
+    public int getModuleCount() {
+        return modules.size();
+    }
+    
+    // Times a library was compiled (parsed or loaded from the cache), counting
+    // recompiles after a change
+    public int getCompileCount() {
+        return compileCount.get();
+    }
+}
@@ -0,0 +1,151 @@
+package parser;
+
+import lexer.SourceUnit;
+import lexer.Utf8Lexer;
+import parser.ast.Declaration;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Front end that lexes and parses the class units of one or more sources in parallel
+// on a ForkJoinPool. Runs of consecutive units are parsed by separate lexer/parser
+// pairs; their declarations are concatenated in source order, and their error
+// messages are buffered and printed in source order, so the result does not depend
+// on scheduling. Identifiers are interned into the shared, thread-safe Symbol table.
+public class ParallelParser {
+    // Below this many bytes a task parses its units itself instead of forking
+    private static final int SPLIT_THRESHOLD = 64 * 1024;
+    
+    private final ForkJoinPool pool;
+    private final Utf8Lexer.Scan scan;
+    private final PrintStream errors;
+    private int tokenCount = 0;
+    private int unitCount = 0;
+    private int taskCount = 0;
+    private boolean hadErrors = false;
+    
+    public ParallelParser(ForkJoinPool pool, Utf8Lexer.Scan scan) {
+        this(pool, scan, System.err);
+    }
+    
+    // Errors are reported to 'errors', in source order once all units are parsed
+    public ParallelParser(ForkJoinPool pool, Utf8Lexer.Scan scan, PrintStream errors) {
+        this.pool = pool;
+        this.scan = scan;
+        this.errors = errors;
+    }
+    
+    public List<Declaration> parse(List<ByteBuffer> sources) {
+        List<SourceUnit> units = new ArrayList<>();
+        for (ByteBuffer source : sources) {
+            units.addAll(SourceUnit.split(source));
+        }
+        
+        Result result = pool.invoke(new ParseTask(units, 0, units.size()));
+        errors.print(result.errors);
+        
+        // Each task's lexer counted its own EOF; the program has only one
+        tokenCount = result.tokenCount - (result.taskCount - 1);
+        unitCount = units.size();
+        taskCount = result.taskCount;
+        hadErrors = !result.errors.isEmpty();
+        return result.declarations;
+    }
+    
+    // Tokens in the last parse, counting EOF once
+    public int getTokenCount() {
+        return tokenCount;
+    }
+    
+    public int getUnitCount() {
+        return unitCount;
+    }
+    
+    // Number of lexer/parser pairs the units were divided among
+    public int getTaskCount() {
+        return taskCount;
+    }
+    
+    // True if any unit reported a lexical or syntax error in the last parse
+    public boolean hadErrors() {
+        return hadErrors;
+    }
+    
+    private static class Result {
+        final List<Declaration> declarations;
+        final String errors;
+        final int tokenCount;
+        final int taskCount;
+        
+        Result(List<Declaration> declarations, String errors, int tokenCount, int taskCount) {
+            this.declarations = declarations;
+            this.errors = errors;
+            this.tokenCount = tokenCount;
+            this.taskCount = taskCount;
+        }
+        
+        Result merge(Result later) {
+            List<Declaration> declarations = new ArrayList<>(this.declarations.size() + later.declarations.size());
+            declarations.addAll(this.declarations);
+            declarations.addAll(later.declarations);
+            return new Result(declarations, errors + later.errors,
+                tokenCount + later.tokenCount, taskCount + later.taskCount);
+        }
+    }
+    
+    // Parses units[from, to), halving the range until it is small enough
+    private class ParseTask extends RecursiveTask<Result> {
+        private static final long serialVersionUID = 1L;
+        private final List<SourceUnit> units;
+        private final int from;
+        private final int to;
+        
+        ParseTask(List<SourceUnit> units, int from, int to) {
+            this.units = units;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected Result compute() {
+            long bytes = 0;
+            for (int i = from; i < to; i++) {
+                bytes += units.get(i).length();
+            }
+            
+            if (to - from > 1 && bytes > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ParseTask left = new ParseTask(units, from, middle);
+                ParseTask right = new ParseTask(units, middle, to);
+                right.fork();
+                Result first = left.compute();
+                return first.merge(right.join());
+            }
+            return parseRange();
+        }
+        
+        // One lexer/parser pair per run of units from the same source
+        private Result parseRange() {
+            Result result = new Result(new ArrayList<>(), "", 0, 0);
+            int first = from;
+            while (first < to) {
+                int last = first;
+                while (last + 1 < to && units.get(last + 1).source == units.get(first).source) last++;
+                
+                ByteArrayOutputStream errorText = new ByteArrayOutputStream();
+                PrintStream errors = new PrintStream(errorText);
+                Utf8Lexer lexer = SourceUnit.lexer(units.get(first), units.get(last), scan, errors);
+                List<Declaration> declarations = new Parser(lexer, errors).parse();
+                errors.flush();
+                
+                result = result.merge(new Result(declarations, errorText.toString(), lexer.getTokenCount(), 1));
+                first = last + 1;
+            }
+            return result;
+        }
+    }
+}
@@ -1,17 +1,52 @@
 package parser;
 
+import lexer.Symbol;
+import lexer.SymbolMap;
 import lexer.Token;
+import lexer.TokenSource;
 import lexer.TokenType;
 import parser.ast.*;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 public class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
+    // Tokens are pulled from the source as needed; only the lookahead is buffered
+    private static final int LOOKAHEAD = 3;
+    private final TokenSource tokens;
+    private final PrintStream errors;
+    private final Token[] lookahead = new Token[LOOKAHEAD];
+    private int lookaheadStart = 0;
+    private int lookaheadCount = 0;
+    private Token previous = null;
+    private int breakableDepth = 0;
+    private Token currentClass = null;
+    private boolean hadErrors = false;
+    // Declared types of locals in scope, innermost last; used to type call arguments
+    private final Deque<SymbolMap<String>> localTypes = new ArrayDeque<>();
+    
+    public Parser(TokenSource tokens) {
+        this(tokens, System.err);
+    }
+    
+    public Parser(TokenSource tokens, PrintStream errors) {
+        this.tokens = tokens;
+        this.errors = errors;
+    }
     
     public Parser(List<Token> tokens) {
-        this.tokens = tokens;
+        this(listSource(tokens));
+    }
+    
+    private static TokenSource listSource(List<Token> tokens) {
+        Iterator<Token> iterator = tokens.iterator();
+        Token eof = tokens.get(tokens.size() - 1);
+        return () -> iterator.hasNext() ? iterator.next() : eof;
     }
     
     public List<Declaration> parse() {
@@ -22,41 +57,93 @@ public class Parser {
         return declarations;
     }
     
+    // True once any syntax error has been reported
+    public boolean hadErrors() {
+        return hadErrors;
+    }
+    
+    // Parses the tokens as exactly one method or constructor of the class named
+    // 'className', the way that class's body would; null if they are anything else.
+    // IncrementalParser uses this to re-parse a single edited member.
+    public Declaration.Method parseMethod(Token className) {
+        currentClass = className;
+        try {
+            Token type = advance();
+            Declaration.Method method;
+            if (type.type == TokenType.IDENTIFIER && type.symbol == className.symbol && match(TokenType.LPAREN)) {
+                method = finishMethodDeclaration(null, type);
+            } else {
+                Token name = consume(TokenType.IDENTIFIER, "Expect member name");
+                consume(TokenType.LPAREN, "Expect '(' after method name");
+                method = finishMethodDeclaration(type, name);
+            }
+            if (!isAtEnd()) {
+                throw error(peek(), "Expect end of method");
+            }
+            return method;
+        } catch (ParseError error) {
+            return null;
+        } finally {
+            currentClass = null;
+        }
+    }
+    
     // Grammar: declaration → classDecl | statement
     private Declaration declaration() {
         try {
             if (match(TokenType.CLASS)) {
                 return classDeclaration();
             }
+            if (match(TokenType.IMPORT)) {
+                return importDeclaration();
+            }
             
-            // Try to parse as statement and wrap it
-            Statement stmt = statement();
-            // For top-level statements, we'll handle them differently in interpreter
-            final Statement finalStmt = stmt;
-            return new Declaration.Var(null, null, null) {
-                public Statement stmt = finalStmt;
-                @Override
-                public <R> R accept(interpreter.Visitor<R> visitor) {
-                    return stmt.accept(visitor);
-                }
-            };
+            // Top-level statements are kept, but only classes are run
+            return new Declaration.TopLevel(statement());
         } catch (ParseError error) {
+            currentClass = null;
             synchronize();
             return null;
         }
     }
     
-    // Grammar: classDecl → "class" IDENTIFIER "{" (varDecl | methodDecl)* "}"
+    // Grammar: importDecl → "import" IDENTIFIER ("." IDENTIFIER)* ";"
+    private Declaration.Import importDeclaration() {
+        Token keyword = previous();
+        StringBuilder name = new StringBuilder(consume(TokenType.IDENTIFIER, "Expect module name after 'import'").lexeme);
+        while (match(TokenType.DOT)) {
+            name.append('.').append(consume(TokenType.IDENTIFIER, "Expect name after '.' in import").lexeme);
+        }
+        consume(TokenType.SEMICOLON, "Expect ';' after import");
+        return new Declaration.Import(keyword, name.toString());
+    }
+    
+    // Grammar: classDecl → "class" IDENTIFIER ("extends" IDENTIFIER)? "{" (varDecl | methodDecl | constructorDecl)* "}"
     private Declaration.Class classDeclaration() {
         Token name = consume(TokenType.IDENTIFIER, "Expect class name");
+        Token superclass = null;
+        if (match(TokenType.EXTENDS)) {
+            superclass = consume(TokenType.IDENTIFIER, "Expect superclass name after 'extends'");
+        }
         consume(TokenType.LBRACE, "Expect '{' before class body");
         
+        Token enclosingClass = currentClass;
+        currentClass = name;
+        
         List<Declaration.Var> fields = new ArrayList<>();
+        List<Declaration.Method> constructors = new ArrayList<>();
         List<Declaration.Method> methods = new ArrayList<>();
         
         while (!check(TokenType.RBRACE) && !isAtEnd()) {
             // Check if it's a method or field
             Token type = advance(); // type token
+            
+            // Constructor: the class name directly followed by '('
+            if (type.type == TokenType.IDENTIFIER && type.symbol == name.symbol && match(TokenType.LPAREN)) {
+                constructors.add(finishMethodDeclaration(null, type));
+                continue;
+            }
+            
             Token memberName = consume(TokenType.IDENTIFIER, "Expect member name");
             
             if (match(TokenType.LPAREN)) {
@@ -74,7 +161,8 @@ public class Parser {
         }
         
         consume(TokenType.RBRACE, "Expect '}' after class body");
-        return new Declaration.Class(name, fields, methods);
+        currentClass = enclosingClass;
+        return new Declaration.Class(name, superclass, fields, constructors, methods);
     }
     
     private Declaration.Method finishMethodDeclaration(Token returnType, Token name) {
@@ -91,65 +179,63 @@ public class Parser {
         consume(TokenType.RPAREN, "Expect ')' after parameters");
         consume(TokenType.LBRACE, "Expect '{' before method body");
         
+        beginScope();
+        for (Declaration.Parameter parameter : parameters) {
+            declareLocal(parameter.type, parameter.name);
+        }
+        
         List<Statement> statements = new ArrayList<>();
-        while (!check(TokenType.RBRACE) && !isAtEnd()) {
-            statements.add(statement());
+        try {
+            while (!check(TokenType.RBRACE) && !isAtEnd()) {
+                statements.add(statement());
+            }
+        } finally {
+            endScope();
         }
         
         consume(TokenType.RBRACE, "Expect '}' after method body");
         return new Declaration.Method(returnType, name, parameters, new Statement.Block(statements));
     }
     
-    // Grammar: statement → exprStmt | block | ifStmt | whileStmt | forStmt | returnStmt | varDecl
+    // Grammar: statement → exprStmt | block | ifStmt | whileStmt | forStmt | switchStmt
+    //                    | returnStmt | breakStmt | varDecl
     private Statement statement() {
         if (match(TokenType.IF)) return ifStatement();
+        if (match(TokenType.SWITCH)) return switchStatement();
+        if (match(TokenType.BREAK)) return breakStatement();
         if (match(TokenType.WHILE)) return whileStatement();
         if (match(TokenType.FOR)) return forStatement();
         if (match(TokenType.RETURN)) return returnStatement();
         if (match(TokenType.LBRACE)) return new Statement.Block(block());
         
-        // Check for variable declaration
-        if (isTypeToken(peek())) {
+        if (isVarDeclaration()) {
             return varDeclarationStatement();
         }
         
         return expressionStatement();
     }
     
+    // A type, then an identifier followed by = or ; (decided with lookahead, no backtracking)
+    private boolean isVarDeclaration() {
+        if (!isTypeToken(peek()) || peek(1).type != TokenType.IDENTIFIER) {
+            return false;
+        }
+        return peek(2).type == TokenType.EQUAL || peek(2).type == TokenType.SEMICOLON;
+    }
+    
     private Statement varDeclarationStatement() {
         Token type = advance();
-        
-        // Check if next token is an identifier followed by = or ;
-        if (!check(TokenType.IDENTIFIER)) {
-            // Not a variable declaration, backtrack
-            current--;
-            return expressionStatement();
-        }
-        
         Token name = advance();
         
-        // Check if this is actually a variable declaration
-        if (!check(TokenType.EQUAL) && !check(TokenType.SEMICOLON)) {
-            // This is not a variable declaration, backtrack
-            current -= 2;
-            return expressionStatement();
-        }
-        
         Expression initializer = null;
         if (match(TokenType.EQUAL)) {
             initializer = expression();
         }
         
         consume(TokenType.SEMICOLON, "Expect ';' after variable declaration");
+        declareLocal(type, name);
         
-        final Declaration.Var varDecl = new Declaration.Var(type, name, initializer);
-        return new Statement.ExpressionStmt(null) {
-            public Declaration.Var decl = varDecl;
-            @Override
-            public <R> R accept(interpreter.Visitor<R> visitor) {
-                return visitor.visitVarDecl(decl);
-            }
-        };
+        return new Statement.VarDecl(type, name, initializer);
     }
     
     private boolean isTypeToken(Token token) {
@@ -179,17 +265,117 @@ public class Parser {
         Expression condition = expression();
         consume(TokenType.RPAREN, "Expect ')' after while condition");
         
-        Statement body = statement();
+        Statement body = breakableBody();
         return new Statement.While(condition, body);
     }
     
+    // Grammar: switchStmt → "switch" "(" expression ")" "{" (("case" constant | "default") ":" statement*)* "}"
+    private Statement switchStatement() {
+        consume(TokenType.LPAREN, "Expect '(' after 'switch'");
+        Expression subject = expression();
+        consume(TokenType.RPAREN, "Expect ')' after switch subject");
+        consume(TokenType.LBRACE, "Expect '{' before switch body");
+        
+        List<Statement.Case> cases = new ArrayList<>();
+        Set<Object> seenLabels = new HashSet<>();
+        Class<?> labelType = null;
+        boolean seenDefault = false;
+        
+        breakableDepth++;
+        beginScope();
+        try {
+            while (!check(TokenType.RBRACE) && !isAtEnd()) {
+                Token keyword = peek();
+                Object label = null;
+                
+                if (match(TokenType.CASE)) {
+                    label = caseLabel();
+                    if (labelType != null && labelType != label.getClass()) {
+                        throw error(keyword, "Case labels must all be int or all be String");
+                    }
+                    if (!seenLabels.add(label)) {
+                        throw error(keyword, "Duplicate case label");
+                    }
+                    labelType = label.getClass();
+                } else if (match(TokenType.DEFAULT)) {
+                    if (seenDefault) {
+                        throw error(keyword, "Duplicate default label");
+                    }
+                    seenDefault = true;
+                } else {
+                    throw error(keyword, "Expect 'case' or 'default' in switch body");
+                }
+                consume(TokenType.COLON, "Expect ':' after case label");
+                
+                List<Statement> body = new ArrayList<>();
+                while (!check(TokenType.CASE) && !check(TokenType.DEFAULT) &&
+                       !check(TokenType.RBRACE) && !isAtEnd()) {
+                    body.add(statement());
+                }
+                cases.add(new Statement.Case(keyword, label, body));
+            }
+        } finally {
+            endScope();
+            breakableDepth--;
+        }
+        
+        consume(TokenType.RBRACE, "Expect '}' after switch body");
+        return new Statement.Switch(subject, cases);
+    }
+    
+    // Case labels are int or String constants, optionally negated ints
+    private Object caseLabel() {
+        if (match(TokenType.MINUS)) {
+            Token number = consume(TokenType.NUMBER, "Expect int constant after '-'");
+            if (number.literal instanceof Integer) {
+                return -(Integer) number.literal;
+            }
+            throw error(number, "Case label must be an int or String constant");
+        }
+        if (match(TokenType.NUMBER, TokenType.STRING)) {
+            Token constant = previous();
+            if (constant.literal instanceof Integer || constant.literal instanceof String) {
+                return constant.literal;
+            }
+            throw error(constant, "Case label must be an int or String constant");
+        }
+        throw error(peek(), "Case label must be an int or String constant");
+    }
+    
+    private Statement breakStatement() {
+        Token keyword = previous();
+        if (breakableDepth == 0) {
+            throw error(keyword, "Cannot use 'break' outside of a loop or switch");
+        }
+        consume(TokenType.SEMICOLON, "Expect ';' after 'break'");
+        return new Statement.Break(keyword);
+    }
+    
+    private Statement breakableBody() {
+        breakableDepth++;
+        try {
+            return statement();
+        } finally {
+            breakableDepth--;
+        }
+    }
+    
     private Statement forStatement() {
         consume(TokenType.LPAREN, "Expect '(' after 'for'");
         
+        beginScope();
+        try {
+            return finishForStatement();
+        } finally {
+            endScope();
+        }
+    }
+    
+    private Statement finishForStatement() {
         // Initializer
         Statement initializer = null;
         if (!check(TokenType.SEMICOLON)) {
-            if (isTypeToken(peek())) {
+            if (isVarDeclaration()) {
                 initializer = varDeclarationStatement();
             } else {
                 initializer = expressionStatement();
@@ -212,7 +398,7 @@ public class Parser {
         }
         consume(TokenType.RPAREN, "Expect ')' after for clauses");
         
-        Statement body = statement();
+        Statement body = breakableBody();
         return new Statement.For(initializer, condition, increment, body);
     }
     
@@ -231,8 +417,13 @@ public class Parser {
     private List<Statement> block() {
         List<Statement> statements = new ArrayList<>();
         
-        while (!check(TokenType.RBRACE) && !isAtEnd()) {
-            statements.add(statement());
+        beginScope();
+        try {
+            while (!check(TokenType.RBRACE) && !isAtEnd()) {
+                statements.add(statement());
+            }
+        } finally {
+            endScope();
         }
         
         consume(TokenType.RBRACE, "Expect '}' after block");
@@ -246,17 +437,13 @@ public class Parser {
     }
     
     // Grammar: expression → assignment
+    //          assignment → IDENTIFIER "=" assignment | binary
     private Expression expression() {
-        return assignment();
-    }
-    
-    // Grammar: assignment → IDENTIFIER "=" assignment | logicOr
-    private Expression assignment() {
-        Expression expr = logicOr();
+        Expression expr = binary(0);
         
-        if (match(TokenType.EQUAL)) {
-            Token equals = previous();
-            Expression value = assignment();
+        if (check(TokenType.EQUAL)) {
+            Token equals = advance();
+            Expression value = expression();
             
             if (expr instanceof Expression.Variable) {
                 Token name = ((Expression.Variable) expr).name;
@@ -272,88 +459,46 @@ public class Parser {
         return expr;
     }
     
-    // Grammar: logicOr → logicAnd ("||" logicAnd)*
-    private Expression logicOr() {
-        Expression expr = logicAnd();
-        
-        while (match(TokenType.OR)) {
-            Token operator = previous();
-            Expression right = logicAnd();
-            expr = new Expression.Binary(expr, operator, right);
-        }
-        
-        return expr;
+    // Binding power of each binary operator, indexed by token type ordinal; 0 for
+    // every token that is not one. All binary operators are left-associative.
+    private static final int[] BINDING_POWER = new int[TokenType.values().length];
+    static {
+        bind(1, TokenType.OR);
+        bind(2, TokenType.AND);
+        bind(3, TokenType.EQUAL_EQUAL, TokenType.BANG_EQUAL);
+        bind(4, TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL);
+        bind(5, TokenType.PLUS, TokenType.MINUS);
+        bind(6, TokenType.STAR, TokenType.SLASH, TokenType.PERCENT);
     }
     
-    // Grammar: logicAnd → equality ("&&" equality)*
-    private Expression logicAnd() {
-        Expression expr = equality();
-        
-        while (match(TokenType.AND)) {
-            Token operator = previous();
-            Expression right = equality();
-            expr = new Expression.Binary(expr, operator, right);
+    private static void bind(int power, TokenType... operators) {
+        for (TokenType operator : operators) {
+            BINDING_POWER[operator.ordinal()] = power;
         }
-        
-        return expr;
     }
     
-    // Grammar: equality → comparison (("==" | "!=") comparison)*
-    private Expression equality() {
-        Expression expr = comparison();
-        
-        while (match(TokenType.EQUAL_EQUAL, TokenType.BANG_EQUAL)) {
-            Token operator = previous();
-            Expression right = comparison();
-            expr = new Expression.Binary(expr, operator, right);
-        }
-        
-        return expr;
-    }
-    
-    // Grammar: comparison → term ((">" | ">=" | "<" | "<=") term)*
-    private Expression comparison() {
-        Expression expr = term();
-        
-        while (match(TokenType.GREATER, TokenType.GREATER_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL)) {
-            Token operator = previous();
-            Expression right = term();
-            expr = new Expression.Binary(expr, operator, right);
-        }
-        
-        return expr;
-    }
-    
-    // Grammar: term → factor (("+" | "-") factor)*
-    private Expression term() {
-        Expression expr = factor();
-        
-        while (match(TokenType.PLUS, TokenType.MINUS)) {
-            Token operator = previous();
-            Expression right = factor();
-            expr = new Expression.Binary(expr, operator, right);
-        }
-        
-        return expr;
-    }
-    
-    // Grammar: factor → unary (("*" | "/" | "%") unary)*
-    private Expression factor() {
+    // Grammar: binary → unary (OPERATOR unary)*, grouped by binding power
+    // (|| < && < == != < > >= < <= < + - < * / %)
+    // Parses operators that bind tighter than minPower in one loop, recursing only
+    // for the right operand of each operator it takes.
+    private Expression binary(int minPower) {
         Expression expr = unary();
         
-        while (match(TokenType.STAR, TokenType.SLASH, TokenType.PERCENT)) {
-            Token operator = previous();
-            Expression right = unary();
+        while (true) {
+            int power = BINDING_POWER[peek().type.ordinal()];
+            if (power <= minPower) return expr;
+            
+            Token operator = advance();
+            Expression right = binary(power);
             expr = new Expression.Binary(expr, operator, right);
         }
-        
-        return expr;
     }
     
     // Grammar: unary → ("!" | "-") unary | call
     private Expression unary() {
-        if (match(TokenType.BANG, TokenType.MINUS)) {
-            Token operator = previous();
+        TokenType type = peek().type;
+        if (type == TokenType.BANG || type == TokenType.MINUS) {
+            Token operator = advance();
             Expression right = unary();
             return new Expression.Unary(operator, right);
         }
@@ -389,53 +534,189 @@ public class Parser {
         }
         
         Token paren = consume(TokenType.RPAREN, "Expect ')' after arguments");
-        return new Expression.Call(callee, paren, arguments);
+        return new Expression.Call(callee, paren, arguments, argumentTypes(arguments), receiverType(callee));
     }
     
     // Grammar: primary → NUMBER | STRING | "true" | "false" | "null"
     //                  | IDENTIFIER | "(" expression ")" | "new" IDENTIFIER "(" arguments? ")" | "this"
+    //                  | "super" ("." IDENTIFIER)?
     private Expression primary() {
-        if (match(TokenType.TRUE)) return new Expression.Literal(true);
-        if (match(TokenType.FALSE)) return new Expression.Literal(false);
-        if (match(TokenType.NULL)) return new Expression.Literal(null);
-        
-        if (match(TokenType.NUMBER, TokenType.STRING)) {
-            return new Expression.Literal(previous().literal);
+        Token token = peek();
+        switch (token.type) {
+            case TRUE:
+                advance();
+                return new Expression.Literal(true);
+            case FALSE:
+                advance();
+                return new Expression.Literal(false);
+            case NULL:
+                advance();
+                return new Expression.Literal(null);
+            case NUMBER:
+            case STRING:
+                advance();
+                return new Expression.Literal(token.literal);
+            case THIS:
+                return new Expression.This(advance());
+            case SUPER:
+                return superExpression(advance());
+            case IDENTIFIER:
+                return new Expression.Variable(advance());
+            case LPAREN: {
+                advance();
+                Expression expr = expression();
+                consume(TokenType.RPAREN, "Expect ')' after expression");
+                return expr;
+            }
+            case NEW:
+                advance();
+                return newExpression();
+            default:
+                throw error(token, "Expect expression");
         }
-        
-        if (match(TokenType.THIS)) {
-            return new Expression.This(previous());
+    }
+    
+    private Expression superExpression(Token keyword) {
+        if (currentClass == null) {
+            throw error(keyword, "Cannot use 'super' outside of a class");
         }
-        
-        if (match(TokenType.IDENTIFIER)) {
-            return new Expression.Variable(previous());
+        // super(...) calls a superclass constructor
+        if (check(TokenType.LPAREN)) {
+            return new Expression.Super(keyword, null, currentClass);
         }
+        consume(TokenType.DOT, "Expect '.' after 'super'");
+        Token method = consume(TokenType.IDENTIFIER, "Expect superclass method name");
+        return new Expression.Super(keyword, method, currentClass);
+    }
+    
+    private Expression newExpression() {
+        Token className = consume(TokenType.IDENTIFIER, "Expect class name after 'new'");
+        consume(TokenType.LPAREN, "Expect '(' after class name");
         
-        if (match(TokenType.LPAREN)) {
-            Expression expr = expression();
-            consume(TokenType.RPAREN, "Expect ')' after expression");
-            return expr;
+        List<Expression> arguments = new ArrayList<>();
+        if (!check(TokenType.RPAREN)) {
+            do {
+                arguments.add(expression());
+            } while (match(TokenType.COMMA));
         }
         
-        if (match(TokenType.NEW)) {
-            Token className = consume(TokenType.IDENTIFIER, "Expect class name after 'new'");
-            consume(TokenType.LPAREN, "Expect '(' after class name");
-            
-            List<Expression> arguments = new ArrayList<>();
-            if (!check(TokenType.RPAREN)) {
-                do {
-                    arguments.add(expression());
-                } while (match(TokenType.COMMA));
+        consume(TokenType.RPAREN, "Expect ')' after arguments");
+        return new Expression.New(className, arguments, argumentTypes(arguments));
+    }
+    
+    // ========== Static types ==========
+    
+    // Static types of call arguments as far as the parser can tell; null means unknown
+    // and leaves overload resolution to run time
+    private String[] argumentTypes(List<Expression> arguments) {
+        String[] types = new String[arguments.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = staticType(arguments.get(i));
+        }
+        return types;
+    }
+    
+    // The class a virtual call's overload is chosen from: the declared type of the
+    // object it is called on, or the enclosing class for an unqualified call
+    private String receiverType(Expression callee) {
+        if (callee instanceof Expression.Get) {
+            return staticType(((Expression.Get) callee).object);
+        }
+        if (callee instanceof Expression.Variable) {
+            return currentClass != null ? currentClass.lexeme : null;
+        }
+        return null;
+    }
+    
+    private String staticType(Expression expr) {
+        if (expr instanceof Expression.Literal) {
+            Object value = ((Expression.Literal) expr).value;
+            if (value == null) return "null";
+            if (value instanceof Integer) return "int";
+            if (value instanceof Double) return "double";
+            if (value instanceof Boolean) return "boolean";
+            if (value instanceof String) return "String";
+            return null;
+        }
+        if (expr instanceof Expression.Variable) {
+            return lookupLocal(((Expression.Variable) expr).name.symbol);
+        }
+        if (expr instanceof Expression.Assign) {
+            return lookupLocal(((Expression.Assign) expr).name.symbol);
+        }
+        if (expr instanceof Expression.New) {
+            return ((Expression.New) expr).className.lexeme;
+        }
+        if (expr instanceof Expression.This) {
+            return currentClass != null ? currentClass.lexeme : null;
+        }
+        if (expr instanceof Expression.Unary) {
+            Expression.Unary unary = (Expression.Unary) expr;
+            if (unary.operator.type == TokenType.BANG) return "boolean";
+            String operand = staticType(unary.right);
+            return numericType(operand, operand);
+        }
+        if (expr instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expr;
+            String left = staticType(binary.left);
+            String right = staticType(binary.right);
+            if (binary.operator.type == TokenType.PLUS
+                    && ("String".equals(left) || "String".equals(right))) {
+                return "String";
+            }
+            switch (binary.operator.type) {
+                case PLUS:
+                case MINUS:
+                case STAR:
+                case SLASH:
+                case PERCENT:
+                    return numericType(left, right);
+                default:
+                    return "boolean";
             }
-            
-            consume(TokenType.RPAREN, "Expect ')' after arguments");
-            return new Expression.New(className, arguments);
         }
-        
-        throw error(peek(), "Expect expression");
+        return null;
+    }
+    
+    private String numericType(String left, String right) {
+        boolean leftNumeric = "int".equals(left) || "double".equals(left);
+        boolean rightNumeric = "int".equals(right) || "double".equals(right);
+        if (!leftNumeric || !rightNumeric) return null;
+        return "double".equals(left) || "double".equals(right) ? "double" : "int";
+    }
+    
+    private void beginScope() {
+        localTypes.addLast(new SymbolMap<>());
+    }
+    
+    private void endScope() {
+        localTypes.removeLast();
+    }
+    
+    private void declareLocal(Token type, Token name) {
+        if (!localTypes.isEmpty()) {
+            localTypes.peekLast().put(name.symbol, type.lexeme);
+        }
+    }
+    
+    private String lookupLocal(Symbol name) {
+        Iterator<SymbolMap<String>> scopes = localTypes.descendingIterator();
+        while (scopes.hasNext()) {
+            String type = scopes.next().get(name);
+            if (type != null) return type;
+        }
+        return null;
     }
     
     // Helper methods
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+    
     private boolean match(TokenType... types) {
         for (TokenType type : types) {
             if (check(type)) {
@@ -457,7 +738,12 @@ public class Parser {
     }
     
     private Token advance() {
-        if (!isAtEnd()) current++;
+        if (!isAtEnd()) {
+            previous = peek();
+            lookahead[lookaheadStart] = null;
+            lookaheadStart = (lookaheadStart + 1) % LOOKAHEAD;
+            lookaheadCount--;
+        }
         return previous();
     }
     
@@ -466,15 +752,25 @@ public class Parser {
     }
     
     private Token peek() {
-        return tokens.get(current);
+        return peek(0);
+    }
+    
+    // The token 'distance' places ahead of the current one, pulling tokens as needed
+    private Token peek(int distance) {
+        while (lookaheadCount <= distance) {
+            lookahead[(lookaheadStart + lookaheadCount) % LOOKAHEAD] = tokens.nextToken();
+            lookaheadCount++;
+        }
+        return lookahead[(lookaheadStart + distance) % LOOKAHEAD];
     }
     
     private Token previous() {
-        return tokens.get(current - 1);
+        return previous;
     }
     
     private ParseError error(Token token, String message) {
-        System.err.println("[Line " + token.line + "] Parser Error at '" + token.lexeme + "': " + message);
+        hadErrors = true;
+        errors.println("[Line " + token.line + "] Parser Error at '" + token.lexeme + "': " + message);
         return new ParseError();
     }
     
@@ -486,9 +782,11 @@ public class Parser {
             
             switch (peek().type) {
                 case CLASS:
+                case IMPORT:
                 case IF:
                 case WHILE:
                 case FOR:
+                case SWITCH:
                 case RETURN:
                     return;
             }
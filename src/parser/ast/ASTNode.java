@@ -2,6 +2,6 @@ package parser.ast;
 
 import interpreter.Visitor;
 
-public interface ASTNode {
+public sealed interface ASTNode permits Expression, Statement, Declaration {
     <R> R accept(Visitor<R> visitor);
 }
\ No newline at end of file
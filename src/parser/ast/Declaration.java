@@ -1,10 +1,22 @@
 package parser.ast;
 
+import lexer.Symbol;
 import lexer.Token;
 import interpreter.Visitor;
 import java.util.List;
 
-public abstract class Declaration implements ASTNode {
+public abstract sealed class Declaration implements ASTNode {
+    // Lines to add to those of the declaration's tokens (and, for a class, to those of
+    // its members). IncrementalParser moves a declaration by copying it with a new
+    // offset, so tokens shared with earlier versions of a program are never renumbered.
+    public final int lineOffset;
+    
+    Declaration(int lineOffset) {
+        this.lineOffset = lineOffset;
+    }
+    
+    // A shallow copy of the declaration, 'lines' further down the source
+    public abstract Declaration movedBy(int lines);
     
     // Parameter for methods
     public static class Parameter {
@@ -18,17 +30,27 @@ public abstract class Declaration implements ASTNode {
     }
     
     // Variable: int x = 5;
-    public static class Var extends Declaration {
+    public static final class Var extends Declaration {
         public final Token type;
         public final Token name;
         public final Expression initializer;
         
         public Var(Token type, Token name, Expression initializer) {
+            this(type, name, initializer, 0);
+        }
+        
+        private Var(Token type, Token name, Expression initializer, int lineOffset) {
+            super(lineOffset);
             this.type = type;
             this.name = name;
             this.initializer = initializer;
         }
         
+        @Override
+        public Var movedBy(int lines) {
+            return new Var(type, name, initializer, lineOffset + lines);
+        }
+        
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitVarDecl(this);
@@ -36,40 +58,134 @@ public abstract class Declaration implements ASTNode {
     }
     
     // Method: int add(int a, int b) { ... }
-    public static class Method extends Declaration {
+    // Constructors are Methods named after their class with a null returnType
+    public static final class Method extends Declaration {
         public final Token returnType;
         public final Token name;
         public final List<Parameter> parameters;
         public final Statement.Block body;
         
+        // Filled in by the interpreter when the method is first called; prepared is
+        // set last, so a thread that sees it true also sees everything else filled in
+        public volatile boolean prepared;
+        public Symbol[] parameterNames;
+        
         public Method(Token returnType, Token name, List<Parameter> parameters, Statement.Block body) {
+            this(returnType, name, parameters, body, 0);
+        }
+        
+        private Method(Token returnType, Token name, List<Parameter> parameters, Statement.Block body, int lineOffset) {
+            super(lineOffset);
             this.returnType = returnType;
             this.name = name;
             this.parameters = parameters;
             this.body = body;
         }
         
+        @Override
+        public Method movedBy(int lines) {
+            return new Method(returnType, name, parameters, body, lineOffset + lines);
+        }
+        
+        // True for a constructor whose body starts with an explicit super(...) call
+        public boolean startsWithSuperCall() {
+            if (body.statements.isEmpty()) return false;
+            Statement first = body.statements.get(0);
+            if (!(first instanceof Statement.ExpressionStmt)) return false;
+            Expression expr = ((Statement.ExpressionStmt) first).expression;
+            return expr instanceof Expression.Call &&
+                   ((Expression.Call) expr).callee instanceof Expression.Super &&
+                   ((Expression.Super) ((Expression.Call) expr).callee).method == null;
+        }
+        
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitMethodDecl(this);
         }
     }
     
-    // Class: class Calculator { ... }
-    public static class Class extends Declaration {
+    // Class: class Calculator extends Base { ... }
+    public static final class Class extends Declaration {
         public final Token name;
+        public final Token superclass;
         public final List<Var> fields;
+        public final List<Method> constructors;
         public final List<Method> methods;
         
-        public Class(Token name, List<Var> fields, List<Method> methods) {
+        public Class(Token name, Token superclass, List<Var> fields, List<Method> constructors, List<Method> methods) {
+            this(name, superclass, fields, constructors, methods, 0);
+        }
+        
+        // A class whose members' lines are relative to its own, moved 'lineOffset' lines
+        public Class(Token name, Token superclass, List<Var> fields, List<Method> constructors, List<Method> methods,
+                     int lineOffset) {
+            super(lineOffset);
             this.name = name;
+            this.superclass = superclass;
             this.fields = fields;
+            this.constructors = constructors;
             this.methods = methods;
         }
         
+        @Override
+        public Class movedBy(int lines) {
+            return new Class(name, superclass, fields, constructors, methods, lineOffset + lines);
+        }
+        
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitClassDecl(this);
         }
     }
+    
+    // Top-level statement outside any class (parsed, but not run by the interpreter)
+    public static final class TopLevel extends Declaration {
+        public final Statement statement;
+        
+        public TopLevel(Statement statement) {
+            this(statement, 0);
+        }
+        
+        private TopLevel(Statement statement, int lineOffset) {
+            super(lineOffset);
+            this.statement = statement;
+        }
+        
+        @Override
+        public TopLevel movedBy(int lines) {
+            return new TopLevel(statement, lineOffset + lines);
+        }
+        
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitTopLevelDecl(this);
+        }
+    }
+    
+    // Import: import util.MathUtils; names the library source util/MathUtils.java
+    public static final class Import extends Declaration {
+        public final Token keyword;
+        // Dotted name as written, e.g. "util.MathUtils"
+        public final String name;
+        
+        public Import(Token keyword, String name) {
+            this(keyword, name, 0);
+        }
+        
+        private Import(Token keyword, String name, int lineOffset) {
+            super(lineOffset);
+            this.keyword = keyword;
+            this.name = name;
+        }
+        
+        @Override
+        public Import movedBy(int lines) {
+            return new Import(keyword, name, lineOffset + lines);
+        }
+        
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitImportDecl(this);
+        }
+    }
 }
\ No newline at end of file
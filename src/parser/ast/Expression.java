@@ -1,18 +1,31 @@
 package parser.ast;
 
+import lexer.Symbol;
 import lexer.Token;
 import interpreter.Visitor;
 import java.util.List;
 
-public abstract class Expression implements ASTNode {
+public abstract sealed class Expression implements ASTNode {
+    
+    // Node kinds, for dispatching with a switch instead of a visitor
+    public enum Kind {
+        BINARY, LITERAL, VARIABLE, ASSIGN, UNARY, CALL, GET, SET, NEW, THIS, SUPER
+    }
+    
+    public final Kind kind;
+    
+    protected Expression(Kind kind) {
+        this.kind = kind;
+    }
     
     // Binary expression: a + b, x == y
-    public static class Binary extends Expression {
+    public static final class Binary extends Expression {
         public final Expression left;
         public final Token operator;
         public final Expression right;
         
         public Binary(Expression left, Token operator, Expression right) {
+            super(Kind.BINARY);
             this.left = left;
             this.operator = operator;
             this.right = right;
@@ -25,10 +38,11 @@ public abstract class Expression implements ASTNode {
     }
     
     // Literal: 42, "hello", true
-    public static class Literal extends Expression {
+    public static final class Literal extends Expression {
         public final Object value;
         
         public Literal(Object value) {
+            super(Kind.LITERAL);
             this.value = value;
         }
         
@@ -39,10 +53,11 @@ public abstract class Expression implements ASTNode {
     }
     
     // Variable: x, myVar
-    public static class Variable extends Expression {
+    public static final class Variable extends Expression {
         public final Token name;
         
         public Variable(Token name) {
+            super(Kind.VARIABLE);
             this.name = name;
         }
         
@@ -53,11 +68,12 @@ public abstract class Expression implements ASTNode {
     }
     
     // Assignment: x = 5
-    public static class Assign extends Expression {
+    public static final class Assign extends Expression {
         public final Token name;
         public final Expression value;
         
         public Assign(Token name, Expression value) {
+            super(Kind.ASSIGN);
             this.name = name;
             this.value = value;
         }
@@ -69,11 +85,12 @@ public abstract class Expression implements ASTNode {
     }
     
     // Unary: !x, -y
-    public static class Unary extends Expression {
+    public static final class Unary extends Expression {
         public final Token operator;
         public final Expression right;
         
         public Unary(Token operator, Expression right) {
+            super(Kind.UNARY);
             this.operator = operator;
             this.right = right;
         }
@@ -85,15 +102,67 @@ public abstract class Expression implements ASTNode {
     }
     
     // Call: foo(1, 2, 3)
-    public static class Call extends Expression {
+    public static final class Call extends Expression {
         public final Expression callee;
         public final Token paren;
         public final List<Expression> arguments;
+        // Static argument types known to the parser (null entries are unknown)
+        public final String[] argumentTypes;
+        // Static type of the receiver of a virtual call, null if unknown
+        public final String receiverType;
+        
+        // Call-site caches, filled in by the interpreter on first execution
+        public boolean println;
+        public Symbol selector;
+        public int cachedSlot = -1;
+        // When the receiver's static type is unknown, the overload chosen for the last
+        // receiver class seen (see ReceiverChoice)
+        public ReceiverChoice receiverChoice;
+        // Target bound statically: super calls, or sites proven monomorphic by analysis
+        public Declaration.Method boundMethod;
         
-        public Call(Expression callee, Token paren, List<Expression> arguments) {
+        public Call(Expression callee, Token paren, List<Expression> arguments, String[] argumentTypes,
+                    String receiverType) {
+            super(Kind.CALL);
             this.callee = callee;
             this.paren = paren;
             this.arguments = arguments;
+            this.argumentTypes = argumentTypes;
+            this.receiverType = receiverType;
+        }
+        
+        // An overload chosen among the methods of one receiver class, with its vtable
+        // slot there. Replaced as a whole, so threads sharing the site never see the
+        // class of one choice with the slot of another.
+        public static final class ReceiverChoice {
+            public final Object receiverClass;
+            public final Symbol selector;
+            public final int slot;
+            
+            public ReceiverChoice(Object receiverClass, Symbol selector, int slot) {
+                this.receiverClass = receiverClass;
+                this.selector = selector;
+                this.slot = slot;
+            }
+        }
+        
+        private static final Symbol SYSTEM = Symbol.intern("System");
+        private static final Symbol OUT = Symbol.intern("out");
+        private static final Symbol PRINTLN = Symbol.intern("println");
+        
+        // True for the built-in System.out.println(...)
+        public boolean isSystemOutPrintln() {
+            if (!(callee instanceof Get)) return false;
+            Get printlnGet = (Get) callee;
+            
+            if (printlnGet.name.symbol != PRINTLN) return false;
+            if (!(printlnGet.object instanceof Get)) return false;
+            
+            Get outGet = (Get) printlnGet.object;
+            if (outGet.name.symbol != OUT) return false;
+            if (!(outGet.object instanceof Variable)) return false;
+            
+            return ((Variable) outGet.object).name.symbol == SYSTEM;
         }
         
         @Override
@@ -103,11 +172,12 @@ public abstract class Expression implements ASTNode {
     }
     
     // Get: object.field
-    public static class Get extends Expression {
+    public static final class Get extends Expression {
         public final Expression object;
         public final Token name;
         
         public Get(Expression object, Token name) {
+            super(Kind.GET);
             this.object = object;
             this.name = name;
         }
@@ -119,12 +189,13 @@ public abstract class Expression implements ASTNode {
     }
     
     // Set: object.field = value
-    public static class Set extends Expression {
+    public static final class Set extends Expression {
         public final Expression object;
         public final Token name;
         public final Expression value;
         
         public Set(Expression object, Token name, Expression value) {
+            super(Kind.SET);
             this.object = object;
             this.name = name;
             this.value = value;
@@ -137,13 +208,22 @@ public abstract class Expression implements ASTNode {
     }
     
     // New: new Calculator()
-    public static class New extends Expression {
+    public static final class New extends Expression {
         public final Token className;
         public final List<Expression> arguments;
+        // Static argument types known to the parser (null entries are unknown)
+        public final String[] argumentTypes;
         
-        public New(Token className, List<Expression> arguments) {
+        // Constructor resolved on first execution (null with no declared constructors);
+        // constructorResolved is set after constructor, for interpreters on other threads
+        public Declaration.Method constructor;
+        public volatile boolean constructorResolved;
+        
+        public New(Token className, List<Expression> arguments, String[] argumentTypes) {
+            super(Kind.NEW);
             this.className = className;
             this.arguments = arguments;
+            this.argumentTypes = argumentTypes;
         }
         
         @Override
@@ -153,10 +233,11 @@ public abstract class Expression implements ASTNode {
     }
     
     // This: this
-    public static class This extends Expression {
+    public static final class This extends Expression {
         public final Token keyword;
         
         public This(Token keyword) {
+            super(Kind.THIS);
             this.keyword = keyword;
         }
         
@@ -165,4 +246,24 @@ public abstract class Expression implements ASTNode {
             return visitor.visitThisExpr(this);
         }
     }
+    
+    // Super: super.method or super(...) for a constructor (method is null);
+    // the enclosing class is recorded so the call binds statically
+    public static final class Super extends Expression {
+        public final Token keyword;
+        public final Token method;
+        public final Token enclosingClass;
+        
+        public Super(Token keyword, Token method, Token enclosingClass) {
+            super(Kind.SUPER);
+            this.keyword = keyword;
+            this.method = method;
+            this.enclosingClass = enclosingClass;
+        }
+        
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSuperExpr(this);
+        }
+    }
 }
\ No newline at end of file
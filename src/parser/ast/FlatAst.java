@@ -0,0 +1,849 @@
+package parser.ast;
+
+import lexer.Lexer;
+import lexer.Symbol;
+import lexer.Token;
+import lexer.TokenType;
+import interpreter.Visitor;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The parsed program flattened into parallel primitive arrays. A node is an index:
+// kinds[n] says what it is, a/b/c[n] hold child node indexes, constant indexes or
+// operator ordinals (see the layout per kind below), and lines[n] its source line.
+// Child lists and operands that do not fit in a/b/c live in 'extra'; names (as
+// Symbols) and literals are stored once in the constant pool. No Token is kept.
+// The encoding loses nothing the interpreters use: write() stores it in a binary
+// form that read() loads back in bulk, and decode() rebuilds the object AST from it.
+public final class FlatAst {
+    // Node kinds
+    public static final byte BINARY = 0;      // a=left, b=operator ordinal, c=right
+    public static final byte LITERAL = 1;     // a=constant (-1 for null)
+    public static final byte VARIABLE = 2;    // a=name
+    public static final byte ASSIGN = 3;      // a=name, b=value
+    public static final byte UNARY = 4;       // a=operator ordinal, b=right
+    public static final byte CALL = 5;        // a=callee, b=argument list, c=site
+    public static final byte PRINTLN = 6;     // a=argument list, b=site
+    public static final byte GET = 7;         // a=object, b=name
+    public static final byte SET = 8;         // a=object, b=name, c=value
+    public static final byte NEW = 9;         // a=class name, b=argument list, c=site
+    public static final byte THIS = 10;
+    public static final byte SUPER = 11;      // a=method name (-1 for a constructor), b=enclosing class
+    public static final byte EXPRESSION = 12; // a=expression
+    public static final byte VAR_DECL = 13;   // a=type, b=name, c=initializer (-1 if none)
+    public static final byte BLOCK = 14;      // a=statement list
+    public static final byte IF = 15;         // a=condition, b=then, c=else (-1 if none)
+    public static final byte WHILE = 16;      // a=condition, b=body
+    public static final byte FOR = 17;        // a=initializer, b=condition, c=extra [increment, body]
+    public static final byte RETURN = 18;     // a=value (-1 if none)
+    public static final byte BREAK = 19;
+    public static final byte SWITCH = 20;     // a=subject, b=flattened body list followed by
+                                              // [count, (label constant or -1 for default, entry) per case],
+                                              // c=SwitchTable constant
+    public static final byte METHOD = 21;     // a=name, b=return type (-1 for a constructor),
+                                              // c=extra [body, count, (type, name) per parameter]
+    public static final byte CLASS = 22;      // a=name, b=superclass (-1 if none),
+                                              // c=extra [field list, constructor list, method list]
+    public static final byte TOP_LEVEL = 23;  // a=statement
+    public static final byte IMPORT = 24;     // a=dotted name constant
+    
+    private final byte[] kinds;
+    private final int[] a;
+    private final int[] b;
+    private final int[] c;
+    private final int[] lines;
+    private final int[] extra;
+    private final Object[] constants;
+    private final String[][] siteArgumentTypes;
+    private final String[] siteReceiverTypes;
+    private final int root;
+    
+    private FlatAst(Encoder encoder) {
+        this(Arrays.copyOf(encoder.kinds, encoder.nodeCount),
+             Arrays.copyOf(encoder.a, encoder.nodeCount),
+             Arrays.copyOf(encoder.b, encoder.nodeCount),
+             Arrays.copyOf(encoder.c, encoder.nodeCount),
+             Arrays.copyOf(encoder.lines, encoder.nodeCount),
+             Arrays.copyOf(encoder.extra, encoder.extraCount),
+             encoder.constants.toArray(),
+             encoder.siteArgumentTypes.toArray(new String[0][]),
+             encoder.siteReceiverTypes.toArray(new String[0]),
+             encoder.root);
+    }
+    
+    private FlatAst(byte[] kinds, int[] a, int[] b, int[] c, int[] lines, int[] extra,
+                    Object[] constants, String[][] siteArgumentTypes, String[] siteReceiverTypes, int root) {
+        this.kinds = kinds;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.lines = lines;
+        this.extra = extra;
+        this.constants = constants;
+        this.siteArgumentTypes = siteArgumentTypes;
+        this.siteReceiverTypes = siteReceiverTypes;
+        this.root = root;
+    }
+    
+    public static FlatAst encode(List<Declaration> program) {
+        Encoder encoder = new Encoder();
+        encoder.encodeProgram(program);
+        return new FlatAst(encoder);
+    }
+    
+    public byte kind(int node) { return kinds[node]; }
+    public int a(int node) { return a[node]; }
+    public int b(int node) { return b[node]; }
+    public int c(int node) { return c[node]; }
+    public int line(int node) { return lines[node]; }
+    public int extra(int index) { return extra[index]; }
+    public Object constant(int index) { return constants[index]; }
+    
+    public Symbol symbol(int constant) {
+        return (Symbol) constants[constant];
+    }
+    
+    public String name(int constant) {
+        return ((Symbol) constants[constant]).name;
+    }
+    
+    // A list at 'offset' in extra is its size followed by its items
+    public int listSize(int offset) { return extra[offset]; }
+    public int listItem(int offset, int i) { return extra[offset + 1 + i]; }
+    
+    // Offset just past the list at 'offset', where a following list starts
+    public int listEnd(int offset) { return offset + 1 + extra[offset]; }
+    
+    // The top-level declaration list
+    public int root() { return root; }
+    
+    // Call and 'new' sites are numbered so interpreters can keep per-site caches in arrays
+    public int siteCount() { return siteArgumentTypes.length; }
+    public String[] argumentTypes(int site) { return siteArgumentTypes[site]; }
+    public String receiverType(int site) { return siteReceiverTypes[site]; }
+    
+    // True if the program has import declarations, which ModuleLoader must link first
+    public boolean hasImports() {
+        for (int i = 0; i < listSize(root); i++) {
+            if (kinds[listItem(root, i)] == IMPORT) return true;
+        }
+        return false;
+    }
+    
+    public int nodeCount() { return kinds.length; }
+    public int constantCount() { return constants.length; }
+    
+    // Bytes held by the node and list arrays (constants are shared and counted separately)
+    public long byteSize() {
+        return (long) kinds.length * (1 + 4 * 4) + (long) extra.length * 4;
+    }
+    
+    // ========== Binary form ==========
+    
+    private static final int MAGIC = 0x4A534941; // "JSIA"
+    
+    // Constant pool tags
+    private static final byte SYMBOL_CONSTANT = 0;
+    private static final byte STRING_CONSTANT = 1;
+    private static final byte INT_CONSTANT = 2;
+    private static final byte DOUBLE_CONSTANT = 3;
+    private static final byte BOOLEAN_CONSTANT = 4;
+    private static final byte TABLE_CONSTANT = 5;
+    
+    // Layout: MAGIC and the counts, kinds, the int arrays a, b, c, lines and extra,
+    // then the tagged constants and the call sites. Switch tables are not written;
+    // read() rebuilds each one from the case list of its node.
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(kinds.length);
+        out.writeInt(extra.length);
+        out.writeInt(constants.length);
+        out.writeInt(siteArgumentTypes.length);
+        out.writeInt(root);
+        out.write(kinds);
+        writeInts(out, a);
+        writeInts(out, b);
+        writeInts(out, c);
+        writeInts(out, lines);
+        writeInts(out, extra);
+        
+        for (Object constant : constants) {
+            if (constant instanceof Symbol) {
+                out.writeByte(SYMBOL_CONSTANT);
+                writeString(out, ((Symbol) constant).name);
+            } else if (constant instanceof String) {
+                out.writeByte(STRING_CONSTANT);
+                writeString(out, (String) constant);
+            } else if (constant instanceof Integer) {
+                out.writeByte(INT_CONSTANT);
+                out.writeInt((Integer) constant);
+            } else if (constant instanceof Double) {
+                out.writeByte(DOUBLE_CONSTANT);
+                out.writeDouble((Double) constant);
+            } else if (constant instanceof Boolean) {
+                out.writeByte(BOOLEAN_CONSTANT);
+                out.writeBoolean((Boolean) constant);
+            } else if (constant instanceof SwitchTable) {
+                out.writeByte(TABLE_CONSTANT);
+            } else {
+                throw new IllegalStateException("Unexpected constant: " + constant);
+            }
+        }
+        
+        for (int site = 0; site < siteArgumentTypes.length; site++) {
+            String[] types = siteArgumentTypes[site];
+            out.writeInt(types.length);
+            for (String type : types) {
+                writeOptionalString(out, type);
+            }
+            writeOptionalString(out, siteReceiverTypes[site]);
+        }
+    }
+    
+    // The arrays go through one ByteBuffer each instead of an int at a time
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4);
+        bytes.asIntBuffer().put(values);
+        out.write(bytes.array());
+    }
+    
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static void writeOptionalString(DataOutputStream out, String text) throws IOException {
+        out.writeBoolean(text != null);
+        if (text != null) writeString(out, text);
+    }
+    
+    // Reads what write() wrote, from 'in''s position on, typically a mapped file.
+    // Names are interned again, so they are the same Symbols the lexer would make.
+    public static FlatAst read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a flat AST");
+            }
+            int nodeCount = in.getInt();
+            int extraCount = in.getInt();
+            int constantCount = in.getInt();
+            int siteCount = in.getInt();
+            int root = in.getInt();
+            byte[] kinds = new byte[nodeCount];
+            in.get(kinds);
+            int[] a = readInts(in, nodeCount);
+            int[] b = readInts(in, nodeCount);
+            int[] c = readInts(in, nodeCount);
+            int[] lines = readInts(in, nodeCount);
+            int[] extra = readInts(in, extraCount);
+            
+            Object[] constants = new Object[constantCount];
+            for (int i = 0; i < constantCount; i++) {
+                byte tag = in.get();
+                switch (tag) {
+                    case SYMBOL_CONSTANT: constants[i] = Symbol.intern(readString(in)); break;
+                    case STRING_CONSTANT: constants[i] = readString(in); break;
+                    case INT_CONSTANT: constants[i] = in.getInt(); break;
+                    case DOUBLE_CONSTANT: constants[i] = in.getDouble(); break;
+                    case BOOLEAN_CONSTANT: constants[i] = in.get() != 0; break;
+                    case TABLE_CONSTANT: break;
+                    default: throw new IOException("Bad constant tag " + tag);
+                }
+            }
+            
+            String[][] siteArgumentTypes = new String[siteCount][];
+            String[] siteReceiverTypes = new String[siteCount];
+            for (int i = 0; i < siteCount; i++) {
+                String[] types = new String[in.getInt()];
+                for (int k = 0; k < types.length; k++) {
+                    types[k] = in.get() != 0 ? readString(in) : null;
+                }
+                siteArgumentTypes[i] = types;
+                siteReceiverTypes[i] = in.get() != 0 ? readString(in) : null;
+            }
+            
+            FlatAst ast = new FlatAst(kinds, a, b, c, lines, extra, constants, siteArgumentTypes,
+                siteReceiverTypes, root);
+            for (int node = 0; node < nodeCount; node++) {
+                if (kinds[node] == SWITCH) {
+                    constants[c[node]] = ast.switchTable(node);
+                }
+            }
+            return ast;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Truncated or damaged flat AST", e);
+        }
+    }
+    
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * 4);
+        return values;
+    }
+    
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private SwitchTable switchTable(int node) {
+        int cases = listEnd(b[node]);
+        List<Object> labels = new ArrayList<>();
+        List<Integer> entries = new ArrayList<>();
+        int defaultEntry = -1;
+        for (int i = 0; i < extra[cases]; i++) {
+            int label = extra[cases + 1 + 2 * i];
+            int entry = extra[cases + 2 + 2 * i];
+            if (label < 0) {
+                defaultEntry = entry;
+            } else {
+                labels.add(constants[label]);
+                entries.add(entry);
+            }
+        }
+        return new SwitchTable(labels, entries, defaultEntry);
+    }
+    
+    // ========== Decoding ==========
+    
+    // The object AST for this encoding, equal to the one it was encoded from except
+    // that every token of a node carries the node's line, and tokens the encoding does
+    // not keep (keywords, parentheses, operators) are rebuilt from their type
+    public List<Declaration> decode() {
+        return new Decoder().program();
+    }
+    
+    private final class Decoder {
+        private final TokenType[] tokenTypes = TokenType.values();
+        
+        List<Declaration> program() {
+            List<Declaration> program = new ArrayList<>(listSize(root));
+            for (int i = 0; i < listSize(root); i++) {
+                int node = listItem(root, i);
+                if (kinds[node] == CLASS) {
+                    program.add(classDeclaration(node));
+                } else if (kinds[node] == IMPORT) {
+                    program.add(new Declaration.Import(token(TokenType.IMPORT, lines[node]), (String) constants[a[node]]));
+                } else {
+                    program.add(new Declaration.TopLevel(statement(a[node])));
+                }
+            }
+            return program;
+        }
+        
+        private Declaration.Class classDeclaration(int node) {
+            int line = lines[node];
+            int fieldList = c[node];
+            int constructorList = listEnd(fieldList);
+            int methodList = listEnd(constructorList);
+            
+            List<Declaration.Var> fields = new ArrayList<>(listSize(fieldList));
+            for (int i = 0; i < listSize(fieldList); i++) {
+                int field = listItem(fieldList, i);
+                fields.add(new Declaration.Var(name(a[field], lines[field]), name(b[field], lines[field]),
+                    optionalExpression(c[field])));
+            }
+            List<Declaration.Method> constructors = methods(constructorList);
+            List<Declaration.Method> methods = methods(methodList);
+            
+            Token superclass = b[node] < 0 ? null : name(b[node], line);
+            return new Declaration.Class(name(a[node], line), superclass, fields, constructors, methods);
+        }
+        
+        private List<Declaration.Method> methods(int list) {
+            List<Declaration.Method> methods = new ArrayList<>(listSize(list));
+            for (int i = 0; i < listSize(list); i++) {
+                int node = listItem(list, i);
+                int line = lines[node];
+                int signature = c[node];
+                
+                List<Declaration.Parameter> parameters = new ArrayList<>(extra[signature + 1]);
+                for (int k = 0; k < extra[signature + 1]; k++) {
+                    parameters.add(new Declaration.Parameter(name(extra[signature + 2 + 2 * k], line),
+                        name(extra[signature + 3 + 2 * k], line)));
+                }
+                Statement.Block body = (Statement.Block) statement(extra[signature]);
+                Token returnType = b[node] < 0 ? null : name(b[node], line);
+                methods.add(new Declaration.Method(returnType, name(a[node], line), parameters, body));
+            }
+            return methods;
+        }
+        
+        private Statement statement(int node) {
+            int line = lines[node];
+            switch (kinds[node]) {
+                case EXPRESSION:
+                    return new Statement.ExpressionStmt(expression(a[node]));
+                case VAR_DECL:
+                    return new Statement.VarDecl(name(a[node], line), name(b[node], line), optionalExpression(c[node]));
+                case BLOCK:
+                    return new Statement.Block(statements(a[node], 0, listSize(a[node])));
+                case IF:
+                    return new Statement.If(expression(a[node]), statement(b[node]),
+                        c[node] < 0 ? null : statement(c[node]));
+                case WHILE:
+                    return new Statement.While(expression(a[node]), statement(b[node]));
+                case FOR:
+                    return new Statement.For(a[node] < 0 ? null : statement(a[node]), optionalExpression(b[node]),
+                        optionalExpression(extra[c[node]]), statement(extra[c[node] + 1]));
+                case RETURN:
+                    return new Statement.Return(token(TokenType.RETURN, line), optionalExpression(a[node]));
+                case BREAK:
+                    return new Statement.Break(token(TokenType.BREAK, line));
+                case SWITCH:
+                    return switchStatement(node);
+                default:
+                    throw new IllegalStateException("Not a statement: kind " + kinds[node]);
+            }
+        }
+        
+        // Items [from, to) of the statement list at 'list'
+        private List<Statement> statements(int list, int from, int to) {
+            List<Statement> statements = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                statements.add(statement(listItem(list, i)));
+            }
+            return statements;
+        }
+        
+        private Statement.Switch switchStatement(int node) {
+            int line = lines[node];
+            int body = b[node];
+            int cases = listEnd(body);
+            int count = extra[cases];
+            
+            List<Statement.Case> caseList = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int label = extra[cases + 1 + 2 * i];
+                int from = extra[cases + 2 + 2 * i];
+                int to = i + 1 < count ? extra[cases + 4 + 2 * i] : listSize(body);
+                Token keyword = token(label < 0 ? TokenType.DEFAULT : TokenType.CASE, line);
+                caseList.add(new Statement.Case(keyword, label < 0 ? null : constants[label], statements(body, from, to)));
+            }
+            return new Statement.Switch(expression(a[node]), caseList);
+        }
+        
+        private Expression expression(int node) {
+            int line = lines[node];
+            switch (kinds[node]) {
+                case BINARY:
+                    return new Expression.Binary(expression(a[node]), token(tokenTypes[b[node]], line), expression(c[node]));
+                case LITERAL:
+                    return new Expression.Literal(a[node] < 0 ? null : constants[a[node]]);
+                case VARIABLE:
+                    return new Expression.Variable(name(a[node], line));
+                case ASSIGN:
+                    return new Expression.Assign(name(a[node], line), expression(b[node]));
+                case UNARY:
+                    return new Expression.Unary(token(tokenTypes[a[node]], line), expression(b[node]));
+                case CALL:
+                    return new Expression.Call(expression(a[node]), token(TokenType.RPAREN, line),
+                        expressions(b[node]), siteArgumentTypes[c[node]], siteReceiverTypes[c[node]]);
+                case PRINTLN: {
+                    Expression system = new Expression.Variable(identifier("System", line));
+                    Expression out = new Expression.Get(system, identifier("out", line));
+                    Expression println = new Expression.Get(out, identifier("println", line));
+                    return new Expression.Call(println, token(TokenType.RPAREN, line),
+                        expressions(a[node]), siteArgumentTypes[b[node]], siteReceiverTypes[b[node]]);
+                }
+                case GET:
+                    return new Expression.Get(expression(a[node]), name(b[node], line));
+                case SET:
+                    return new Expression.Set(expression(a[node]), name(b[node], line), expression(c[node]));
+                case NEW:
+                    return new Expression.New(name(a[node], line), expressions(b[node]), siteArgumentTypes[c[node]]);
+                case THIS:
+                    return new Expression.This(token(TokenType.THIS, line));
+                case SUPER:
+                    return new Expression.Super(token(TokenType.SUPER, line),
+                        a[node] < 0 ? null : name(a[node], line), name(b[node], line));
+                default:
+                    throw new IllegalStateException("Not an expression: kind " + kinds[node]);
+            }
+        }
+        
+        private Expression optionalExpression(int node) {
+            return node < 0 ? null : expression(node);
+        }
+        
+        private List<Expression> expressions(int list) {
+            List<Expression> expressions = new ArrayList<>(listSize(list));
+            for (int i = 0; i < listSize(list); i++) {
+                expressions.add(expression(listItem(list, i)));
+            }
+            return expressions;
+        }
+        
+        // A name constant as the lexer would have tokenized it: type names such as
+        // "int" are keywords, everything else an identifier
+        private Token name(int constant, int line) {
+            String name = ((Symbol) constants[constant]).name;
+            TokenType type = Lexer.keyword(name, 0, name.length());
+            return type == TokenType.IDENTIFIER ? identifier(name, line) : token(type, line);
+        }
+        
+        private Token identifier(String name, int line) {
+            return new Token(TokenType.IDENTIFIER, name, null, line);
+        }
+        
+        private Token token(TokenType type, int line) {
+            return new Token(type, type.spelling, null, line);
+        }
+    }
+    
+    private static final class Encoder implements Visitor<Integer> {
+        byte[] kinds = new byte[256];
+        int[] a = new int[256];
+        int[] b = new int[256];
+        int[] c = new int[256];
+        int[] lines = new int[256];
+        int nodeCount = 0;
+        int[] extra = new int[256];
+        int extraCount = 0;
+        final List<Object> constants = new ArrayList<>();
+        final Map<Object, Integer> constantIndexes = new HashMap<>();
+        final List<String[]> siteArgumentTypes = new ArrayList<>();
+        final List<String> siteReceiverTypes = new ArrayList<>();
+        int root;
+        // Line of the last token seen, for nodes that carry no token of their own
+        int line = 0;
+        // Sum of the line offsets of the declarations being encoded, added to token lines
+        int lineOffset = 0;
+        
+        void encodeProgram(List<Declaration> program) {
+            // Declarations that failed to parse are null and are left out
+            int[] items = new int[program.size()];
+            int count = 0;
+            for (Declaration declaration : program) {
+                if (declaration != null) {
+                    items[count++] = declaration.accept(this);
+                }
+            }
+            root = list(Arrays.copyOf(items, count));
+        }
+        
+        private int node(byte kind, int first, int second, int third) {
+            if (nodeCount == kinds.length) {
+                int capacity = nodeCount * 2;
+                kinds = Arrays.copyOf(kinds, capacity);
+                a = Arrays.copyOf(a, capacity);
+                b = Arrays.copyOf(b, capacity);
+                c = Arrays.copyOf(c, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+            }
+            kinds[nodeCount] = kind;
+            a[nodeCount] = first;
+            b[nodeCount] = second;
+            c[nodeCount] = third;
+            lines[nodeCount] = line + lineOffset;
+            return nodeCount++;
+        }
+        
+        private int extra(int... values) {
+            int offset = extraCount;
+            if (extraCount + values.length > extra.length) {
+                extra = Arrays.copyOf(extra, Math.max(extra.length * 2, extraCount + values.length));
+            }
+            System.arraycopy(values, 0, extra, extraCount, values.length);
+            extraCount += values.length;
+            return offset;
+        }
+        
+        private int list(int[] items) {
+            int offset = extra(items.length);
+            extra(items);
+            return offset;
+        }
+        
+        private int expressions(List<Expression> expressions) {
+            int[] items = new int[expressions.size()];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = expressions.get(i).accept(this);
+            }
+            return list(items);
+        }
+        
+        private int statements(List<Statement> statements) {
+            int[] items = new int[statements.size()];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = statements.get(i).accept(this);
+            }
+            return list(items);
+        }
+        
+        private int optional(ASTNode node) {
+            return node == null ? -1 : node.accept(this);
+        }
+        
+        private int constant(Object value) {
+            Integer index = constantIndexes.get(value);
+            if (index == null) {
+                index = constants.size();
+                constants.add(value);
+                constantIndexes.put(value, index);
+            }
+            return index;
+        }
+        
+        // Names are pooled as symbols; the token is only looked at for its line
+        private int name(Token token) {
+            line = token.line;
+            return token.symbol != null ? constant(token.symbol) : symbol(token.lexeme);
+        }
+        
+        // Type names such as "int" are keywords, so they have no symbol of their own yet
+        private int symbol(String name) {
+            return constant(Symbol.intern(name));
+        }
+        
+        private int site(String[] argumentTypes, String receiverType) {
+            siteArgumentTypes.add(argumentTypes);
+            siteReceiverTypes.add(receiverType);
+            return siteArgumentTypes.size() - 1;
+        }
+        
+        // ========== Expressions ==========
+        
+        @Override
+        public Integer visitBinaryExpr(Expression.Binary expr) {
+            int left = expr.left.accept(this);
+            line = expr.operator.line;
+            int right = expr.right.accept(this);
+            return node(BINARY, left, expr.operator.type.ordinal(), right);
+        }
+        
+        @Override
+        public Integer visitLiteralExpr(Expression.Literal expr) {
+            return node(LITERAL, expr.value == null ? -1 : constant(expr.value), 0, 0);
+        }
+        
+        @Override
+        public Integer visitVariableExpr(Expression.Variable expr) {
+            return node(VARIABLE, name(expr.name), 0, 0);
+        }
+        
+        @Override
+        public Integer visitAssignExpr(Expression.Assign expr) {
+            int name = name(expr.name);
+            return node(ASSIGN, name, expr.value.accept(this), 0);
+        }
+        
+        @Override
+        public Integer visitUnaryExpr(Expression.Unary expr) {
+            line = expr.operator.line;
+            return node(UNARY, expr.operator.type.ordinal(), expr.right.accept(this), 0);
+        }
+        
+        @Override
+        public Integer visitCallExpr(Expression.Call expr) {
+            line = expr.paren.line;
+            if (expr.isSystemOutPrintln()) {
+                int arguments = expressions(expr.arguments);
+                return node(PRINTLN, arguments, site(expr.argumentTypes, expr.receiverType), 0);
+            }
+            int callee = expr.callee.accept(this);
+            int arguments = expressions(expr.arguments);
+            return node(CALL, callee, arguments, site(expr.argumentTypes, expr.receiverType));
+        }
+        
+        @Override
+        public Integer visitGetExpr(Expression.Get expr) {
+            int object = expr.object.accept(this);
+            return node(GET, object, name(expr.name), 0);
+        }
+        
+        @Override
+        public Integer visitSetExpr(Expression.Set expr) {
+            int object = expr.object.accept(this);
+            int name = name(expr.name);
+            return node(SET, object, name, expr.value.accept(this));
+        }
+        
+        @Override
+        public Integer visitNewExpr(Expression.New expr) {
+            int className = name(expr.className);
+            int arguments = expressions(expr.arguments);
+            return node(NEW, className, arguments, site(expr.argumentTypes, null));
+        }
+        
+        @Override
+        public Integer visitThisExpr(Expression.This expr) {
+            line = expr.keyword.line;
+            return node(THIS, 0, 0, 0);
+        }
+        
+        @Override
+        public Integer visitSuperExpr(Expression.Super expr) {
+            line = expr.keyword.line;
+            int method = expr.method == null ? -1 : constant(expr.method.symbol);
+            return node(SUPER, method, constant(expr.enclosingClass.symbol), 0);
+        }
+        
+        // ========== Statements ==========
+        
+        @Override
+        public Integer visitExpressionStmt(Statement.ExpressionStmt stmt) {
+            return node(EXPRESSION, stmt.expression.accept(this), 0, 0);
+        }
+        
+        @Override
+        public Integer visitVarDeclStmt(Statement.VarDecl stmt) {
+            return varDecl(stmt.type, stmt.name, stmt.initializer);
+        }
+        
+        private int varDecl(Token type, Token name, Expression initializer) {
+            int typeName = name(type);
+            int varName = name(name);
+            return node(VAR_DECL, typeName, varName, optional(initializer));
+        }
+        
+        @Override
+        public Integer visitBlockStmt(Statement.Block stmt) {
+            return node(BLOCK, statements(stmt.statements), 0, 0);
+        }
+        
+        @Override
+        public Integer visitIfStmt(Statement.If stmt) {
+            int condition = stmt.condition.accept(this);
+            int thenBranch = stmt.thenBranch.accept(this);
+            return node(IF, condition, thenBranch, optional(stmt.elseBranch));
+        }
+        
+        @Override
+        public Integer visitWhileStmt(Statement.While stmt) {
+            int condition = stmt.condition.accept(this);
+            return node(WHILE, condition, stmt.body.accept(this), 0);
+        }
+        
+        @Override
+        public Integer visitForStmt(Statement.For stmt) {
+            int initializer = optional(stmt.initializer);
+            int condition = optional(stmt.condition);
+            int increment = optional(stmt.increment);
+            int body = stmt.body.accept(this);
+            return node(FOR, initializer, condition, extra(increment, body));
+        }
+        
+        @Override
+        public Integer visitReturnStmt(Statement.Return stmt) {
+            line = stmt.keyword.line;
+            return node(RETURN, optional(stmt.value), 0, 0);
+        }
+        
+        @Override
+        public Integer visitBreakStmt(Statement.Break stmt) {
+            line = stmt.keyword.line;
+            return node(BREAK, 0, 0, 0);
+        }
+        
+        @Override
+        public Integer visitSwitchStmt(Statement.Switch stmt) {
+            int subject = stmt.subject.accept(this);
+            int body = statements(stmt.body);
+            
+            // The cases follow the body list, so decode() can split it up again
+            int[] cases = new int[2 * stmt.cases.size()];
+            int entry = 0;
+            for (int i = 0; i < stmt.cases.size(); i++) {
+                Statement.Case c = stmt.cases.get(i);
+                cases[2 * i] = c.label == null ? -1 : constant(c.label);
+                cases[2 * i + 1] = entry;
+                entry += c.body.size();
+            }
+            extra(stmt.cases.size());
+            extra(cases);
+            
+            constants.add(stmt.table);
+            return node(SWITCH, subject, body, constants.size() - 1);
+        }
+        
+        // ========== Declarations ==========
+        
+        @Override
+        public Integer visitVarDecl(Declaration.Var decl) {
+            lineOffset += decl.lineOffset;
+            int node = varDecl(decl.type, decl.name, decl.initializer);
+            lineOffset -= decl.lineOffset;
+            return node;
+        }
+        
+        @Override
+        public Integer visitMethodDecl(Declaration.Method decl) {
+            lineOffset += decl.lineOffset;
+            int name = name(decl.name);
+            int returnType = decl.returnType == null ? -1 : symbol(decl.returnType.lexeme);
+            int nameLine = line;
+            int body = decl.body.accept(this);
+            
+            int[] signature = new int[2 + 2 * decl.parameters.size()];
+            signature[0] = body;
+            signature[1] = decl.parameters.size();
+            for (int i = 0; i < decl.parameters.size(); i++) {
+                signature[2 + 2 * i] = symbol(decl.parameters.get(i).type.lexeme);
+                signature[3 + 2 * i] = constant(decl.parameters.get(i).name.symbol);
+            }
+            line = nameLine;
+            int node = node(METHOD, name, returnType, extra(signature));
+            lineOffset -= decl.lineOffset;
+            return node;
+        }
+        
+        @Override
+        public Integer visitClassDecl(Declaration.Class decl) {
+            lineOffset += decl.lineOffset;
+            int name = name(decl.name);
+            int superclass = decl.superclass == null ? -1 : constant(decl.superclass.symbol);
+            int nameLine = line;
+            
+            int[] fields = new int[decl.fields.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = decl.fields.get(i).accept(this);
+            }
+            int[] constructors = new int[decl.constructors.size()];
+            for (int i = 0; i < constructors.length; i++) {
+                constructors[i] = decl.constructors.get(i).accept(this);
+            }
+            int[] methods = new int[decl.methods.size()];
+            for (int i = 0; i < methods.length; i++) {
+                methods[i] = decl.methods.get(i).accept(this);
+            }
+            
+            // The three lists are stored back to back
+            int members = list(fields);
+            list(constructors);
+            list(methods);
+            line = nameLine;
+            int node = node(CLASS, name, superclass, members);
+            lineOffset -= decl.lineOffset;
+            return node;
+        }
+        
+        @Override
+        public Integer visitTopLevelDecl(Declaration.TopLevel decl) {
+            lineOffset += decl.lineOffset;
+            int node = node(TOP_LEVEL, decl.statement.accept(this), 0, 0);
+            lineOffset -= decl.lineOffset;
+            return node;
+        }
+        
+        @Override
+        public Integer visitImportDecl(Declaration.Import decl) {
+            lineOffset += decl.lineOffset;
+            line = decl.keyword.line;
+            int node = node(IMPORT, constant(decl.name), 0, 0);
+            lineOffset -= decl.lineOffset;
+            return node;
+        }
+    }
+}
@@ -2,15 +2,28 @@ package parser.ast;
 
 import lexer.Token;
 import interpreter.Visitor;
+import java.util.ArrayList;
 import java.util.List;
 
-public abstract class Statement implements ASTNode {
+public abstract sealed class Statement implements ASTNode {
+    
+    // Node kinds, for dispatching with a switch instead of a visitor
+    public enum Kind {
+        EXPRESSION, VAR_DECL, BLOCK, IF, WHILE, FOR, RETURN, BREAK, SWITCH
+    }
+    
+    public final Kind kind;
+    
+    protected Statement(Kind kind) {
+        this.kind = kind;
+    }
     
     // Expression statement: println(x);
-    public static class ExpressionStmt extends Statement {
+    public static final class ExpressionStmt extends Statement {
         public final Expression expression;
         
         public ExpressionStmt(Expression expression) {
+            super(Kind.EXPRESSION);
             this.expression = expression;
         }
         
@@ -20,11 +33,31 @@ public abstract class Statement implements ASTNode {
         }
     }
     
+    // Local variable declaration: int x = 5;
+    public static final class VarDecl extends Statement {
+        public final Token type;
+        public final Token name;
+        public final Expression initializer;
+        
+        public VarDecl(Token type, Token name, Expression initializer) {
+            super(Kind.VAR_DECL);
+            this.type = type;
+            this.name = name;
+            this.initializer = initializer;
+        }
+        
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitVarDeclStmt(this);
+        }
+    }
+    
     // Block: { stmt1; stmt2; }
-    public static class Block extends Statement {
+    public static final class Block extends Statement {
         public final List<Statement> statements;
         
         public Block(List<Statement> statements) {
+            super(Kind.BLOCK);
             this.statements = statements;
         }
         
@@ -35,12 +68,13 @@ public abstract class Statement implements ASTNode {
     }
     
     // If: if (condition) thenBranch else elseBranch
-    public static class If extends Statement {
+    public static final class If extends Statement {
         public final Expression condition;
         public final Statement thenBranch;
         public final Statement elseBranch;
         
         public If(Expression condition, Statement thenBranch, Statement elseBranch) {
+            super(Kind.IF);
             this.condition = condition;
             this.thenBranch = thenBranch;
             this.elseBranch = elseBranch;
@@ -53,11 +87,12 @@ public abstract class Statement implements ASTNode {
     }
     
     // While: while (condition) body
-    public static class While extends Statement {
+    public static final class While extends Statement {
         public final Expression condition;
         public final Statement body;
         
         public While(Expression condition, Statement body) {
+            super(Kind.WHILE);
             this.condition = condition;
             this.body = body;
         }
@@ -69,13 +104,14 @@ public abstract class Statement implements ASTNode {
     }
     
     // For: for (init; condition; increment) body
-    public static class For extends Statement {
+    public static final class For extends Statement {
         public final Statement initializer;
         public final Expression condition;
         public final Expression increment;
         public final Statement body;
         
         public For(Statement initializer, Expression condition, Expression increment, Statement body) {
+            super(Kind.FOR);
             this.initializer = initializer;
             this.condition = condition;
             this.increment = increment;
@@ -89,11 +125,12 @@ public abstract class Statement implements ASTNode {
     }
     
     // Return: return value;
-    public static class Return extends Statement {
+    public static final class Return extends Statement {
         public final Token keyword;
         public final Expression value;
         
         public Return(Token keyword, Expression value) {
+            super(Kind.RETURN);
             this.keyword = keyword;
             this.value = value;
         }
@@ -103,4 +140,67 @@ public abstract class Statement implements ASTNode {
             return visitor.visitReturnStmt(this);
         }
     }
+    
+    // Break: break;
+    public static final class Break extends Statement {
+        public final Token keyword;
+        
+        public Break(Token keyword) {
+            super(Kind.BREAK);
+            this.keyword = keyword;
+        }
+        
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitBreakStmt(this);
+        }
+    }
+    
+    // Switch: switch (subject) { case 1: ... default: ... }
+    public static final class Switch extends Statement {
+        public final Expression subject;
+        public final List<Case> cases;
+        // All case bodies flattened in source order; fall-through just keeps going
+        public final List<Statement> body = new ArrayList<>();
+        // Maps a label to its entry index in body
+        public final SwitchTable table;
+        
+        public Switch(Expression subject, List<Case> cases) {
+            super(Kind.SWITCH);
+            this.subject = subject;
+            this.cases = cases;
+            
+            List<Object> labels = new ArrayList<>();
+            List<Integer> entries = new ArrayList<>();
+            int defaultEntry = -1;
+            for (Case c : cases) {
+                if (c.label == null) {
+                    defaultEntry = body.size();
+                } else {
+                    labels.add(c.label);
+                    entries.add(body.size());
+                }
+                body.addAll(c.body);
+            }
+            this.table = new SwitchTable(labels, entries, defaultEntry);
+        }
+        
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSwitchStmt(this);
+        }
+    }
+    
+    // Case: case 1: stmts (label is null for default)
+    public static class Case {
+        public final Token keyword;
+        public final Object label;
+        public final List<Statement> body;
+        
+        public Case(Token keyword, Object label, List<Statement> body) {
+            this.keyword = keyword;
+            this.label = label;
+            this.body = body;
+        }
+    }
 }
\ No newline at end of file
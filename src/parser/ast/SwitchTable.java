@@ -0,0 +1,71 @@
+package parser.ast;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps switch case labels to entry indexes, built once from the constant labels.
+// Dense int labels get an array-indexed jump table; sparse int and String labels
+// a precomputed hash map.
+public final class SwitchTable {
+    // Largest span of int labels that still gets an array-indexed table
+    private static final int MAX_DENSE_SPAN = 1 << 12;
+    
+    private final int defaultEntry;
+    private int[] denseTable;
+    private int denseMin;
+    private Map<Object, Integer> sparseTable;
+    
+    // labels.get(i) starts at entries.get(i); defaultEntry is -1 without a default
+    public SwitchTable(List<Object> labels, List<Integer> entries, int defaultEntry) {
+        this.defaultEntry = defaultEntry;
+        
+        int minLabel = Integer.MAX_VALUE;
+        int maxLabel = Integer.MIN_VALUE;
+        boolean allInts = true;
+        Map<Object, Integer> table = new HashMap<>();
+        
+        for (int i = 0; i < labels.size(); i++) {
+            Object label = labels.get(i);
+            table.put(label, entries.get(i));
+            if (label instanceof Integer) {
+                minLabel = Math.min(minLabel, (Integer) label);
+                maxLabel = Math.max(maxLabel, (Integer) label);
+            } else {
+                allInts = false;
+            }
+        }
+        
+        // Dense int labels (at least a quarter of the range used) get a jump table
+        long span = table.isEmpty() ? 0 : (long) maxLabel - minLabel + 1;
+        if (allInts && !table.isEmpty() && span <= MAX_DENSE_SPAN && span <= 4L * table.size()) {
+            denseMin = minLabel;
+            denseTable = new int[(int) span];
+            Arrays.fill(denseTable, defaultEntry);
+            for (Map.Entry<Object, Integer> entry : table.entrySet()) {
+                denseTable[(Integer) entry.getKey() - minLabel] = entry.getValue();
+            }
+        } else {
+            sparseTable = table;
+        }
+    }
+    
+    // Entry index for an int subject, or -1 when nothing matches
+    public int entryFor(int key) {
+        if (denseTable != null) {
+            int index = key - denseMin;
+            if (index >= 0 && index < denseTable.length) {
+                return denseTable[index];
+            }
+            return defaultEntry;
+        }
+        return sparseTable.getOrDefault(key, defaultEntry);
+    }
+    
+    // Entry index for a String subject, or -1 when nothing matches
+    public int entryFor(String key) {
+        if (sparseTable == null) return defaultEntry;
+        return sparseTable.getOrDefault(key, defaultEntry);
+    }
+}
@@ -0,0 +1,86 @@
+package daemon;
+
+import embed.CompiledProgramCache;
+import lexer.Lexer;
+import parser.Parser;
+import parser.ast.Declaration;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ProgramCacheTest {
+    private static final String SOURCE = "class Main {\n    int one() { return 1; }\n    int two() { return 2; }\n" +
+        "    int three() { return 3; }\n    void main() {\n        System.out.println(1);\n    }\n}\n";
+    
+    public static void main(String[] args) throws IOException {
+        Path root = Files.createTempDirectory("jsi-programs");
+        try {
+            evictsLeastRecentlyUsed(root);
+            reparsesOnlyTheEdit(root);
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    
+    // Room for two programs: storing a third drops the one used least recently
+    private static void evictsLeastRecentlyUsed(Path root) throws IOException {
+        Path a = write(root.resolve("a.java"), SOURCE);
+        Path b = write(root.resolve("b.java"), SOURCE);
+        Path c = write(root.resolve("c.java"), SOURCE);
+        ProgramCache programs = new ProgramCache(2 * CompiledProgramCache.estimateBytes(SOURCE.length()));
+        store(programs, a);
+        store(programs, b);
+        check(programs.declarations(a) != null, "a is kept");
+        store(programs, c);
+        check(programs.size() == 2 && programs.evictions() == 1, "one program evicted");
+        check(programs.declarations(b) == null, "b, used least recently, is evicted");
+        check(programs.declarations(a) != null && programs.declarations(c) != null, "a and c are kept");
+        check(programs.bytes() <= programs.getMaxBytes(), "within budget");
+        
+        ProgramCache tiny = new ProgramCache(CompiledProgramCache.estimateBytes(SOURCE.length()) - 1);
+        store(tiny, a);
+        check(tiny.size() == 0, "a program larger than the budget is not kept");
+    }
+    
+    // A changed source is parsed again around the edit only, and kept while error-free
+    private static void reparsesOnlyTheEdit(Path root) throws IOException {
+        Path path = write(root.resolve("edited.java"), SOURCE);
+        ProgramCache programs = new ProgramCache();
+        ProgramCache.Parsed first = programs.parse(path, attributes(path), SOURCE);
+        check(first.relexed() == SOURCE.length() && first.errors().isEmpty(), "first parse lexes everything");
+        check(programs.declarations(path) == first.declarations(), "first parse is kept");
+        
+        String edited = SOURCE.replace("println(1)", "println(12)");
+        write(path, edited);
+        ProgramCache.Parsed second = programs.parse(path, attributes(path), edited);
+        check(second.relexed() < edited.length() / 2, "edit lexed " + second.relexed() + " characters again");
+        check(programs.declarations(path) == second.declarations(), "edited parse is kept");
+        
+        String broken = edited.replace("println(12);", "println(12)");
+        write(path, broken);
+        ProgramCache.Parsed third = programs.parse(path, attributes(path), broken);
+        check(!third.errors().isEmpty() && programs.declarations(path) == null, "a source with errors is not kept");
+    }
+    
+    private static void store(ProgramCache programs, Path path) throws IOException {
+        List<Declaration> declarations = new Parser(new Lexer(Files.readString(path))).parse();
+        programs.store(path, attributes(path), declarations);
+    }
+    
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+    
+    private static Path write(Path path, String text) throws IOException {
+        return Files.writeString(path, text);
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
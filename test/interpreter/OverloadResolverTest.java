@@ -0,0 +1,82 @@
+package interpreter;
+
+import java.util.List;
+import java.util.Map;
+
+public class OverloadResolverTest {
+    // B extends A
+    private static final OverloadResolver RESOLVER = new OverloadResolver(Map.of("B", "A")::get);
+    
+    public static void main(String[] args) {
+        picksMostSpecific();
+        widensIntToDouble();
+        prefersSubclassParameter();
+        reportsAmbiguityRegardlessOfOrder();
+        reportsNoApplicableOverload();
+        leavesUnknownTypesToRunTime();
+    }
+    
+    private static void picksMostSpecific() {
+        List<String[]> candidates = List.of(types("double", "double"), types("int", "int"), types("int", "double"));
+        check(resolve(candidates, "int", "int") == 1, "(int,int) picks g(int,int)");
+        check(resolve(candidates, "int", "double") == 2, "(int,double) picks g(int,double)");
+        check(resolve(candidates, "double", "int") == 0, "(double,int) picks g(double,double)");
+    }
+    
+    private static void widensIntToDouble() {
+        check(resolve(List.of(types("double"), types("String")), "int") == 0, "int widens to double");
+    }
+    
+    private static void prefersSubclassParameter() {
+        List<String[]> candidates = List.of(types("A"), types("B"));
+        check(resolve(candidates, "B") == 1, "B picks f(B)");
+        check(resolve(candidates, "A") == 0, "A picks f(A)");
+        check(resolve(List.of(types("A"), types("String")), "null") < 0, "null is ambiguous between A and String");
+    }
+    
+    // g(double,double,int), g(int,int,double), g(int,double,int) with (1,2,3): the
+    // third is more specific than the first but not the second, in every order
+    private static void reportsAmbiguityRegardlessOfOrder() {
+        String[][] candidates = {types("double", "double", "int"), types("int", "int", "double"),
+                                 types("int", "double", "int")};
+        int[][] orders = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        for (int[] order : orders) {
+            List<String[]> ordered = List.of(candidates[order[0]], candidates[order[1]], candidates[order[2]]);
+            check(resolve(ordered, "int", "int", "int") < 0, "g(1,2,3) is ambiguous in order " + List.of(order[0], order[1], order[2]));
+        }
+    }
+    
+    private static void reportsNoApplicableOverload() {
+        try {
+            RESOLVER.resolveStatically("f", List.of(types("int"), types("boolean")), types("String"));
+            throw new AssertionError("f(String) should have no applicable overload");
+        } catch (RuntimeException e) {
+            check(e.getMessage().startsWith("No overload of f"), "unexpected message: " + e.getMessage());
+        }
+    }
+    
+    private static void leavesUnknownTypesToRunTime() {
+        List<String[]> candidates = List.of(types("int"), types("double"));
+        check(RESOLVER.resolveStatically("f", candidates, new String[] {null}) == -1, "unknown type defers");
+        Value[] arguments = {new Value(Value.Type.DOUBLE, 1.5)};
+        check(RESOLVER.resolveDynamically("f", candidates, arguments) == 1, "runtime double picks f(double)");
+    }
+    
+    // The chosen index, or -1 for an ambiguous call
+    private static int resolve(List<String[]> candidates, String... argumentTypes) {
+        try {
+            return RESOLVER.resolveStatically("g", candidates, argumentTypes);
+        } catch (RuntimeException e) {
+            if (!e.getMessage().startsWith("Ambiguous call")) throw e;
+            return -1;
+        }
+    }
+    
+    private static String[] types(String... types) {
+        return types;
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,80 @@
+package lexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Random;
+
+// Differential test: random sources lexed with Scan.SCALAR and Scan.SWAR must give the
+// same tokens (type, lexeme, literal, line), token count and error output. Sources mix
+// the runs SWAR skips in bulk (spaces, comments, strings) with everything around them,
+// including unterminated comments and strings, CRLF, non-ASCII text and stray bytes.
+public class Utf8LexerSwarTest {
+    private static final long[] SEEDS = {37, 3700, 370000};
+    private static final int SOURCES_PER_SEED = 20000;
+    private static final String[] FRAGMENTS = {
+        " ", "        ", "\t", "\n", "\r\n", "                         \n",
+        "// line comment\n", "//", "/* block */", "/* multi\nline\n\ncomment */", "/*", "/* ** / */", "*/",
+        "\"string\"", "\"\"", "\"multi\nline\"", "\"unterminated", "\"ünïcödé ✓\"", "\"        \"",
+        "x", "count", "_id9", "class", "int", "return", "while", "true", "null",
+        "0", "42", "3.14", "1.", "(", ")", "{", "}", ";", ",", ".", "+", "-", "*", "/",
+        "=", "==", "!=", "<=", ">=", "&&", "||", "&", "|", "!", "#", "@", "é", "\0"
+    };
+    
+    public static void main(String[] args) {
+        int sources = 0;
+        for (long seed : SEEDS) {
+            Random random = new Random(seed);
+            for (int i = 0; i < SOURCES_PER_SEED; i++) {
+                byte[] source = randomSource(random);
+                String where = "seed " + seed + " source " + i;
+                compare(source, where);
+                sources++;
+            }
+        }
+        check(sources == SEEDS.length * SOURCES_PER_SEED, "source count");
+    }
+    
+    private static byte[] randomSource(Random random) {
+        StringBuilder text = new StringBuilder();
+        // Mostly short sources, so that runs often end within the last eight bytes
+        int fragments = random.nextInt(4) == 0 ? random.nextInt(200) : random.nextInt(12);
+        for (int i = 0; i < fragments; i++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        // Now and then a raw byte that is not valid UTF-8 on its own
+        if (bytes.length > 0 && random.nextInt(10) == 0) {
+            bytes[random.nextInt(bytes.length)] = (byte) (0x80 + random.nextInt(0x80));
+        }
+        return bytes;
+    }
+    
+    private static void compare(byte[] source, String where) {
+        ByteArrayOutputStream scalarErrors = new ByteArrayOutputStream();
+        ByteArrayOutputStream swarErrors = new ByteArrayOutputStream();
+        Utf8Lexer scalar = new Utf8Lexer(ByteBuffer.wrap(source), Utf8Lexer.Scan.SCALAR, 1, new PrintStream(scalarErrors));
+        Utf8Lexer swar = new Utf8Lexer(ByteBuffer.wrap(source), Utf8Lexer.Scan.SWAR, 1, new PrintStream(swarErrors));
+        int index = 0;
+        while (true) {
+            Token expected = scalar.nextToken();
+            Token actual = swar.nextToken();
+            String at = where + " token " + index + " of " + new String(source, StandardCharsets.UTF_8);
+            check(expected.type == actual.type, "type differs at " + at);
+            check(expected.lexeme.equals(actual.lexeme), "lexeme differs at " + at);
+            check(Objects.equals(expected.literal, actual.literal), "literal differs at " + at);
+            check(expected.line == actual.line, "line differs at " + at);
+            if (expected.type == TokenType.EOF) break;
+            index++;
+        }
+        check(scalar.getTokenCount() == swar.getTokenCount(), "token count differs at " + where);
+        check(scalar.hadErrors() == swar.hadErrors(), "hadErrors differs at " + where);
+        check(scalarErrors.toString().equals(swarErrors.toString()), "errors differ at " + where);
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
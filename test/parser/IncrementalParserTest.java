@@ -0,0 +1,116 @@
+package parser;
+
+import lexer.Lexer;
+import parser.ast.Declaration;
+import parser.ast.FlatAst;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Differential test: random edits over the examples, each checked against a fresh
+// IncrementalParser over the edited text and, when it has no errors, a plain Parser.
+// Programs are compared by their flat encoding, which includes every node's line.
+public class IncrementalParserTest {
+    private static final int EDITS_PER_FILE = 960;
+    private static final String[] SNIPPETS = {"{", "}", "(", ")", ";", "\n", " ", "x", "\"", "//", "/*", "*/", "class"};
+    
+    public static void main(String[] args) throws IOException {
+        List<Path> sources;
+        try (Stream<Path> files = Files.walk(Path.of("examples"))) {
+            sources = files.filter(path -> path.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+        check(!sources.isEmpty(), "no examples found");
+        Random random = new Random(40);
+        int edits = 0;
+        int partial = 0;
+        for (Path path : sources) {
+            String original = Files.readString(path);
+            IncrementalParser parser = new IncrementalParser(original);
+            String text = original;
+            for (int i = 0; i < EDITS_PER_FILE; i++) {
+                List<Declaration> before = parser.program();
+                byte[] beforeBytes = encode(before);
+                
+                // Every so often the whole text goes back to the original, so random
+                // damage does not pile up
+                int offset;
+                int removed;
+                String inserted;
+                if (i % 40 == 39) {
+                    offset = 0;
+                    removed = text.length();
+                    inserted = original;
+                } else {
+                    int[] edit = randomEdit(random, text);
+                    offset = edit[0];
+                    removed = edit[1];
+                    inserted = randomText(random, edit[2]);
+                }
+                String edited = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                String where = path + " edit " + i + " (" + offset + "+" + removed + " '" + inserted + "')";
+                
+                List<Declaration> program = parser.edit(offset, removed, inserted);
+                text = edited;
+                edits++;
+                if (parser.getLastRelexedLength() < text.length()) partial++;
+                
+                check(parser.source().equals(text), "source differs after " + where);
+                IncrementalParser fresh = new IncrementalParser(text);
+                check(parser.errors().equals(fresh.errors()), "errors differ after " + where);
+                check(Arrays.equals(encode(program), encode(fresh.program())), "program differs after " + where);
+                if (fresh.errors().isEmpty()) {
+                    check(Arrays.equals(encode(program), encode(parse(text))), "program differs from Parser after " + where);
+                }
+                check(Arrays.equals(beforeBytes, encode(before)), "earlier program changed by " + where);
+            }
+        }
+        check(edits == sources.size() * EDITS_PER_FILE, "edit count");
+        check(partial > edits / 2, "only " + partial + " of " + edits + " edits were incremental");
+    }
+    
+    // {offset, removed, kind of inserted text}
+    private static int[] randomEdit(Random random, String text) {
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            // A statement typed after a ';', usually inside a method body
+            int semicolon = text.indexOf(';', random.nextInt(text.length() + 1));
+            int offset = semicolon < 0 ? text.length() : semicolon + 1;
+            return new int[] {offset, 0, 0};
+        }
+        int offset = random.nextInt(text.length() + 1);
+        int removed = kind < 6 ? random.nextInt(Math.min(8, text.length() - offset) + 1) : 0;
+        return new int[] {offset, removed, kind < 6 ? 1 : kind < 9 ? 2 : 3};
+    }
+    
+    private static String randomText(Random random, int kind) {
+        switch (kind) {
+            case 0: return "\n        x = x + " + random.nextInt(100) + ";";
+            case 1: return random.nextBoolean() ? "" : "\n";
+            case 2: return SNIPPETS[random.nextInt(SNIPPETS.length)];
+            default: return "\nclass Z" + random.nextInt(10) + " {\n    int f() { return 1; }\n}\n";
+        }
+    }
+    
+    private static List<Declaration> parse(String text) {
+        PrintStream errors = new PrintStream(new ByteArrayOutputStream());
+        return new Parser(new Lexer(text, 1, errors), errors).parse();
+    }
+    
+    private static byte[] encode(List<Declaration> program) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FlatAst.encode(program).write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,61 @@
+package parser;
+
+import lexer.Lexer;
+import lexer.Utf8Lexer;
+import parser.ast.Declaration;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ModuleLoaderTest {
+    public static void main(String[] args) throws IOException {
+        Path root = Files.createTempDirectory("jsi-modules");
+        try {
+            reportsLibraryErrorsToEachCaller(root);
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+    
+    // A library with syntax errors is reported on every load, to the stream of the
+    // load that compiled it, and kept only once it parses cleanly
+    private static void reportsLibraryErrorsToEachCaller(Path root) throws IOException {
+        Path library = root.resolve("lib/Broken.java");
+        Files.createDirectories(library.getParent());
+        Files.writeString(library, "class Broken {\n    int f() { return 1 }\n}\n");
+        ModuleLoader loader = new ModuleLoader(List.of(root), null, Utf8Lexer.Scan.SCALAR);
+        List<Declaration> program = parse("import lib.Broken;\nclass Main { void main() {} }\n");
+        
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        loader.imports(program, new PrintStream(first, true));
+        check(first.toString().startsWith(library.toRealPath() + ": [Line 2]"), "first load reports: " + first);
+        check(loader.getModuleCount() == 0, "a module with errors is not kept");
+        
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        loader.imports(program, new PrintStream(second, true));
+        check(second.toString().equals(first.toString()), "second load reports again: " + second);
+        check(loader.getCompileCount() == 2, "compiled on each load");
+        
+        Files.writeString(library, "class Broken {\n    int f() { return 1; }\n}\n");
+        ByteArrayOutputStream fixed = new ByteArrayOutputStream();
+        List<ModuleLoader.Module> modules = loader.imports(program, new PrintStream(fixed, true));
+        loader.imports(program, new PrintStream(fixed, true));
+        check(fixed.size() == 0, "fixed library reports nothing: " + fixed);
+        check(modules.size() == 1 && modules.get(0).declarations.size() == 1, "fixed library is linked");
+        check(loader.getModuleCount() == 1 && loader.getCompileCount() == 3, "fixed library is kept");
+    }
+    
+    private static List<Declaration> parse(String source) {
+        return new Parser(new Lexer(source)).parse();
+    }
+    
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,32 @@
+#!/bin/sh
+# Compiles the interpreter and the tests, then runs every *Test class under test/
+# and every script under test/scripts against its .expected output (the text
+# between the interpreter's Output markers). Extra arguments are passed to Main
+# for the script tests, e.g. --flat or --dispatch=switch.
+set -e
+cd "$(dirname "$0")/.."
+classes=$(mktemp -d)
+trap 'rm -rf "$classes"' EXIT
+javac -encoding UTF-8 -d "$classes" $(find src test -name '*.java' -not -path 'test/scripts/*')
+
+failed=0
+for test in $(cd test && find . -name '*Test.java' | sed 's|^\./||; s|\.java$||; s|/|.|g'); do
+    if java -ea -cp "$classes" "$test"; then
+        echo "ok   $test"
+    else
+        echo "FAIL $test"
+        failed=1
+    fi
+done
+
+for script in test/scripts/*.java; do
+    actual=$(java -cp "$classes" Main "$@" "$script" 2>&1 | sed -n '/^--- Output ---$/,/^--- End of Output ---$/p' | sed '1d;$d')
+    if [ "$actual" = "$(cat "${script%.java}.expected")" ]; then
+        echo "ok   $script"
+    else
+        echo "FAIL $script"
+        echo "$actual" | diff "${script%.java}.expected" - || true
+        failed=1
+    fi
+done
+exit $failed
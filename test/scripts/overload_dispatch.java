@@ -0,0 +1,67 @@
+// The overload is chosen from the receiver's declared type, whichever class the
+// receiver turns out to be and whichever receivers came through the site before.
+// When an argument's type is only known at run time, the overload is chosen then,
+// and the receiver's override of it still runs.
+class A {
+    String f(double x) {
+        return "A.f(double)";
+    }
+    
+    String f(String x) {
+        return "A.f(String)";
+    }
+}
+
+class B extends A {
+    String f(int x) {
+        return "B.f(int)";
+    }
+}
+
+class C extends A {
+    String f(double x) {
+        return "C.f(double)";
+    }
+}
+
+class Holder {
+    A h;
+    
+    Holder(A h) {
+        this.h = h;
+    }
+}
+
+class Main {
+    String call(A a) {
+        return a.f(1);
+    }
+    
+    int one() {
+        return 1;
+    }
+    
+    String callUntyped(A a) {
+        return a.f(one());
+    }
+    
+    // The receiver's static type is unknown here, so the choice is kept per receiver class
+    String callHeld(Holder o) {
+        return o.h.f(1);
+    }
+    
+    void main() {
+        System.out.println(call(new B()));
+        System.out.println(call(new A()));
+        System.out.println(call(new B()));
+        B b = new B();
+        System.out.println(b.f(1));
+        System.out.println(b.f(1.5));
+        System.out.println(callUntyped(new C()));
+        System.out.println(callUntyped(new B()));
+        System.out.println(callUntyped(new A()));
+        System.out.println(callHeld(new Holder(new C())));
+        System.out.println(callHeld(new Holder(new A())));
+        System.out.println(callHeld(new Holder(new C())));
+    }
+}